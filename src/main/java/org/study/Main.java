@@ -1,26 +1,237 @@
 package org.study;
 
 import org.study.entity.CountryCovidData;
+import org.study.export.ExportFormat;
+import org.study.server.Covid19InfoServer;
+import org.study.service.BatchLookupService;
 import org.study.service.Covid19InfoService;
 import org.study.utils.IOUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
 
 public class Main {
 
-    public static void main(String[] args) {
-        String country = IOUtils.getNotBlankLineFromCmd("Please, enter the country: ");
+    private static final String DEFAULT_BATCH_CONCURRENCY = "16";
+    private static final String DEFAULT_SERVER_THREADS = "8";
+    private static final String DEFAULT_SERVER_CACHE_TTL_SECONDS = "60";
+    private static final String DEFAULT_CHANGES_INTERVAL_SECONDS = "60";
 
-        Covid19InfoService infoService = null;
-        try {
-            infoService = new Covid19InfoService();
-        } catch (IOException e) {
-            System.out.println("Can't read properties");
+    /**
+     * without arguments asks for a country and prints its data, "--country NAME" prints data of NAME without asking,
+     * with "--batch [file] [--concurrency N]" looks up every country listed in file (or stdin),
+     * "--snapshot" fetches all countries once up front and answers every lookup locally,
+     * "--refresh-snapshot" rewrites SNAPSHOT_FILE from upstream,
+     * "--export [dir] [--format csv|jsonl|columnar]" writes cases, vaccines and history of all countries to files,
+     * "--changes [seconds]" polls all countries every CHANGES_INTERVAL_SECONDS (or given seconds) and prints
+     * those which changed as JSON lines,
+     * "--repl" answers queries one per line until "exit",
+     * "--server [port]" serves CountryCovidData as JSON over HTTP,
+     * "--stats" prints upstream metrics after single and batch lookups and export (they are also exposed through JMX
+     * in every mode but single lookup and snapshot refresh, which exit before anyone attaches)
+     */
+    public static void main(String[] args) {
+        if (hasOption(args, "--server")) {
+            runServer(args);
+            return;
+        }
+        if (hasOption(args, "--repl")) {
+            runRepl();
+            return;
+        }
+        if (hasOption(args, "--refresh-snapshot")) {
+            refreshSnapshot();
             return;
         }
+        if (hasOption(args, "--export")) {
+            runExport(args);
+            return;
+        }
+        if (hasOption(args, "--batch")) {
+            runBatch(args);
+            return;
+        }
+        if (hasOption(args, "--changes")) {
+            runChanges(args);
+            return;
+        }
+
+        String country = getOptionValue(args, "--country", null);
+        if (country == null || country.isBlank()) {
+            country = IOUtils.getNotBlankLineFromCmd("Please, enter the country: ");
+        }
+
+        Covid19InfoService infoService = createInfoService(false);
+        if (infoService == null) return;
+
+        if (hasOption(args, "--snapshot")) infoService.loadSnapshot();
 
         //fill result object
         CountryCovidData ccd = infoService.getCountryCovidData(country);
         System.out.println(ccd);
+        if (hasOption(args, "--stats")) System.out.print(infoService.getMetrics().dump());
+    }
+
+    private static void runBatch(String[] args) {
+        Covid19InfoService infoService = createInfoService(true);
+        if (infoService == null) return;
+
+        String concurrencyValue = getOptionValue(args, "--concurrency",
+                infoService.getAppProps().getProperty("BATCH_CONCURRENCY", DEFAULT_BATCH_CONCURRENCY)).trim();
+        int concurrency = parsePositiveInt(concurrencyValue);
+        if (concurrency < 1) {
+            System.out.println("Invalid concurrency: " + concurrencyValue + ", use a positive number");
+            System.exit(1);
+        }
+
+        if (hasOption(args, "--snapshot")) infoService.loadSnapshot();
+
+        String file = getOptionValue(args, "--batch", null);
+        BatchLookupService batch = new BatchLookupService(infoService, concurrency);
+        try (BufferedReader countries = file == null
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(file))) {
+            batch.run(countries, System.out::println, System.out::println);
+            if (hasOption(args, "--stats")) System.out.print(infoService.getMetrics().dump());
+        } catch (IOException e) {
+            System.out.println("Can't read countries: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runServer(String[] args) {
+        Covid19InfoService infoService = createInfoService(true);
+        if (infoService == null) return;
+        Properties props = infoService.getAppProps();
+        int port = Integer.parseInt(getOptionValue(args, "--server", props.getProperty("SERVER_PORT", "8080")).trim());
+        int threads = Integer.parseInt(props.getProperty("SERVER_THREADS", DEFAULT_SERVER_THREADS).trim());
+        Duration jsonTtl = Duration.ofSeconds(Long.parseLong(
+                props.getProperty("SERVER_CACHE_TTL_SECONDS", DEFAULT_SERVER_CACHE_TTL_SECONDS).trim()));
+        try {
+            Covid19InfoServer server = new Covid19InfoServer(infoService, port, threads, jsonTtl);
+            server.start();
+            infoService.startRefreshAhead();
+            System.out.println("Listening on port " + server.getPort());
+        } catch (IOException e) {
+            System.out.println("Can't start server: " + e.getMessage());
+        }
+    }
+
+    private static void runRepl() {
+        Covid19InfoService infoService = createInfoService(true);
+        if (infoService == null) return;
+        boolean prefetch = Boolean.parseBoolean(infoService.getAppProps().getProperty("REPL_PREFETCH", "false").trim());
+        infoService.startRefreshAhead();
+        new Repl(infoService, System.out).run(prefetch);
+    }
+
+    private static void refreshSnapshot() {
+        Covid19InfoService infoService = createInfoService(false);
+        if (infoService == null) return;
+        if (infoService.refreshSnapshotStoreAsync().join()) {
+            System.out.println("Snapshot of " + infoService.getSnapshotStore().getRecordCount()
+                    + " countries is written");
+        } else {
+            System.out.println("Can't refresh snapshot, check SNAPSHOT_FILE and network");
+        }
+    }
+
+    private static void runExport(String[] args) {
+        ExportFormat format;
+        try {
+            format = ExportFormat.parse(getOptionValue(args, "--format", "csv"));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + ", use csv, jsonl or columnar");
+            return;
+        }
+        Covid19InfoService infoService = createInfoService(true);
+        if (infoService == null) return;
+        Path dir = Path.of(getOptionValue(args, "--export", "."));
+        try {
+            infoService.exportAsync(dir, format).join()
+                    .forEach((file, rows) -> System.out.println(rows + " rows written to " + file));
+        } catch (CompletionException e) {
+            System.out.println("Can't export: " + e.getCause());
+        }
+        if (hasOption(args, "--stats")) System.out.print(infoService.getMetrics().dump());
+    }
+
+    private static void runChanges(String[] args) {
+        Covid19InfoService infoService = createInfoService(true);
+        if (infoService == null) return;
+        long intervalSeconds = Long.parseLong(getOptionValue(args, "--changes", infoService.getAppProps()
+                .getProperty("CHANGES_INTERVAL_SECONDS", DEFAULT_CHANGES_INTERVAL_SECONDS)).trim());
+        //stdout carries nothing but JSON lines, so that it can be piped to consumers
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (infoService.pollChangesAsync(System.out).join() < 0) {
+                    System.err.println("Snapshot is incomplete, changes are left for the next poll");
+                }
+            } catch (CompletionException e) {
+                System.err.println("Can't poll changes: " + e.getCause());
+            }
+            System.out.flush();
+            try {
+                Thread.sleep(intervalSeconds * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param longRunning whether metrics are registered as MBeans, which loads the JMX server, and the country
+     *                    index may be fetched from upstream; a one-shot lookup would wait for all countries first
+     */
+    private static Covid19InfoService createInfoService(boolean longRunning) {
+        try {
+            Covid19InfoService infoService = new Covid19InfoService();
+            if (longRunning) {
+                infoService.getMetrics().registerMBeans();
+            } else {
+                infoService.setCountryIndexFetching(false);
+            }
+            return infoService;
+        } catch (IOException e) {
+            System.out.println("Can't read properties: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean hasOption(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return argument following option name, or defaultValue if option is absent or has no value
+     */
+    private static String getOptionValue(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name) && !args[i + 1].startsWith("--")) return args[i + 1];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return value as a positive int, or -1 if it isn't one
+     */
+    private static int parsePositiveInt(String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            return parsed > 0 ? parsed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 }
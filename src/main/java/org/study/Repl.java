@@ -0,0 +1,58 @@
+package org.study;
+
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+import org.study.utils.IOUtils;
+
+import java.io.PrintStream;
+
+/**
+ * Answers country queries one after another with one warm Covid19InfoService.
+ * While the user types, the country index is loaded in background (one all-country /cases request).
+ * With prefetch the whole-world snapshot is fetched instead, once it is complete every following query
+ * is answered locally; that costs all-country /cases, /vaccines and /history, the last of which carries
+ * every day of every country and is by far the largest body.
+ */
+public class Repl {
+
+    private final Covid19InfoService infoService;
+    private final PrintStream out;
+
+    public Repl(Covid19InfoService infoService, PrintStream out) {
+        this.infoService = infoService;
+        this.out = out;
+    }
+
+    /**
+     * reads queries until end of input or "exit", "stats" prints upstream metrics
+     *
+     * @param prefetch whether to fetch the whole-world snapshot in background rather than the country index only
+     */
+    public void run(boolean prefetch) {
+        if (prefetch) {
+            infoService.prefetchSnapshotAsync();
+        } else {
+            infoService.getCountryIndexAsync();
+        }
+        out.println("Enter a country per line, \"stats\" for upstream metrics, \"exit\" to quit");
+        String line;
+        while ((line = IOUtils.readLineFromCmd("country> ", out)) != null) {
+            if (line.isEmpty()) continue;
+            if (line.equalsIgnoreCase("exit") || line.equalsIgnoreCase("quit")) break;
+            if (line.equalsIgnoreCase("stats")) {
+                out.print(infoService.getMetrics().dump());
+                continue;
+            }
+            query(line);
+        }
+    }
+
+    private void query(String country) {
+        boolean local = infoService.getSnapshot() != null;
+        long start = System.nanoTime();
+        CountryCovidData ccd = infoService.getCountryCovidData(country);
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+        out.print(ccd);
+        out.printf("(%.3f ms, %s)%n", elapsedMicros / 1000d, local ? "snapshot" : "upstream");
+    }
+}
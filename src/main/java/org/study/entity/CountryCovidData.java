@@ -1,21 +1,222 @@
 package org.study.entity;
 
-import lombok.Builder;
-import lombok.Data;
+import com.google.gson.annotations.JsonAdapter;
+import lombok.EqualsAndHashCode;
+import org.study.utils.CountryCovidDataTypeAdapter;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 
-@Data
-@Builder
-public class CountryCovidData {
-    private String country;
-    private Long confirmed;
-    private Long recovered;
-    private Long deaths;
-    private Double vaccinatedLevel;
-    private Long confirmedSinceLastHistoryData;
-    private Date lastHistoryDataDate;
+/**
+ * Covid info of one country or region held in primitive fields.
+ * <p>
+ * A count which is not available has its bit cleared in flags (see CONFIRMED, RECOVERED, DEATHS,
+ * CONFIRMED_SINCE_LAST_HISTORY_DATA), a double which is not available is NaN and a day is NO_DAY, as in HistoryStats.
+ * Boxed getters such as getConfirmed() return null for those and allocate, getXxxAsLong()/getXxxAsDouble() and
+ * epoch day getters don't.
+ */
+@EqualsAndHashCode
+@JsonAdapter(CountryCovidDataTypeAdapter.class)
+public final class CountryCovidData {
+
+    public static final int CONFIRMED = 1;
+    public static final int RECOVERED = 1 << 1;
+    public static final int DEATHS = 1 << 2;
+    public static final int CONFIRMED_SINCE_LAST_HISTORY_DATA = 1 << 3;
+    public static final int NO_DAY = HistoryStats.NO_DAY;
+
+    private final String country;
+    private final int flags;
+    private final long confirmed;
+    private final long recovered;
+    private final long deaths;
+    private final double vaccinatedLevel;
+    private final long confirmedSinceLastHistoryData;
+    private final int lastHistoryDataEpochDay;
+    private final double newCasesAverage7d;
+    private final double newCasesAverage14d;
+    private final double dailyGrowthPercent;
+    private final double doublingTimeDays;
+    private final double peakNewCasesAverage7d;
+    private final int peakEpochDay;
+    private final List<String> suggestions;
+    private final boolean complete;
+
+    private CountryCovidData(CountryCovidDataBuilder builder) {
+        this.country = builder.country;
+        this.flags = builder.flags;
+        this.confirmed = builder.confirmed;
+        this.recovered = builder.recovered;
+        this.deaths = builder.deaths;
+        this.vaccinatedLevel = builder.vaccinatedLevel;
+        this.confirmedSinceLastHistoryData = builder.confirmedSinceLastHistoryData;
+        this.lastHistoryDataEpochDay = builder.lastHistoryDataEpochDay;
+        this.newCasesAverage7d = builder.newCasesAverage7d;
+        this.newCasesAverage14d = builder.newCasesAverage14d;
+        this.dailyGrowthPercent = builder.dailyGrowthPercent;
+        this.doublingTimeDays = builder.doublingTimeDays;
+        this.peakNewCasesAverage7d = builder.peakNewCasesAverage7d;
+        this.peakEpochDay = builder.peakEpochDay;
+        this.suggestions = builder.suggestions;
+        this.complete = builder.complete;
+    }
+
+    public static CountryCovidDataBuilder builder() {
+        return new CountryCovidDataBuilder();
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    /**
+     * @return bits of counts which are available
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @param flag one of CONFIRMED, RECOVERED, DEATHS, CONFIRMED_SINCE_LAST_HISTORY_DATA
+     */
+    public boolean isAvailable(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * @return confirmed or 0 if it is not available
+     */
+    public long getConfirmedAsLong() {
+        return confirmed;
+    }
+
+    public long getRecoveredAsLong() {
+        return recovered;
+    }
+
+    public long getDeathsAsLong() {
+        return deaths;
+    }
+
+    public long getConfirmedSinceLastHistoryDataAsLong() {
+        return confirmedSinceLastHistoryData;
+    }
+
+    /**
+     * @return vaccinated level in percent or NaN
+     */
+    public double getVaccinatedLevelAsDouble() {
+        return vaccinatedLevel;
+    }
+
+    public double getNewCasesAverage7dAsDouble() {
+        return newCasesAverage7d;
+    }
+
+    public double getNewCasesAverage14dAsDouble() {
+        return newCasesAverage14d;
+    }
+
+    public double getDailyGrowthPercentAsDouble() {
+        return dailyGrowthPercent;
+    }
+
+    public double getDoublingTimeDaysAsDouble() {
+        return doublingTimeDays;
+    }
+
+    public double getPeakNewCasesAverage7dAsDouble() {
+        return peakNewCasesAverage7d;
+    }
+
+    /**
+     * @return epoch day of latest history data or NO_DAY
+     */
+    public int getLastHistoryDataEpochDay() {
+        return lastHistoryDataEpochDay;
+    }
+
+    /**
+     * @return epoch day of peak 7-day average or NO_DAY
+     */
+    public int getPeakEpochDay() {
+        return peakEpochDay;
+    }
+
+    public Long getConfirmed() {
+        return isAvailable(CONFIRMED) ? confirmed : null;
+    }
+
+    public Long getRecovered() {
+        return isAvailable(RECOVERED) ? recovered : null;
+    }
+
+    public Long getDeaths() {
+        return isAvailable(DEATHS) ? deaths : null;
+    }
+
+    public Double getVaccinatedLevel() {
+        return boxed(vaccinatedLevel);
+    }
+
+    public Long getConfirmedSinceLastHistoryData() {
+        return isAvailable(CONFIRMED_SINCE_LAST_HISTORY_DATA) ? confirmedSinceLastHistoryData : null;
+    }
+
+    public Date getLastHistoryDataDate() {
+        return toDate(lastHistoryDataEpochDay);
+    }
+
+    public Double getNewCasesAverage7d() {
+        return boxed(newCasesAverage7d);
+    }
+
+    public Double getNewCasesAverage14d() {
+        return boxed(newCasesAverage14d);
+    }
+
+    public Double getDailyGrowthPercent() {
+        return boxed(dailyGrowthPercent);
+    }
+
+    public Double getDoublingTimeDays() {
+        return boxed(doublingTimeDays);
+    }
+
+    public Double getPeakNewCasesAverage7d() {
+        return boxed(peakNewCasesAverage7d);
+    }
+
+    public Date getPeakDate() {
+        return toDate(peakEpochDay);
+    }
+
+    public List<String> getSuggestions() {
+        return suggestions;
+    }
+
+    /**
+     * @return false if an upstream endpoint gave nothing for this result, e.g. it failed or timed out,
+     * so asking again may give more
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * @return local midnight of epoch day, as dates from upstream are local dates, or null for NO_DAY
+     */
+    private static Date toDate(int epochDay) {
+        if (epochDay == NO_DAY) return null;
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
 
     /**
      * @param obj Object
@@ -30,12 +231,161 @@ public class CountryCovidData {
         StringBuilder sb = new StringBuilder();
         sb.append("COUNTRY : ").append(nullableObjectToString(country)).append('\n')
                 .append("DATA : ").append('\n')
-                .append("    confirmed : ").append(nullableObjectToString(confirmed)).append('\n')
-                .append("    recovered : ").append(nullableObjectToString(recovered)).append('\n')
-                .append("    deaths : ").append(nullableObjectToString(deaths)).append('\n')
-                .append("    vaccinated level (%) : ").append(nullableObjectToString(vaccinatedLevel)).append('\n')
-                .append("    confirmed since ").append(nullableObjectToString(lastHistoryDataDate)).append(" : ")
-                .append(nullableObjectToString(confirmedSinceLastHistoryData)).append('\n');
+                .append("    confirmed : ").append(nullableObjectToString(getConfirmed())).append('\n')
+                .append("    recovered : ").append(nullableObjectToString(getRecovered())).append('\n')
+                .append("    deaths : ").append(nullableObjectToString(getDeaths())).append('\n')
+                .append("    vaccinated level (%) : ").append(nullableObjectToString(getVaccinatedLevel())).append('\n')
+                .append("    confirmed since ").append(nullableObjectToString(getLastHistoryDataDate())).append(" : ")
+                .append(nullableObjectToString(getConfirmedSinceLastHistoryData())).append('\n')
+                .append("    new cases, 7-day average : ").append(nullableObjectToString(getNewCasesAverage7d()))
+                .append('\n')
+                .append("    new cases, 14-day average : ").append(nullableObjectToString(getNewCasesAverage14d()))
+                .append('\n')
+                .append("    daily growth (%) : ").append(nullableObjectToString(getDailyGrowthPercent())).append('\n')
+                .append("    doubling time (days) : ").append(nullableObjectToString(getDoublingTimeDays()))
+                .append('\n')
+                .append("    peak of 7-day average : ").append(nullableObjectToString(getPeakNewCasesAverage7d()))
+                .append(" on ").append(nullableObjectToString(getPeakDate())).append('\n');
+        if (suggestions != null && !suggestions.isEmpty()) {
+            sb.append("UNKNOWN COUNTRY, did you mean : ").append(String.join(", ", suggestions)).append('\n');
+        }
         return sb.toString();
     }
+
+    /**
+     * Builder of CountryCovidData, everything not set is not available
+     */
+    public static final class CountryCovidDataBuilder {
+        private String country;
+        private int flags;
+        private long confirmed;
+        private long recovered;
+        private long deaths;
+        private double vaccinatedLevel = Double.NaN;
+        private long confirmedSinceLastHistoryData;
+        private int lastHistoryDataEpochDay = NO_DAY;
+        private double newCasesAverage7d = Double.NaN;
+        private double newCasesAverage14d = Double.NaN;
+        private double dailyGrowthPercent = Double.NaN;
+        private double doublingTimeDays = Double.NaN;
+        private double peakNewCasesAverage7d = Double.NaN;
+        private int peakEpochDay = NO_DAY;
+        private List<String> suggestions;
+        private boolean complete = true;
+
+        private CountryCovidDataBuilder() {
+        }
+
+        public CountryCovidDataBuilder country(String country) {
+            this.country = country;
+            return this;
+        }
+
+        public CountryCovidDataBuilder confirmed(long confirmed) {
+            this.confirmed = confirmed;
+            flags |= CONFIRMED;
+            return this;
+        }
+
+        public CountryCovidDataBuilder recovered(long recovered) {
+            this.recovered = recovered;
+            flags |= RECOVERED;
+            return this;
+        }
+
+        public CountryCovidDataBuilder deaths(long deaths) {
+            this.deaths = deaths;
+            flags |= DEATHS;
+            return this;
+        }
+
+        public CountryCovidDataBuilder confirmedSinceLastHistoryData(long confirmedSinceLastHistoryData) {
+            this.confirmedSinceLastHistoryData = confirmedSinceLastHistoryData;
+            flags |= CONFIRMED_SINCE_LAST_HISTORY_DATA;
+            return this;
+        }
+
+        /**
+         * @param vaccinatedLevel percent, NaN if not available
+         */
+        public CountryCovidDataBuilder vaccinatedLevel(double vaccinatedLevel) {
+            this.vaccinatedLevel = vaccinatedLevel;
+            return this;
+        }
+
+        /**
+         * @param epochDay epoch day or NO_DAY
+         */
+        public CountryCovidDataBuilder lastHistoryDataEpochDay(int epochDay) {
+            this.lastHistoryDataEpochDay = epochDay;
+            return this;
+        }
+
+        public CountryCovidDataBuilder newCasesAverage7d(double newCasesAverage7d) {
+            this.newCasesAverage7d = newCasesAverage7d;
+            return this;
+        }
+
+        public CountryCovidDataBuilder newCasesAverage14d(double newCasesAverage14d) {
+            this.newCasesAverage14d = newCasesAverage14d;
+            return this;
+        }
+
+        public CountryCovidDataBuilder dailyGrowthPercent(double dailyGrowthPercent) {
+            this.dailyGrowthPercent = dailyGrowthPercent;
+            return this;
+        }
+
+        public CountryCovidDataBuilder doublingTimeDays(double doublingTimeDays) {
+            this.doublingTimeDays = doublingTimeDays;
+            return this;
+        }
+
+        public CountryCovidDataBuilder peakNewCasesAverage7d(double peakNewCasesAverage7d) {
+            this.peakNewCasesAverage7d = peakNewCasesAverage7d;
+            return this;
+        }
+
+        /**
+         * @param epochDay epoch day or NO_DAY
+         */
+        public CountryCovidDataBuilder peakEpochDay(int epochDay) {
+            this.peakEpochDay = epochDay;
+            return this;
+        }
+
+        /**
+         * sets all indicators of stats, as they are
+         */
+        public CountryCovidDataBuilder historyStats(HistoryStats stats) {
+            return newCasesAverage7d(stats.getNewCasesAverage7d())
+                    .newCasesAverage14d(stats.getNewCasesAverage14d())
+                    .dailyGrowthPercent(stats.getDailyGrowthPercent())
+                    .doublingTimeDays(stats.getDoublingTimeDays())
+                    .peakNewCasesAverage7d(stats.getPeakNewCasesAverage7d())
+                    .peakEpochDay(stats.getPeakEpochDay());
+        }
+
+        public CountryCovidDataBuilder suggestions(List<String> suggestions) {
+            this.suggestions = suggestions;
+            return this;
+        }
+
+        public CountryCovidDataBuilder complete(boolean complete) {
+            this.complete = complete;
+            return this;
+        }
+
+        /**
+         * sets flags as they are, for copying of records
+         */
+        CountryCovidDataBuilder flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+
+        public CountryCovidData build() {
+            return new CountryCovidData(this);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+package org.study.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CountryCovidData of many countries kept outside the heap: fixed-size records in one direct ByteBuffer and
+ * UTF-8 country names in another, so a store of any size is two objects to the garbage collector.
+ * Records are read through a Record flyweight which is moved between them without allocating;
+ * suggestions are not kept.
+ * <p>
+ * Filled by one thread, then may be read by any once published safely.
+ */
+public final class CountryCovidDataStore {
+
+    private static final int RECORD_SIZE = 104;
+    private static final int FLAGS = 0;
+    private static final int LAST_HISTORY_DATA_DAY = 4;
+    private static final int PEAK_DAY = 8;
+    private static final int NAME_OFFSET = 12;
+    private static final int NAME_LENGTH = 16;
+    private static final int CONFIRMED = 24;
+    private static final int RECOVERED = 32;
+    private static final int DEATHS = 40;
+    private static final int CONFIRMED_SINCE_LAST_HISTORY_DATA = 48;
+    private static final int VACCINATED_LEVEL = 56;
+    private static final int NEW_CASES_AVERAGE_7D = 64;
+    private static final int NEW_CASES_AVERAGE_14D = 72;
+    private static final int DAILY_GROWTH_PERCENT = 80;
+    private static final int DOUBLING_TIME_DAYS = 88;
+    private static final int PEAK_NEW_CASES_AVERAGE_7D = 96;
+    private static final int NO_NAME = -1;
+
+    private ByteBuffer records;
+    private ByteBuffer names;
+    private int size;
+
+    /**
+     * @param expectedRecords number of records to allocate room for, the store grows past it
+     */
+    public CountryCovidDataStore(int expectedRecords) {
+        records = ByteBuffer.allocateDirect(Math.max(1, expectedRecords) * RECORD_SIZE);
+        names = ByteBuffer.allocateDirect(Math.max(16, expectedRecords * 16));
+    }
+
+    /**
+     * @return index of added record
+     */
+    public int add(CountryCovidData ccd) {
+        if ((size + 1) * RECORD_SIZE > records.capacity()) {
+            records = grow(records, records.capacity() * 2, size * RECORD_SIZE);
+        }
+        int nameOffset = NO_NAME;
+        int nameLength = 0;
+        if (ccd.getCountry() != null) {
+            byte[] name = ccd.getCountry().getBytes(StandardCharsets.UTF_8);
+            int used = names.position();
+            if (used + name.length > names.capacity()) {
+                names = grow(names, Math.max(names.capacity() * 2, used + name.length), used);
+            }
+            nameOffset = names.position();
+            nameLength = name.length;
+            names.put(name);
+        }
+        int at = size * RECORD_SIZE;
+        records.putInt(at + FLAGS, ccd.getFlags())
+                .putInt(at + LAST_HISTORY_DATA_DAY, ccd.getLastHistoryDataEpochDay())
+                .putInt(at + PEAK_DAY, ccd.getPeakEpochDay())
+                .putInt(at + NAME_OFFSET, nameOffset)
+                .putInt(at + NAME_LENGTH, nameLength)
+                .putLong(at + CONFIRMED, ccd.getConfirmedAsLong())
+                .putLong(at + RECOVERED, ccd.getRecoveredAsLong())
+                .putLong(at + DEATHS, ccd.getDeathsAsLong())
+                .putLong(at + CONFIRMED_SINCE_LAST_HISTORY_DATA, ccd.getConfirmedSinceLastHistoryDataAsLong())
+                .putDouble(at + VACCINATED_LEVEL, ccd.getVaccinatedLevelAsDouble())
+                .putDouble(at + NEW_CASES_AVERAGE_7D, ccd.getNewCasesAverage7dAsDouble())
+                .putDouble(at + NEW_CASES_AVERAGE_14D, ccd.getNewCasesAverage14dAsDouble())
+                .putDouble(at + DAILY_GROWTH_PERCENT, ccd.getDailyGrowthPercentAsDouble())
+                .putDouble(at + DOUBLING_TIME_DAYS, ccd.getDoublingTimeDaysAsDouble())
+                .putDouble(at + PEAK_NEW_CASES_AVERAGE_7D, ccd.getPeakNewCasesAverage7dAsDouble());
+        return size++;
+    }
+
+    /**
+     * @return new buffer of capacity holding the used bytes of buffer, positioned after them
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity, int used) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        grown.put(buffer.duplicate().position(0).limit(used));
+        return grown;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes taken outside the heap
+     */
+    public long getOffHeapBytes() {
+        return (long) records.capacity() + names.capacity();
+    }
+
+    /**
+     * @return new flyweight, move it to a record before reading
+     */
+    public Record record() {
+        return new Record();
+    }
+
+    /**
+     * @return copy of record on the heap
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public CountryCovidData get(int index) {
+        return record().moveTo(index).toCountryCovidData();
+    }
+
+    /**
+     * View of one record of the store, reads go straight to the buffer
+     */
+    public final class Record {
+        private int at = -1;
+
+        private Record() {
+        }
+
+        /**
+         * @return this, showing record at index
+         * @throws IndexOutOfBoundsException if there is no such record
+         */
+        public Record moveTo(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+            at = index * RECORD_SIZE;
+            return this;
+        }
+
+        /**
+         * @return country, decoded on every call
+         */
+        public String getCountry() {
+            int offset = records.getInt(at + NAME_OFFSET);
+            if (offset == NO_NAME) return null;
+            byte[] name = new byte[records.getInt(at + NAME_LENGTH)];
+            names.get(offset, name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param flag one of CountryCovidData.CONFIRMED, RECOVERED, DEATHS, CONFIRMED_SINCE_LAST_HISTORY_DATA
+         */
+        public boolean isAvailable(int flag) {
+            return (records.getInt(at + FLAGS) & flag) != 0;
+        }
+
+        public long getConfirmed() {
+            return records.getLong(at + CONFIRMED);
+        }
+
+        public long getRecovered() {
+            return records.getLong(at + RECOVERED);
+        }
+
+        public long getDeaths() {
+            return records.getLong(at + DEATHS);
+        }
+
+        public long getConfirmedSinceLastHistoryData() {
+            return records.getLong(at + CONFIRMED_SINCE_LAST_HISTORY_DATA);
+        }
+
+        public double getVaccinatedLevel() {
+            return records.getDouble(at + VACCINATED_LEVEL);
+        }
+
+        public double getNewCasesAverage7d() {
+            return records.getDouble(at + NEW_CASES_AVERAGE_7D);
+        }
+
+        public double getNewCasesAverage14d() {
+            return records.getDouble(at + NEW_CASES_AVERAGE_14D);
+        }
+
+        public double getDailyGrowthPercent() {
+            return records.getDouble(at + DAILY_GROWTH_PERCENT);
+        }
+
+        public double getDoublingTimeDays() {
+            return records.getDouble(at + DOUBLING_TIME_DAYS);
+        }
+
+        public double getPeakNewCasesAverage7d() {
+            return records.getDouble(at + PEAK_NEW_CASES_AVERAGE_7D);
+        }
+
+        public int getLastHistoryDataEpochDay() {
+            return records.getInt(at + LAST_HISTORY_DATA_DAY);
+        }
+
+        public int getPeakEpochDay() {
+            return records.getInt(at + PEAK_DAY);
+        }
+
+        public CountryCovidData toCountryCovidData() {
+            return CountryCovidData.builder()
+                    .country(getCountry())
+                    .confirmed(getConfirmed())
+                    .recovered(getRecovered())
+                    .deaths(getDeaths())
+                    .confirmedSinceLastHistoryData(getConfirmedSinceLastHistoryData())
+                    .flags(records.getInt(at + FLAGS))
+                    .vaccinatedLevel(getVaccinatedLevel())
+                    .lastHistoryDataEpochDay(getLastHistoryDataEpochDay())
+                    .newCasesAverage7d(getNewCasesAverage7d())
+                    .newCasesAverage14d(getNewCasesAverage14d())
+                    .dailyGrowthPercent(getDailyGrowthPercent())
+                    .doublingTimeDays(getDoublingTimeDays())
+                    .peakNewCasesAverage7d(getPeakNewCasesAverage7d())
+                    .peakEpochDay(getPeakEpochDay())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.study.entity;
+
+/**
+ * Indicators derived from cumulative confirmed history, NaN (or Integer.MIN_VALUE for days) means
+ * there is not enough history for an indicator
+ */
+public final class HistoryStats {
+
+    public static final int NO_DAY = Integer.MIN_VALUE;
+    public static final HistoryStats EMPTY = new HistoryStats(Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+            Double.NaN, NO_DAY);
+
+    private final double newCasesAverage7d;
+    private final double newCasesAverage14d;
+    private final double dailyGrowthPercent;
+    private final double doublingTimeDays;
+    private final double peakNewCasesAverage7d;
+    private final int peakEpochDay;
+
+    public HistoryStats(double newCasesAverage7d, double newCasesAverage14d, double dailyGrowthPercent,
+                        double doublingTimeDays, double peakNewCasesAverage7d, int peakEpochDay) {
+        this.newCasesAverage7d = newCasesAverage7d;
+        this.newCasesAverage14d = newCasesAverage14d;
+        this.dailyGrowthPercent = dailyGrowthPercent;
+        this.doublingTimeDays = doublingTimeDays;
+        this.peakNewCasesAverage7d = peakNewCasesAverage7d;
+        this.peakEpochDay = peakEpochDay;
+    }
+
+    /**
+     * @return average of new cases over the latest 7 days
+     */
+    public double getNewCasesAverage7d() {
+        return newCasesAverage7d;
+    }
+
+    /**
+     * @return average of new cases over the latest 14 days
+     */
+    public double getNewCasesAverage14d() {
+        return newCasesAverage14d;
+    }
+
+    /**
+     * @return growth of confirmed on the latest day relative to the previous point, in % per day
+     */
+    public double getDailyGrowthPercent() {
+        return dailyGrowthPercent;
+    }
+
+    /**
+     * @return days for confirmed to double at the growth rate of the latest 7 days, NaN if it does not grow
+     */
+    public double getDoublingTimeDays() {
+        return doublingTimeDays;
+    }
+
+    /**
+     * @return the highest 7-day average of new cases over the whole history
+     */
+    public double getPeakNewCasesAverage7d() {
+        return peakNewCasesAverage7d;
+    }
+
+    /**
+     * @return last day of the week with the highest 7-day average, NO_DAY if there is none
+     */
+    public int getPeakEpochDay() {
+        return peakEpochDay;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryStats[avg7=" + newCasesAverage7d + ", avg14=" + newCasesAverage14d
+                + ", growth%=" + dailyGrowthPercent + ", doubling=" + doublingTimeDays
+                + ", peak=" + peakNewCasesAverage7d + "@" + peakEpochDay + "]";
+    }
+}
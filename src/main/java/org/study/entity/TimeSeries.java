@@ -0,0 +1,250 @@
+package org.study.entity;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Immutable daily time series backed by primitive arrays: epoch days sorted ascending and their values.
+ * Lookups by date are binary searches, the latest point is the last element.
+ */
+public final class TimeSeries {
+
+    public static final TimeSeries EMPTY = new TimeSeries(new int[0], new long[0]);
+
+    private final int[] epochDays;
+    private final long[] values;
+
+    private TimeSeries(int[] epochDays, long[] values) {
+        this.epochDays = epochDays;
+        this.values = values;
+    }
+
+    /**
+     * @param epochDays days in any order, copied
+     * @param values    values of days, copied
+     * @return series sorted by day, for duplicate days the last given value wins
+     */
+    public static TimeSeries of(int[] epochDays, long[] values) {
+        if (epochDays.length != values.length) {
+            throw new IllegalArgumentException("days and values differ in length");
+        }
+        Builder builder = new Builder(epochDays.length);
+        for (int i = 0; i < epochDays.length; i++) {
+            builder.add(epochDays[i], values[i]);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    public boolean isEmpty() {
+        return epochDays.length == 0;
+    }
+
+    public int getEpochDay(int index) {
+        return epochDays[index];
+    }
+
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(epochDays[index]);
+    }
+
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return date of the latest point
+     * @throws IllegalStateException if series is empty
+     */
+    public LocalDate getLatestDate() {
+        checkNotEmpty();
+        return LocalDate.ofEpochDay(epochDays[epochDays.length - 1]);
+    }
+
+    /**
+     * @return value of the latest point
+     * @throws IllegalStateException if series is empty
+     */
+    public long getLatestValue() {
+        checkNotEmpty();
+        return values[values.length - 1];
+    }
+
+    /**
+     * @return index of date or -1 if there is no such date
+     */
+    public int indexOf(LocalDate date) {
+        int index = Arrays.binarySearch(epochDays, Math.toIntExact(date.toEpochDay()));
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * @return value of date or null if there is no such date
+     */
+    public Long getValue(LocalDate date) {
+        int index = indexOf(date);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * @param from first date, inclusive
+     * @param to   last date, inclusive
+     * @return points between given dates
+     */
+    public TimeSeries range(LocalDate from, LocalDate to) {
+        int start = insertionPoint(Math.toIntExact(from.toEpochDay()));
+        int end = insertionPoint(Math.toIntExact(to.toEpochDay()) + 1);
+        if (start >= end) return EMPTY;
+        return new TimeSeries(Arrays.copyOfRange(epochDays, start, end), Arrays.copyOfRange(values, start, end));
+    }
+
+    /**
+     * @return index of the first day which is not before epochDay
+     */
+    private int insertionPoint(int epochDay) {
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * @return copy of epoch days, ascending
+     */
+    public int[] getEpochDays() {
+        return epochDays.clone();
+    }
+
+    /**
+     * @return copy of values in order of days
+     */
+    public long[] getValues() {
+        return values.clone();
+    }
+
+    private void checkNotEmpty() {
+        if (isEmpty()) throw new IllegalStateException("time series is empty");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeSeries)) return false;
+        TimeSeries that = (TimeSeries) o;
+        return Arrays.equals(epochDays, that.epochDays) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(epochDays) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "TimeSeries[]"
+                : "TimeSeries[" + size() + " days, " + getDate(0) + ".." + getLatestDate() + "]";
+    }
+
+    /**
+     * Collects points in any order, upstream order (newest first) is sorted by reversing
+     */
+    public static class Builder {
+        private int[] epochDays;
+        private long[] values;
+        private int size;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int expectedSize) {
+            epochDays = new int[Math.max(expectedSize, 1)];
+            values = new long[Math.max(expectedSize, 1)];
+        }
+
+        public Builder add(int epochDay, long value) {
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            epochDays[size] = epochDay;
+            values[size] = value;
+            size++;
+            return this;
+        }
+
+        public Builder add(LocalDate date, long value) {
+            return add(Math.toIntExact(date.toEpochDay()), value);
+        }
+
+        public TimeSeries build() {
+            if (size == 0) return EMPTY;
+            int[] days = Arrays.copyOf(epochDays, size);
+            long[] vals = Arrays.copyOf(values, size);
+            if (isDescending(days)) {
+                reverse(days, vals);
+            } else if (!isAscending(days)) {
+                sort(days, vals);
+            }
+            return dropDuplicates(days, vals);
+        }
+
+        private static boolean isAscending(int[] days) {
+            for (int i = 1; i < days.length; i++) {
+                if (days[i - 1] > days[i]) return false;
+            }
+            return true;
+        }
+
+        private static boolean isDescending(int[] days) {
+            for (int i = 1; i < days.length; i++) {
+                if (days[i - 1] <= days[i]) return false;
+            }
+            return true;
+        }
+
+        private static void reverse(int[] days, long[] vals) {
+            for (int i = 0, j = days.length - 1; i < j; i++, j--) {
+                int day = days[i];
+                days[i] = days[j];
+                days[j] = day;
+                long value = vals[i];
+                vals[i] = vals[j];
+                vals[j] = value;
+            }
+        }
+
+        /**
+         * stable sort of points by day through packed (day, original index) keys
+         */
+        private static void sort(int[] days, long[] vals) {
+            long[] keys = new long[days.length];
+            for (int i = 0; i < days.length; i++) {
+                keys[i] = ((long) days[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            long[] sortedValues = new long[vals.length];
+            for (int i = 0; i < keys.length; i++) {
+                days[i] = (int) (keys[i] >> 32);
+                sortedValues[i] = vals[(int) keys[i]];
+            }
+            System.arraycopy(sortedValues, 0, vals, 0, vals.length);
+        }
+
+        private static TimeSeries dropDuplicates(int[] days, long[] vals) {
+            int unique = 0;
+            for (int i = 0; i < days.length; i++) {
+                if (unique > 0 && days[unique - 1] == days[i]) {
+                    vals[unique - 1] = vals[i];
+                } else {
+                    days[unique] = days[i];
+                    vals[unique] = vals[i];
+                    unique++;
+                }
+            }
+            if (unique == days.length) return new TimeSeries(days, vals);
+            return new TimeSeries(Arrays.copyOf(days, unique), Arrays.copyOf(vals, unique));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.study.export;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Keeps the column cursor of a row and checks cell types, subclasses only encode cells
+ */
+abstract class AbstractTableWriter implements TableWriter {
+
+    protected final List<Column> columns;
+    private int column;
+    private long rows;
+
+    AbstractTableWriter(List<Column> columns) {
+        if (columns.isEmpty()) throw new IllegalArgumentException("No columns");
+        this.columns = List.copyOf(columns);
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeString(next(Column.Type.STRING), value);
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException {
+        writeLong(next(Column.Type.LONG), value);
+    }
+
+    @Override
+    public void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value)) {
+            writeNull();
+            return;
+        }
+        writeDouble(next(Column.Type.DOUBLE), value);
+    }
+
+    @Override
+    public void writeDate(int epochDay) throws IOException {
+        writeDate(next(Column.Type.DATE), epochDay);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        writeNull(next(null));
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        if (column != columns.size()) {
+            throw new IllegalStateException("Row has " + column + " of " + columns.size() + " columns");
+        }
+        endRow(rows);
+        column = 0;
+        rows++;
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @param type type of cell or null for a missing value, which fits any column
+     * @return index of column the cell belongs to
+     */
+    private int next(Column.Type type) {
+        if (column == columns.size()) throw new IllegalStateException("Row is complete, endRow wasn't called");
+        Column current = columns.get(column);
+        if (type != null && type != current.getType()) {
+            throw new IllegalStateException("Column " + current + " can't hold " + type);
+        }
+        return column++;
+    }
+
+    protected abstract void writeString(int column, String value) throws IOException;
+
+    protected abstract void writeLong(int column, long value) throws IOException;
+
+    protected abstract void writeDouble(int column, double value) throws IOException;
+
+    protected abstract void writeDate(int column, int epochDay) throws IOException;
+
+    protected abstract void writeNull(int column) throws IOException;
+
+    /**
+     * @param row index of the row which is complete
+     */
+    protected abstract void endRow(long row) throws IOException;
+}
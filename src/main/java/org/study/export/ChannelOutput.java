@@ -0,0 +1,194 @@
+package org.study.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+
+/**
+ * Output to a channel through one reused direct buffer, values are encoded straight into the buffer
+ * (digits and UTF-8 without intermediate strings or byte arrays)
+ */
+final class ChannelOutput implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_LONG_DIGITS = 20;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long flushedBytes;
+
+    ChannelOutput(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * @return number of bytes written so far, buffered ones included
+     */
+    long position() {
+        return flushedBytes + buffer.position();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    void put(byte b) throws IOException {
+        ensure(1);
+        buffer.put(b);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * writes decimal digits of value
+     */
+    void putDecimal(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putUtf8(Long.toString(value));
+            return;
+        }
+        ensure(MAX_LONG_DIGITS);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + value % 10));
+            value /= 10;
+        } while (value != 0);
+        //digits were written backwards
+        for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+            byte digit = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, digit);
+        }
+    }
+
+    /**
+     * writes value zero padded to width digits
+     */
+    void putDecimal(int value, int width) throws IOException {
+        ensure(width);
+        int start = buffer.position();
+        for (int i = width - 1; i >= 0; i--) {
+            buffer.put(start + i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(start + width);
+    }
+
+    /**
+     * writes date of epochDay as yyyy-MM-dd
+     */
+    void putIsoDate(int epochDay) throws IOException {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        putDecimal(date.getYear(), 4);
+        put((byte) '-');
+        putDecimal(date.getMonthValue(), 2);
+        put((byte) '-');
+        putDecimal(date.getDayOfMonth(), 2);
+    }
+
+    /**
+     * writes UTF-8 bytes of chars, unpaired surrogates are written as '?'
+     */
+    void putUtf8(CharSequence chars) throws IOException {
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (isSurrogatePair(chars, i)) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                ensure(4);
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?');
+            } else {
+                ensure(3);
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes putUtf8 writes for chars
+     */
+    static int utf8Length(CharSequence chars) {
+        int bytes = 0;
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (isSurrogatePair(chars, i)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isSurrogatePair(CharSequence chars, int index) {
+        return Character.isHighSurrogate(chars.charAt(index)) && index + 1 < chars.length()
+                && Character.isLowSurrogate(chars.charAt(index + 1));
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushedBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.study.export;
+
+/**
+ * Name and type of a column of an exported table
+ */
+public final class Column {
+
+    public enum Type {
+        STRING, LONG, DOUBLE, DATE
+    }
+
+    private final String name;
+    private final Type type;
+
+    private Column(String name, Type type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    public static Column string(String name) {
+        return new Column(name, Type.STRING);
+    }
+
+    public static Column longValue(String name) {
+        return new Column(name, Type.LONG);
+    }
+
+    public static Column doubleValue(String name) {
+        return new Column(name, Type.DOUBLE);
+    }
+
+    /**
+     * @return column of dates, written as epoch days and printed as yyyy-MM-dd
+     */
+    public static Column date(String name) {
+        return new Column(name, Type.DATE);
+    }
+
+    public static Column of(String name, Type type) {
+        return new Column(name, type);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + type;
+    }
+}
@@ -0,0 +1,188 @@
+package org.study.export;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads files written by ColumnarTableWriter one row group at a time
+ */
+public class ColumnarTableReader implements Closeable {
+
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final List<Column> columns;
+    private final long[] rowGroupOffsets;
+    private final long footerOffset;
+    private final long rowCount;
+
+    private ColumnarTableReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+        footerOffset = trailer.getLong();
+        if (trailer.getInt() != ColumnarTableWriter.MAGIC || footerOffset < 0
+                || footerOffset > size - TRAILER_SIZE) {
+            throw new IOException("Not a columnar table");
+        }
+        ByteBuffer footer = read(footerOffset, (int) (size - TRAILER_SIZE - footerOffset));
+        rowGroupOffsets = new long[footer.getInt()];
+        for (int i = 0; i < rowGroupOffsets.length; i++) {
+            rowGroupOffsets[i] = footer.getLong();
+        }
+        rowCount = footer.getLong();
+
+        ByteBuffer header = read(0, (int) Math.min(footerOffset, 64 * 1024));
+        if (header.getInt() != ColumnarTableWriter.MAGIC || header.getInt() != ColumnarTableWriter.VERSION) {
+            throw new IOException("Unsupported columnar table version");
+        }
+        List<Column> headerColumns = new ArrayList<>();
+        int columnCount = header.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            Column.Type type = Column.Type.values()[header.get()];
+            headerColumns.add(Column.of(getString(header, header.getInt()), type));
+        }
+        columns = Collections.unmodifiableList(headerColumns);
+    }
+
+    public static ColumnarTableReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ColumnarTableReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (position < 0 || length < 0) throw new IOException("Not a columnar table");
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+        return buffer.flip();
+    }
+
+    private static String getString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getRowGroupCount() {
+        return rowGroupOffsets.length;
+    }
+
+    public RowGroup readRowGroup(int index) throws IOException {
+        long end = index + 1 < rowGroupOffsets.length ? rowGroupOffsets[index + 1] : footerOffset;
+        ByteBuffer chunk = read(rowGroupOffsets[index], (int) (end - rowGroupOffsets[index]));
+        int rows = chunk.getInt();
+        RowGroup group = new RowGroup(rows, columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            int nullCount = chunk.getInt();
+            long[] nulls = new long[(rows + 63) >>> 6];
+            if (nullCount > 0) {
+                for (int i = 0; i < nulls.length; i++) {
+                    nulls[i] = chunk.getLong();
+                }
+            }
+            group.nulls[c] = nulls;
+            switch (columns.get(c).getType()) {
+                case STRING:
+                    String[] strings = new String[rows];
+                    int runs = chunk.getInt();
+                    for (int r = 0, row = 0; r < runs; r++) {
+                        int runLength = chunk.getInt();
+                        int length = chunk.getInt();
+                        String value = length < 0 ? null : getString(chunk, length);
+                        for (int i = 0; i < runLength; i++) {
+                            strings[row++] = value;
+                        }
+                    }
+                    group.values[c] = strings;
+                    break;
+                case LONG:
+                    long[] longs = new long[rows];
+                    chunk.asLongBuffer().get(longs);
+                    chunk.position(chunk.position() + rows * Long.BYTES);
+                    group.values[c] = longs;
+                    break;
+                case DOUBLE:
+                    double[] doubles = new double[rows];
+                    chunk.asDoubleBuffer().get(doubles);
+                    chunk.position(chunk.position() + rows * Double.BYTES);
+                    group.values[c] = doubles;
+                    break;
+                default:
+                    int[] ints = new int[rows];
+                    chunk.asIntBuffer().get(ints);
+                    chunk.position(chunk.position() + rows * Integer.BYTES);
+                    group.values[c] = ints;
+            }
+        }
+        return group;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decoded columns of one row group
+     */
+    public static final class RowGroup {
+        private final int rows;
+        private final long[][] nulls;
+        private final Object[] values;
+
+        private RowGroup(int rows, int columns) {
+            this.rows = rows;
+            this.nulls = new long[columns][];
+            this.values = new Object[columns];
+        }
+
+        public int getRowCount() {
+            return rows;
+        }
+
+        public boolean isNull(int column, int row) {
+            return (nulls[column][row >>> 6] & 1L << row) != 0;
+        }
+
+        public String getString(int column, int row) {
+            return ((String[]) values[column])[row];
+        }
+
+        public long getLong(int column, int row) {
+            return ((long[]) values[column])[row];
+        }
+
+        public double getDouble(int column, int row) {
+            return ((double[]) values[column])[row];
+        }
+
+        public int getDate(int column, int row) {
+            return ((int[]) values[column])[row];
+        }
+    }
+}
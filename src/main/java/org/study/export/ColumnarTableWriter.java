@@ -0,0 +1,225 @@
+package org.study.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Simple columnar binary file: rows are buffered into row groups of fixed size and every group is written
+ * column after column, so memory is bounded by one row group whatever the number of rows.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * header     int magic "C19C", int version, int column count,
+ *            per column byte type (Column.Type ordinal), int name length, UTF-8 name
+ * row group  int row count, then per column a chunk:
+ *            int null count, bitmap of ceil(rows / 64) longs if null count > 0 (bit set = null),
+ *            LONG: long per row, DOUBLE: double per row, DATE: int epoch day per row (0 for nulls),
+ *            STRING: int run count, per run int run length, int byte length (-1 for null), UTF-8 bytes
+ * footer     int row group count, long offset per row group, long row count,
+ *            long offset of footer, int magic
+ * </pre>
+ * Strings are run-length encoded, as exported tables are sorted by their first string column.
+ * Files are read with ColumnarTableReader.
+ */
+public class ColumnarTableWriter extends AbstractTableWriter {
+
+    static final int MAGIC = 0x43313943; //"C19C"
+    static final int VERSION = 1;
+    public static final int DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+
+    private final ChannelOutput out;
+    private final int rowGroupSize;
+    private final ColumnBuffer[] buffers;
+    private long[] rowGroupOffsets = new long[16];
+    private int rowGroups;
+    private int rowsInGroup;
+
+    public ColumnarTableWriter(WritableByteChannel channel, List<Column> columns) throws IOException {
+        this(channel, columns, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    public ColumnarTableWriter(WritableByteChannel channel, List<Column> columns, int rowGroupSize)
+            throws IOException {
+        super(columns);
+        if (rowGroupSize <= 0) throw new IllegalArgumentException("Row group size " + rowGroupSize);
+        this.rowGroupSize = rowGroupSize;
+        out = new ChannelOutput(channel, ChannelOutput.DEFAULT_BUFFER_SIZE);
+        buffers = new ColumnBuffer[this.columns.size()];
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(buffers.length);
+        for (int i = 0; i < buffers.length; i++) {
+            Column column = this.columns.get(i);
+            buffers[i] = new ColumnBuffer(column.getType(), rowGroupSize);
+            out.put((byte) column.getType().ordinal());
+            out.putInt(ChannelOutput.utf8Length(column.getName()));
+            out.putUtf8(column.getName());
+        }
+    }
+
+    @Override
+    protected void writeString(int column, String value) {
+        buffers[column].addString(value);
+    }
+
+    @Override
+    protected void writeLong(int column, long value) {
+        buffers[column].longs[rowsInGroup] = value;
+    }
+
+    @Override
+    protected void writeDouble(int column, double value) {
+        buffers[column].doubles[rowsInGroup] = value;
+    }
+
+    @Override
+    protected void writeDate(int column, int epochDay) {
+        buffers[column].ints[rowsInGroup] = epochDay;
+    }
+
+    @Override
+    protected void writeNull(int column) {
+        ColumnBuffer buffer = buffers[column];
+        buffer.nulls[rowsInGroup >>> 6] |= 1L << rowsInGroup;
+        buffer.nullCount++;
+        switch (buffer.type) {
+            case STRING:
+                buffer.addString(null);
+                break;
+            case LONG:
+                buffer.longs[rowsInGroup] = 0L;
+                break;
+            case DOUBLE:
+                buffer.doubles[rowsInGroup] = 0d;
+                break;
+            default:
+                buffer.ints[rowsInGroup] = 0;
+        }
+    }
+
+    @Override
+    protected void endRow(long row) throws IOException {
+        if (++rowsInGroup == rowGroupSize) flushRowGroup();
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (rowsInGroup == 0) return;
+        if (rowGroups == rowGroupOffsets.length) rowGroupOffsets = Arrays.copyOf(rowGroupOffsets, rowGroups * 2);
+        rowGroupOffsets[rowGroups++] = out.position();
+        out.putInt(rowsInGroup);
+        for (ColumnBuffer buffer : buffers) {
+            buffer.writeTo(out, rowsInGroup);
+            buffer.clear();
+        }
+        rowsInGroup = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushRowGroup();
+            long footerOffset = out.position();
+            out.putInt(rowGroups);
+            for (int i = 0; i < rowGroups; i++) {
+                out.putLong(rowGroupOffsets[i]);
+            }
+            out.putLong(getRowCount());
+            out.putLong(footerOffset);
+            out.putInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Values of one column in the current row group, arrays are allocated once and reused by every group
+     */
+    private static final class ColumnBuffer {
+        final Column.Type type;
+        final long[] nulls;
+        int nullCount;
+        long[] longs;
+        double[] doubles;
+        int[] ints;
+        //run-length encoded strings
+        String[] runValues;
+        int[] runLengths;
+        int runs;
+
+        ColumnBuffer(Column.Type type, int rowGroupSize) {
+            this.type = type;
+            nulls = new long[(rowGroupSize + 63) >>> 6];
+            switch (type) {
+                case STRING:
+                    runValues = new String[16];
+                    runLengths = new int[16];
+                    break;
+                case LONG:
+                    longs = new long[rowGroupSize];
+                    break;
+                case DOUBLE:
+                    doubles = new double[rowGroupSize];
+                    break;
+                default:
+                    ints = new int[rowGroupSize];
+            }
+        }
+
+        void addString(String value) {
+            if (runs > 0 && Objects.equals(runValues[runs - 1], value)) {
+                runLengths[runs - 1]++;
+                return;
+            }
+            if (runs == runValues.length) {
+                runValues = Arrays.copyOf(runValues, runs * 2);
+                runLengths = Arrays.copyOf(runLengths, runs * 2);
+            }
+            runValues[runs] = value;
+            runLengths[runs++] = 1;
+        }
+
+        void writeTo(ChannelOutput out, int rows) throws IOException {
+            out.putInt(nullCount);
+            if (nullCount > 0) {
+                for (int i = 0; i < (rows + 63) >>> 6; i++) {
+                    out.putLong(nulls[i]);
+                }
+            }
+            switch (type) {
+                case STRING:
+                    out.putInt(runs);
+                    for (int i = 0; i < runs; i++) {
+                        out.putInt(runLengths[i]);
+                        String value = runValues[i];
+                        out.putInt(value == null ? -1 : ChannelOutput.utf8Length(value));
+                        if (value != null) out.putUtf8(value);
+                    }
+                    break;
+                case LONG:
+                    for (int i = 0; i < rows; i++) {
+                        out.putLong(longs[i]);
+                    }
+                    break;
+                case DOUBLE:
+                    for (int i = 0; i < rows; i++) {
+                        out.putDouble(doubles[i]);
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < rows; i++) {
+                        out.putInt(ints[i]);
+                    }
+            }
+        }
+
+        void clear() {
+            if (nullCount > 0) Arrays.fill(nulls, 0L);
+            nullCount = 0;
+            if (runValues != null) Arrays.fill(runValues, 0, runs, null);
+            runs = 0;
+        }
+    }
+}
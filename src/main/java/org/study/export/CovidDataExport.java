@@ -0,0 +1,172 @@
+package org.study.export;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.study.response.CasesUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+import org.study.utils.JsonUtils;
+import org.study.utils.TimeSeriesTypeAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Tables of the export and the writing of all-country /cases, /vaccines and /history bodies into them
+ * while the bodies are streamed: a row is written as soon as its values are read, so only one country
+ * (one element of the body) is held in memory at a time.
+ */
+public final class CovidDataExport {
+
+    public static final String CASES = "cases";
+    public static final String VACCINES = "vaccines";
+    public static final String HISTORY = "history";
+
+    public static final List<Column> CASES_COLUMNS = List.of(Column.string("country"),
+            Column.string("abbreviation"), Column.string("continent"), Column.string("location"),
+            Column.longValue("population"), Column.longValue("confirmed"), Column.longValue("recovered"),
+            Column.longValue("deaths"));
+
+    public static final List<Column> VACCINES_COLUMNS = List.of(Column.string("country"),
+            Column.longValue("population"), Column.longValue("people_vaccinated"),
+            Column.doubleValue("vaccinated_level"));
+
+    /**
+     * confirmed cases by date, newest date first as upstream lists them
+     */
+    public static final List<Column> HISTORY_COLUMNS = List.of(Column.string("country"), Column.date("date"),
+            Column.longValue("confirmed"));
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * writes rows of one table from a streamed body
+     */
+    @FunctionalInterface
+    public interface RowsWriter {
+        long write(InputStream body, TableWriter out) throws IOException;
+    }
+
+    private CovidDataExport() {
+    }
+
+    /**
+     * @param table one of CASES, VACCINES, HISTORY
+     * @return file of the table in directory, e.g. history.csv
+     */
+    public static Path file(Path directory, String table, ExportFormat format) {
+        return directory.resolve(table + "." + format.getExtension());
+    }
+
+    /**
+     * writes rows of a table from a streamed body into file: the rows go to a temporary file next to it,
+     * which is moved into place when complete and deleted if writing fails
+     *
+     * @return number of rows written
+     */
+    public static long writeFile(InputStream body, Path file, ExportFormat format, List<Column> columns,
+                                 RowsWriter rowsWriter) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            long rows;
+            try (TableWriter out = format.open(FileChannel.open(tmp, StandardOpenOption.WRITE), columns)) {
+                rows = rowsWriter.write(body, out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @param body all-country /cases body
+     * @param out  writer of CASES_COLUMNS
+     * @return number of rows written
+     */
+    public static long writeCases(InputStream body, TableWriter out) throws IOException {
+        long before = out.getRowCount();
+        JsonUtils.forEachElementByMember(body, "All", (country, jsonReader) -> {
+            CasesUrlResponse cases = GSON.fromJson(jsonReader, CasesUrlResponse.class);
+            out.writeString(country);
+            out.writeString(cases.getAbbreviation());
+            out.writeString(cases.getContinent());
+            out.writeString(cases.getLocation());
+            out.writeLong(cases.getPopulation());
+            out.writeLong(cases.getConfirmed());
+            out.writeLong(cases.getRecovered());
+            out.writeLong(cases.getDeaths());
+            out.endRow();
+        });
+        return out.getRowCount() - before;
+    }
+
+    /**
+     * @param body all-country /vaccines body
+     * @param out  writer of VACCINES_COLUMNS
+     * @return number of rows written
+     */
+    public static long writeVaccines(InputStream body, TableWriter out) throws IOException {
+        long before = out.getRowCount();
+        JsonUtils.forEachElementByMember(body, "All", (country, jsonReader) -> {
+            VaccinesUrlResponse vaccines = GSON.fromJson(jsonReader, VaccinesUrlResponse.class);
+            out.writeString(country);
+            out.writeLong(vaccines.getPopulation());
+            out.writeLong(vaccines.getPeopleVaccinated());
+            out.writeDouble(vaccines.getPopulation() == 0L ? Double.NaN
+                    : (vaccines.getPeopleVaccinated() + 0d) / vaccines.getPopulation() * 100);
+            out.endRow();
+        });
+        return out.getRowCount() - before;
+    }
+
+    /**
+     * writes a row for every date of every country, straight from the JSON reader, no series is built
+     *
+     * @param body all-country /history body
+     * @param out  writer of HISTORY_COLUMNS
+     * @return number of rows written
+     */
+    public static long writeHistory(InputStream body, TableWriter out) throws IOException {
+        long before = out.getRowCount();
+        JsonUtils.forEachElementByMember(body, "All",
+                (country, jsonReader) -> writeDates(country, jsonReader, out));
+        return out.getRowCount() - before;
+    }
+
+    private static void writeDates(String country, JsonReader jsonReader, TableWriter out) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+            return;
+        }
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (!jsonReader.nextName().equals("dates") || jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                jsonReader.skipValue();
+                continue;
+            }
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                int epochDay = TimeSeriesTypeAdapter.parseEpochDay(jsonReader.nextName());
+                if (jsonReader.peek() == JsonToken.NULL) {
+                    jsonReader.nextNull();
+                    continue;
+                }
+                out.writeString(country);
+                out.writeDate(epochDay);
+                out.writeLong(jsonReader.nextLong());
+                out.endRow();
+            }
+            jsonReader.endObject();
+        }
+        jsonReader.endObject();
+    }
+}
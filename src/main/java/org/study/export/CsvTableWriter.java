@@ -0,0 +1,93 @@
+package org.study.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV with a header row: strings are quoted only when they contain a comma, quote or line break,
+ * missing values are empty cells, dates are yyyy-MM-dd
+ */
+public class CsvTableWriter extends AbstractTableWriter {
+
+    private final ChannelOutput out;
+
+    public CsvTableWriter(WritableByteChannel channel, List<Column> columns) throws IOException {
+        super(columns);
+        out = new ChannelOutput(channel, ChannelOutput.DEFAULT_BUFFER_SIZE);
+        for (int i = 0; i < this.columns.size(); i++) {
+            if (i > 0) out.put((byte) ',');
+            putString(this.columns.get(i).getName());
+        }
+        out.put((byte) '\n');
+    }
+
+    private void separate(int column) throws IOException {
+        if (column > 0) out.put((byte) ',');
+    }
+
+    private void putString(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            out.putUtf8(value);
+            return;
+        }
+        out.put((byte) '"');
+        for (int from = 0, quote; from <= value.length(); from = quote + 1) {
+            quote = value.indexOf('"', from);
+            if (quote < 0) quote = value.length();
+            out.putUtf8(value.subSequence(from, quote));
+            if (quote < value.length()) {
+                out.put((byte) '"');
+                out.put((byte) '"');
+            }
+        }
+        out.put((byte) '"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void writeString(int column, String value) throws IOException {
+        separate(column);
+        putString(value);
+    }
+
+    @Override
+    protected void writeLong(int column, long value) throws IOException {
+        separate(column);
+        out.putDecimal(value);
+    }
+
+    @Override
+    protected void writeDouble(int column, double value) throws IOException {
+        separate(column);
+        out.putUtf8(Double.toString(value));
+    }
+
+    @Override
+    protected void writeDate(int column, int epochDay) throws IOException {
+        separate(column);
+        out.putIsoDate(epochDay);
+    }
+
+    @Override
+    protected void writeNull(int column) throws IOException {
+        separate(column);
+    }
+
+    @Override
+    protected void endRow(long row) throws IOException {
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
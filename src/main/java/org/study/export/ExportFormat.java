@@ -0,0 +1,49 @@
+package org.study.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * File formats of export, with the extension of their files
+ */
+public enum ExportFormat {
+    CSV("csv"),
+    JSON_LINES("jsonl"),
+    COLUMNAR("c19c");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public TableWriter open(WritableByteChannel channel, List<Column> columns) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvTableWriter(channel, columns);
+            case JSON_LINES:
+                return new JsonLinesTableWriter(channel, columns);
+            default:
+                return new ColumnarTableWriter(channel, columns);
+        }
+    }
+
+    /**
+     * @param name name or extension of format in any case, e.g. "csv", "jsonl", "json_lines", "columnar"
+     * @return format
+     * @throws IllegalArgumentException if there is no such format
+     */
+    public static ExportFormat parse(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (format.extension.equals(key) || format.name().toLowerCase(Locale.ROOT).equals(key)) return format;
+        }
+        throw new IllegalArgumentException("Unknown export format " + name);
+    }
+}
@@ -0,0 +1,110 @@
+package org.study.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * One JSON object per line, e.g. {"country":"France","date":"2022-08-18","confirmed":34548574};
+ * missing values are null, dates are "yyyy-MM-dd" strings
+ */
+public class JsonLinesTableWriter extends AbstractTableWriter {
+
+    private final ChannelOutput out;
+    //{"name": of the first column and ,"name": of the others, encoded once
+    private final byte[][] prefixes;
+
+    public JsonLinesTableWriter(WritableByteChannel channel, List<Column> columns) {
+        super(columns);
+        out = new ChannelOutput(channel, ChannelOutput.DEFAULT_BUFFER_SIZE);
+        prefixes = new byte[this.columns.size()][];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = ((i == 0 ? "{" : ",") + quote(this.columns.get(i).getName()) + ":")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String quote(String name) {
+        StringBuilder sb = new StringBuilder(name.length() + 2).append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\');
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private void putString(String value) throws IOException {
+        out.put((byte) '"');
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            out.putUtf8(value.subSequence(from, i));
+            out.put((byte) '\\');
+            if (c == '"' || c == '\\') {
+                out.put((byte) c);
+            } else if (c == '\n') {
+                out.put((byte) 'n');
+            } else if (c == '\t') {
+                out.put((byte) 't');
+            } else if (c == '\r') {
+                out.put((byte) 'r');
+            } else {
+                out.put((byte) 'u');
+                out.putDecimal(0, 2);
+                out.put((byte) Character.forDigit(c >> 4, 16));
+                out.put((byte) Character.forDigit(c & 0xF, 16));
+            }
+            from = i + 1;
+        }
+        out.putUtf8(from == 0 ? value : value.subSequence(from, value.length()));
+        out.put((byte) '"');
+    }
+
+    @Override
+    protected void writeString(int column, String value) throws IOException {
+        out.putBytes(prefixes[column]);
+        putString(value);
+    }
+
+    @Override
+    protected void writeLong(int column, long value) throws IOException {
+        out.putBytes(prefixes[column]);
+        out.putDecimal(value);
+    }
+
+    @Override
+    protected void writeDouble(int column, double value) throws IOException {
+        out.putBytes(prefixes[column]);
+        //JSON has no infinities
+        if (Double.isInfinite(value)) out.putUtf8("null");
+        else out.putUtf8(Double.toString(value));
+    }
+
+    @Override
+    protected void writeDate(int column, int epochDay) throws IOException {
+        out.putBytes(prefixes[column]);
+        out.put((byte) '"');
+        out.putIsoDate(epochDay);
+        out.put((byte) '"');
+    }
+
+    @Override
+    protected void writeNull(int column) throws IOException {
+        out.putBytes(prefixes[column]);
+        out.putUtf8("null");
+    }
+
+    @Override
+    protected void endRow(long row) throws IOException {
+        out.put((byte) '}');
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,36 @@
+package org.study.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes rows of a table cell by cell, in column order, without keeping rows which are already written
+ * <p>
+ * Typed cells keep primitive values unboxed; a write of the wrong type for the current column
+ * throws IllegalStateException.
+ */
+public interface TableWriter extends Closeable {
+
+    List<Column> getColumns();
+
+    void writeString(String value) throws IOException;
+
+    void writeLong(long value) throws IOException;
+
+    void writeDouble(double value) throws IOException;
+
+    void writeDate(int epochDay) throws IOException;
+
+    /**
+     * writes a missing value of any type
+     */
+    void writeNull() throws IOException;
+
+    /**
+     * ends current row, every column has to be written
+     */
+    void endRow() throws IOException;
+
+    long getRowCount();
+}
@@ -0,0 +1,57 @@
+package org.study.metrics;
+
+import java.time.Duration;
+
+/**
+ * Percentile of a LatencyHistogram which is read far more often than it changes noticeably: the value is kept
+ * and recomputed only after a number of new samples or once it is older than max age, as every computation
+ * reads all buckets of the histogram.
+ */
+public class CachedPercentile {
+
+    private final LatencyHistogram histogram;
+    private final double percentile;
+    private final long recomputeSamples;
+    private final long maxAgeNanos;
+    private volatile Estimate estimate;
+
+    /**
+     * @param percentile       from 0 to 100
+     * @param recomputeSamples new samples after which the value is recomputed
+     * @param maxAge           age after which the value is recomputed however few samples there are
+     */
+    public CachedPercentile(LatencyHistogram histogram, double percentile, long recomputeSamples,
+                            Duration maxAge) {
+        this.histogram = histogram;
+        this.percentile = percentile;
+        this.recomputeSamples = recomputeSamples;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * @return percentile of the histogram as of the last recomputation, 0 if it is empty
+     */
+    public long get() {
+        Estimate current = estimate;
+        long count = histogram.getCount();
+        long now = System.nanoTime();
+        if (current == null || count - current.count >= recomputeSamples || now - current.atNanos >= maxAgeNanos) {
+            //concurrent callers may both recompute, either result is as good
+            current = new Estimate(histogram.getValueAtPercentile(percentile), count, now);
+            estimate = current;
+        }
+        return current.value;
+    }
+
+    private static final class Estimate {
+        final long value;
+        final long count;
+        final long atNanos;
+
+        Estimate(long value, long count, long atNanos) {
+            this.value = value;
+            this.count = count;
+            this.atNanos = atNanos;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.study.metrics;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of one upstream endpoint, all times are in microseconds.
+ * <ul>
+ *     <li>headers latency: from sending request to response headers, covers DNS, connect, TLS and upstream;
+ *     it is also kept apart for single-country and all-country requests, whose latencies differ widely</li>
+ *     <li>body latency: from headers to the end of body, covers transfer and parsing which overlap
+ *     when body is parsed while it is streamed</li>
+ *     <li>parse CPU: CPU time of the parsing thread while reading body, i.e. decompression and JSON cost
+ *     without waiting</li>
+ * </ul>
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean {
+
+    private final String name;
+    private final LatencyHistogram headersLatency = new LatencyHistogram();
+    private final LatencyHistogram singleHeadersLatency = new LatencyHistogram();
+    private final LatencyHistogram allHeadersLatency = new LatencyHistogram();
+    private final LatencyHistogram bodyLatency = new LatencyHistogram();
+    private final LatencyHistogram parseCpu = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+
+    public EndpointMetrics(String name) {
+        this.name = name;
+    }
+
+    public void recordRequest() {
+        requests.increment();
+    }
+
+    /**
+     * @param allCountries whether the request was for all countries at once
+     */
+    public void recordHeaders(int statusCode, long nanos, boolean allCountries) {
+        statusCodes.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+        headersLatency.record(nanos / 1000);
+        getHeadersLatency(allCountries).record(nanos / 1000);
+        if (statusCode != 200) errors.increment();
+    }
+
+    /**
+     * @param bytes        body size on the wire
+     * @param decodedBytes body size after decompression
+     */
+    public void recordBody(long bytes, long decodedBytes, long nanos, long parseCpuNanos) {
+        responseBytes.add(bytes);
+        this.decodedBytes.add(decodedBytes);
+        bodyLatency.record(nanos / 1000);
+        if (parseCpuNanos >= 0) parseCpu.record(parseCpuNanos / 1000);
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    /**
+     * counts failed exchange, as timeout if HttpTimeoutException is somewhere in the causes
+     */
+    public void recordFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTimeoutException) {
+                timeouts.increment();
+                return;
+            }
+        }
+        errors.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getHeadersLatency() {
+        return headersLatency;
+    }
+
+    /**
+     * @return headers latency of all-country or of single-country requests only
+     */
+    public LatencyHistogram getHeadersLatency(boolean allCountries) {
+        return allCountries ? allHeadersLatency : singleHeadersLatency;
+    }
+
+    public LatencyHistogram getBodyLatency() {
+        return bodyLatency;
+    }
+
+    public LatencyHistogram getParseCpu() {
+        return parseCpu;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    @Override
+    public long getHeadersLatencyP50Micros() {
+        return headersLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getHeadersLatencyP99Micros() {
+        return headersLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getHeadersLatencyMaxMicros() {
+        return headersLatency.getMax();
+    }
+
+    @Override
+    public long getBodyLatencyP50Micros() {
+        return bodyLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getBodyLatencyP99Micros() {
+        return bodyLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getParseCpuP50Micros() {
+        return parseCpu.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getParseCpuP99Micros() {
+        return parseCpu.getValueAtPercentile(99);
+    }
+
+    @Override
+    public Map<Integer, Long> getStatusCodes() {
+        Map<Integer, Long> codes = new TreeMap<>();
+        statusCodes.forEach((code, count) -> codes.put(code, count.sum()));
+        return codes;
+    }
+}
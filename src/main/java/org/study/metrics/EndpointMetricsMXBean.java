@@ -0,0 +1,39 @@
+package org.study.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of EndpointMetrics, registered as org.study:type=Covid19InfoService,endpoint=NAME
+ */
+public interface EndpointMetricsMXBean {
+
+    long getRequests();
+
+    long getErrors();
+
+    long getTimeouts();
+
+    long getRetries();
+
+    long getHedges();
+
+    long getResponseBytes();
+
+    long getDecodedBytes();
+
+    long getHeadersLatencyP50Micros();
+
+    long getHeadersLatencyP99Micros();
+
+    long getHeadersLatencyMaxMicros();
+
+    long getBodyLatencyP50Micros();
+
+    long getBodyLatencyP99Micros();
+
+    long getParseCpuP50Micros();
+
+    long getParseCpuP99Micros();
+
+    Map<Integer, Long> getStatusCodes();
+}
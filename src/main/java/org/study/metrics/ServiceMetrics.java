@@ -0,0 +1,103 @@
+package org.study.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of every upstream endpoint of Covid19InfoService
+ */
+public class ServiceMetrics {
+
+    public static final String OTHER = "OTHER";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    /**
+     * endpoint name by its URL, e.g. CASES_URL
+     */
+    private final Map<String, String> endpointByUrl = new LinkedHashMap<>();
+    private final Map<String, EndpointMetrics> endpoints = new LinkedHashMap<>();
+
+    /**
+     * @param urlByEndpoint URL of every endpoint by its name
+     */
+    public ServiceMetrics(Map<String, String> urlByEndpoint) {
+        urlByEndpoint.forEach((endpoint, url) -> {
+            endpointByUrl.put(url, endpoint);
+            endpoints.put(endpoint, new EndpointMetrics(endpoint));
+        });
+        endpoints.put(OTHER, new EndpointMetrics(OTHER));
+    }
+
+    /**
+     * @param uri request URI with parameters
+     * @return metrics of endpoint uri belongs to, OTHER if there is no such endpoint
+     */
+    public EndpointMetrics forUri(String uri) {
+        for (Map.Entry<String, String> e : endpointByUrl.entrySet()) {
+            String url = e.getKey();
+            if (uri.startsWith(url) && (uri.length() == url.length() || uri.charAt(url.length()) == '?')) {
+                return endpoints.get(e.getValue());
+            }
+        }
+        return endpoints.get(OTHER);
+    }
+
+    public EndpointMetrics get(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return CPU time of current thread in nanoseconds or -1 if JVM can't measure it
+     */
+    public static long currentThreadCpuNanos() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1L;
+    }
+
+    /**
+     * registers every endpoint as org.study:type=Covid19InfoService,endpoint=NAME,
+     * replacing beans registered under the same names before
+     */
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (EndpointMetrics metrics : endpoints.values()) {
+                ObjectName name = new ObjectName("org.study:type=Covid19InfoService,endpoint=" + metrics.getName());
+                if (server.isRegistered(name)) server.unregisterMBean(name);
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Can't register metrics in JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return table with one line per endpoint which has seen any request, times in milliseconds
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-13s %8s %6s %8s %7s %6s %12s %12s %9s %9s %9s %9s %9s %9s  %s%n", "endpoint",
+                "requests", "errors", "timeouts", "retries", "hedges", "bytes", "decoded", "hdr p50", "hdr p99", "hdr max", "body p50", "body p99",
+                "parse p50", "status codes"));
+        for (EndpointMetrics m : endpoints.values()) {
+            if (m.getRequests() == 0) continue;
+            sb.append(String.format("%-13s %8d %6d %8d %7d %6d %12d %12d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f  %s%n",
+                    m.getName(), m.getRequests(), m.getErrors(), m.getTimeouts(), m.getRetries(), m.getHedges(),
+                    m.getResponseBytes(), m.getDecodedBytes(),
+                    m.getHeadersLatencyP50Micros() / 1000d, m.getHeadersLatencyP99Micros() / 1000d,
+                    m.getHeadersLatencyMaxMicros() / 1000d, m.getBodyLatencyP50Micros() / 1000d,
+                    m.getBodyLatencyP99Micros() / 1000d, m.getParseCpuP50Micros() / 1000d, m.getStatusCodes()));
+        }
+        return sb.toString();
+    }
+}
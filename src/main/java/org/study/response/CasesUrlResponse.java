@@ -7,4 +7,8 @@ public class CasesUrlResponse {
     private long confirmed;
     private long recovered;
     private long deaths;
+    private String abbreviation;
+    private String continent;
+    private String location;
+    private long population;
 }
@@ -1,13 +1,20 @@
 package org.study.response;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import lombok.Data;
-
-import java.util.Date;
-import java.util.Map;
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.utils.TimeSeriesTypeAdapter;
 
 @Data
 public class HistoryUrlResponse {
     @SerializedName("dates")
-    private Map<Date, Long> confirmedByDateMap;
+    @JsonAdapter(TimeSeriesTypeAdapter.class)
+    private TimeSeries confirmedByDate;
+    /**
+     * indicators of confirmedByDate, kept once computed (see HistoryAnalytics.analyze(HistoryUrlResponse)),
+     * not part of the JSON
+     */
+    private transient volatile HistoryStats stats;
 }
@@ -0,0 +1,219 @@
+package org.study.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+import org.study.service.ResponseCache;
+import org.study.utils.JsonUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves CountryCovidData as JSON:
+ * <pre>
+ *   GET /country/{name}
+ *   GET /countries?names=France,Germany   (at most MAX_NAMES names)
+ * </pre>
+ * Serialized JSON of every country is cached by its resolved name, so hot countries are written out without
+ * running Gson again, however their names are spelled. Results which miss a part because upstream failed are
+ * served but not cached, so that a single failure is not served for the whole TTL.
+ * Request threads only start lookups, responses are sent when lookups complete, so a slow upstream does not
+ * hold a thread per request.
+ */
+public class Covid19InfoServer implements AutoCloseable {
+
+    static {
+        //JDK server writes headers and body in separate packets, with Nagle's algorithm on the body waits
+        //for the client's delayed ACK (~40 ms); must be set before the first HttpServer is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static final byte[] NOT_FOUND = "{\"error\": \"not found\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NO_NAMES = "{\"error\": \"names parameter is required\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LOOKUP_FAILED = "{\"error\": \"lookup failed\"}".getBytes(StandardCharsets.UTF_8);
+    /**
+     * names accepted by one /countries request, a few more than there are countries
+     */
+    static final int MAX_NAMES = 250;
+    private static final byte[] TOO_MANY_NAMES = ("{\"error\": \"at most " + MAX_NAMES + " names are allowed\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Covid19InfoService infoService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ResponseCache<CountryJson> jsonCache;
+    private final Duration jsonTtl;
+
+    /**
+     * @param infoService service answering lookups
+     * @param port        port to listen on, 0 for any free port
+     * @param threads     number of threads accepting requests
+     * @param jsonTtl     how long serialized country is served from cache
+     */
+    public Covid19InfoServer(Covid19InfoService infoService, int port, int threads, Duration jsonTtl)
+            throws IOException {
+        this.infoService = infoService;
+        this.jsonTtl = jsonTtl;
+        this.jsonCache = new ResponseCache<>(4096, jsonTtl, Clock.systemUTC(), json -> json.complete);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/country/", this::handleCountry);
+        server.createContext("/countries", this::handleCountries);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ResponseCache<?> getJsonCache() {
+        return jsonCache;
+    }
+
+    private void handleCountry(HttpExchange exchange) throws IOException {
+        if (!checkGet(exchange)) return;
+        String country = exchange.getRequestURI().getPath().substring("/country/".length()).trim();
+        if (country.isEmpty()) {
+            send(exchange, 404, NOT_FOUND);
+            return;
+        }
+        getCountryJson(country).whenComplete((json, e) -> send(exchange, e == null ? 200 : 500,
+                e == null ? json : LOOKUP_FAILED));
+    }
+
+    private void handleCountries(HttpExchange exchange) throws IOException {
+        if (!checkGet(exchange)) return;
+        List<String> countries = getNames(exchange.getRequestURI().getRawQuery());
+        if (countries.isEmpty()) {
+            send(exchange, 400, NO_NAMES);
+            return;
+        }
+        if (countries.size() > MAX_NAMES) {
+            send(exchange, 400, TOO_MANY_NAMES);
+            return;
+        }
+        List<CompletableFuture<byte[]>> jsons = new ArrayList<>(countries.size());
+        for (String country : countries) {
+            jsons.add(getCountryJson(country));
+        }
+        CompletableFuture.allOf(jsons.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((v, e) -> send(exchange, e == null ? 200 : 500,
+                        e == null ? joinArray(jsons) : LOOKUP_FAILED));
+    }
+
+    /**
+     * @return serialized CountryCovidData, from cache if it was serialized recently; the cache is keyed by
+     * the name input resolves to, so spellings of one country share an entry, and the lookup takes that
+     * name without resolving it again
+     */
+    CompletableFuture<byte[]> getCountryJson(String country) {
+        return infoService.resolveAsync(country).thenCompose(match -> {
+            if (!match.isResolved()) {
+                //suggestions need no upstream
+                return infoService.getCountryCovidDataAsync(match).thenApply(Covid19InfoServer::toJson);
+            }
+            return jsonCache.get(match.getCountry(), jsonTtl, () -> infoService.getCountryCovidDataAsync(match)
+                    .thenApply(ccd -> new CountryJson(toJson(ccd), ccd.isComplete())))
+                    .thenApply(json -> json.bytes);
+        });
+    }
+
+    private static byte[] toJson(CountryCovidData ccd) {
+        return JsonUtils.gson().toJson(ccd).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serialized country and whether it may be cached
+     */
+    private static final class CountryJson {
+        final byte[] bytes;
+        final boolean complete;
+
+        CountryJson(byte[] bytes, boolean complete) {
+            this.bytes = bytes;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * @return JSON array of already serialized elements
+     */
+    private static byte[] joinArray(List<CompletableFuture<byte[]>> elements) {
+        int length = 2 + Math.max(0, elements.size() - 1);
+        for (CompletableFuture<byte[]> element : elements) {
+            length += element.join().length;
+        }
+        byte[] array = new byte[length];
+        int position = 0;
+        array[position++] = '[';
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) array[position++] = ',';
+            byte[] element = elements.get(i).join();
+            System.arraycopy(element, 0, array, position, element.length);
+            position += element.length;
+        }
+        array[position] = ']';
+        return array;
+    }
+
+    /**
+     * @return distinct non-blank values of comma separated "names" parameter, no more than MAX_NAMES + 1
+     */
+    private static List<String> getNames(String rawQuery) {
+        List<String> names = new ArrayList<>();
+        if (rawQuery == null) return names;
+        for (String pair : rawQuery.split("&")) {
+            if (!pair.startsWith("names=")) continue;
+            for (String name : URLDecoder.decode(pair.substring("names=".length()), StandardCharsets.UTF_8).split(",")) {
+                String trimmed = name.trim();
+                if (!trimmed.isEmpty() && !names.contains(trimmed)) names.add(trimmed);
+                if (names.size() > MAX_NAMES) return names;
+            }
+        }
+        return names;
+    }
+
+    private static boolean checkGet(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET")) return true;
+        exchange.getResponseHeaders().set("Allow", "GET");
+        exchange.sendResponseHeaders(405, -1);
+        exchange.close();
+        return false;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) {
+        try (OutputStream os = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            os.write(body);
+        } catch (IOException e) {
+            //client has gone, nothing to answer to
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
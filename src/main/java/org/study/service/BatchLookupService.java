@@ -0,0 +1,83 @@
+package org.study.service;
+
+import org.study.entity.CountryCovidData;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Looks up many countries with one Covid19InfoService, keeping at most concurrency lookups in flight
+ */
+public class BatchLookupService {
+
+    private final Covid19InfoService infoService;
+    private final int concurrency;
+
+    /**
+     * @param infoService service shared by all lookups
+     * @param concurrency max number of lookups in flight
+     */
+    public BatchLookupService(Covid19InfoService infoService, int concurrency) {
+        if (concurrency < 1) throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        this.infoService = infoService;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * reads country names line by line and passes results to sink as soon as each lookup completes,
+     * blank lines are skipped
+     *
+     * @param countries reader with one country name per line
+     * @param sink      receives results in completion order
+     * @param failures  receives "Can't look up COUNTRY: cause" for every lookup which failed, so that no country
+     *                  of the list is missing from output; neither consumer is called concurrently
+     * @return number of looked up countries
+     */
+    public int run(BufferedReader countries, Consumer<CountryCovidData> sink, Consumer<String> failures)
+            throws IOException, InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger count = new AtomicInteger();
+        String line;
+        while ((line = countries.readLine()) != null) {
+            String country = line.trim();
+            if (country.isEmpty()) continue;
+            permits.acquire();
+            count.incrementAndGet();
+            CompletableFuture<CountryCovidData> lookup;
+            try {
+                lookup = infoService.getCountryCovidDataAsync(country);
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            lookup.whenComplete((ccd, e) -> {
+                try {
+                    synchronized (sink) {
+                        if (ccd != null) {
+                            sink.accept(ccd);
+                        } else {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null
+                                    ? e.getCause() : e;
+                            failures.accept("Can't look up " + country + ": " + cause);
+                        }
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        //wait for the lookups still in flight
+        permits.acquire(concurrency);
+        permits.release(concurrency);
+        return count.get();
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+}
@@ -0,0 +1,122 @@
+package org.study.service;
+
+import org.study.entity.TimeSeries;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content hash of every country of the previous snapshot, taken over the values CountryCovidData is made of:
+ * cases, vaccines and the latest point of history. Comparing the next snapshot against it costs one hash
+ * per country and no serialization.
+ */
+public class ChangeFeed {
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long ABSENT = 0x5DEECE66DL;
+
+    private Map<String, Long> hashByCountry = new HashMap<>();
+
+    /**
+     * Countries of a snapshot which differ from the previous one
+     */
+    public final class Changes {
+        private final List<String> countries;
+        private final Map<String, Long> hashes;
+
+        private Changes(List<String> countries, Map<String, Long> hashes) {
+            this.countries = countries;
+            this.hashes = hashes;
+        }
+
+        /**
+         * @return new and changed countries in order of snapshot, then countries gone from it
+         */
+        public List<String> getCountries() {
+            return countries;
+        }
+
+        /**
+         * makes the snapshot the previous one, to be called once its changes are delivered
+         */
+        public void commit() {
+            synchronized (ChangeFeed.this) {
+                hashByCountry = hashes;
+            }
+        }
+    }
+
+    /**
+     * @return changes of snapshot since the last committed one, every country is new for the first snapshot
+     */
+    public synchronized Changes diff(CovidDataSnapshot snapshot) {
+        Collection<String> countries = snapshot.getCountries();
+        Map<String, Long> hashes = new HashMap<>(countries.size() * 2);
+        List<String> changed = new ArrayList<>();
+        for (String country : countries) {
+            long hash = hash(snapshot.getCases(country), snapshot.getVaccines(country), snapshot.getHistory(country));
+            hashes.put(country, hash);
+            Long previous = hashByCountry.get(country);
+            if (previous == null || previous != hash) changed.add(country);
+        }
+        for (String country : hashByCountry.keySet()) {
+            if (!hashes.containsKey(country)) changed.add(country);
+        }
+        return new Changes(Collections.unmodifiableList(changed), hashes);
+    }
+
+    /**
+     * @return number of countries of the last committed snapshot
+     */
+    public synchronized int getCountryCount() {
+        return hashByCountry.size();
+    }
+
+    /**
+     * @return hash of the values of responses which make up CountryCovidData, null responses included
+     */
+    static long hash(CasesUrlResponse cases, VaccinesUrlResponse vaccines, HistoryUrlResponse history) {
+        long h = 1;
+        if (cases == null) {
+            h = mix(h, ABSENT);
+        } else {
+            h = mix(mix(mix(h, cases.getConfirmed()), cases.getRecovered()), cases.getDeaths());
+        }
+        if (vaccines == null) {
+            h = mix(h, ABSENT);
+        } else {
+            h = mix(mix(h, vaccines.getPeopleVaccinated()), vaccines.getPopulation());
+        }
+        TimeSeries confirmedByDate = history == null ? null : history.getConfirmedByDate();
+        if (confirmedByDate == null || confirmedByDate.isEmpty()) {
+            h = mix(h, history == null ? ABSENT : 0L);
+        } else {
+            int latest = confirmedByDate.size() - 1;
+            h = mix(mix(mix(h, confirmedByDate.size()), confirmedByDate.getEpochDay(latest)),
+                    confirmedByDate.getValue(latest));
+        }
+        return finish(h);
+    }
+
+    private static long mix(long h, long value) {
+        return (h ^ value) * MULTIPLIER + (h >>> 29);
+    }
+
+    /**
+     * spreads every bit of h over the result (finalizer of MurmurHash3)
+     */
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,14 @@
+package org.study.service;
+
+/**
+ * Thrown when a request is not sent because the queue of its endpoint's concurrency limiter is full
+ * or the request waited in it for longer than its deadline allows
+ */
+public class ConcurrencyLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrencyLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,220 @@
+package org.study.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit of concurrent requests to one upstream endpoint, AIMD driven by errors and latency.
+ * <p>
+ * Every successful request that ran while at least half of the limit was in use raises the limit by 1/limit,
+ * i.e. by one per limit's worth of requests. A request throttled by upstream (429, 5xx), timed out, or slower
+ * than latencyTolerance times the baseline latency (the lowest recent latency, drifting slowly upwards;
+ * the caller tells the latency of a request, e.g. until its response headers, as the body says little
+ * about upstream load)
+ * multiplies the limit by BACKOFF_RATIO, but only if it was started after the previous decrease, so one
+ * overload episode shrinks the limit once rather than once per failed request.
+ * <p>
+ * Requests over the limit wait in a bounded FIFO queue; when the queue is full, or a request can't get a permit
+ * within its deadline, it fails with ConcurrencyLimitException rather than adding to upstream load.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * how a request ended, as far as the limit is concerned
+     */
+    public enum Outcome {
+        SUCCESS,
+        /**
+         * throttled or timed out, upstream is over capacity
+         */
+        DROPPED,
+        /**
+         * says nothing about upstream capacity, e.g. 404 or cancelled
+         */
+        IGNORED
+    }
+
+    static final double BACKOFF_RATIO = 0.75;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final double latencyTolerance;
+    private final ArrayDeque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double baselineNanos = -1;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+
+    /**
+     * @param name             name of endpoint
+     * @param initialLimit     limit to start with
+     * @param minLimit         lowest limit, at least 1
+     * @param maxLimit         highest limit
+     * @param maxQueued        maximum number of requests waiting for a permit
+     * @param latencyTolerance latency over baseline which counts as overload, e.g. 2 for twice the baseline
+     */
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                              double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits " + minLimit + ".." + maxLimit);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @param maxWait how long a request may wait in queue
+     * @return future of permit, completed at once while the limit isn't reached; completed exceptionally
+     * with ConcurrencyLimitException if the queue is full or maxWait passes, cancelling it gives up the place
+     * in queue. A permit must be released exactly once.
+     */
+    public CompletableFuture<Permit> acquire(Duration maxWait) {
+        CompletableFuture<Permit> waiter = new CompletableFuture<>();
+        synchronized (this) {
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                waiter.complete(new Permit(System.nanoTime()));
+                return waiter;
+            }
+            if (queue.size() >= maxQueued) {
+                rejected.increment();
+                waiter.completeExceptionally(new ConcurrencyLimitException(
+                        "Queue of " + name + " is full at limit " + (int) limit));
+                return waiter;
+            }
+            queue.addLast(waiter);
+        }
+        CompletableFuture.delayedExecutor(Math.max(0L, maxWait.toMillis()), TimeUnit.MILLISECONDS).execute(() -> {
+            boolean queued;
+            synchronized (this) {
+                queued = queue.remove(waiter);
+            }
+            //not in queue any more when it was given a permit meanwhile
+            if (queued && waiter.completeExceptionally(new ConcurrencyLimitException(
+                    "No permit for " + name + " within " + maxWait.toMillis() + " ms"))) {
+                rejected.increment();
+            }
+        });
+        return waiter;
+    }
+
+    private void release(Permit permit, Outcome outcome, long latencyNanos) {
+        List<CompletableFuture<Permit>> waiters = new ArrayList<>();
+        List<Permit> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            long now = System.nanoTime();
+            if (outcome == Outcome.SUCCESS) {
+                long latency = latencyNanos >= 0 ? latencyNanos : now - permit.startNanos;
+                boolean slow = baselineNanos > 0 && latency > baselineNanos * latencyTolerance;
+                baselineNanos = baselineNanos < 0 || latency < baselineNanos ? latency
+                        : baselineNanos + (latency - baselineNanos) * BASELINE_DRIFT;
+                if (slow) {
+                    decrease(permit, now);
+                } else if (permit.inFlightAtStart * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            } else if (outcome == Outcome.DROPPED) {
+                drops.increment();
+                decrease(permit, now);
+            }
+            while (!queue.isEmpty() && inFlight < (int) limit) {
+                CompletableFuture<Permit> waiter = queue.pollFirst();
+                //timed out or cancelled while queued
+                if (waiter.isDone()) continue;
+                inFlight++;
+                waiters.add(waiter);
+                granted.add(new Permit(now));
+            }
+        }
+        //completed outside the lock, as dependent stages run right away
+        for (int i = 0; i < waiters.size(); i++) {
+            //lost a race with timeout or cancel, pass the permit on
+            if (!waiters.get(i).complete(granted.get(i))) granted.get(i).release(Outcome.IGNORED);
+        }
+    }
+
+    private void decrease(Permit permit, long now) {
+        if (permit.startNanos <= lastDecreaseNanos) return;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastDecreaseNanos = now;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of requests failed because the queue was full or their wait was too long
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of requests throttled by upstream or timed out
+     */
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    /**
+     * Right to have one request in flight
+     */
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private boolean released;
+
+        //created with the limiter's lock held
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlight;
+        }
+
+        /**
+         * releases permit with the time it was held as latency
+         */
+        public void release(Outcome outcome) {
+            release(outcome, -1L);
+        }
+
+        /**
+         * @param latencyNanos latency of the request compared against the baseline, the time the permit was held
+         *                     if negative
+         */
+        public void release(Outcome outcome, long latencyNanos) {
+            synchronized (this) {
+                if (released) return;
+                released = true;
+            }
+            ConcurrencyLimiter.this.release(this, outcome, latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package org.study.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Index of country names as upstream spells them (its country keys) and their aliases, which resolves user input
+ * without any network I/O.
+ * <p>
+ * Names are normalized (case, accents, punctuation) and looked up in a hash map; for input which matches
+ * nothing, candidates come from a trigram index and from a prefix range of the sorted names, and are ranked
+ * by edit distance.
+ */
+public final class CountryIndex {
+
+    /**
+     * common names of countries upstream spells differently, used only for countries which are in the index
+     */
+    static final Map<String, String> COMMON_ALIASES = Map.ofEntries(
+            Map.entry("United States", "US"),
+            Map.entry("United States of America", "US"),
+            Map.entry("USA", "US"),
+            Map.entry("America", "US"),
+            Map.entry("UK", "United Kingdom"),
+            Map.entry("Great Britain", "United Kingdom"),
+            Map.entry("Britain", "United Kingdom"),
+            Map.entry("South Korea", "Korea, South"),
+            Map.entry("Korea", "Korea, South"),
+            Map.entry("Taiwan", "Taiwan*"),
+            Map.entry("Czech Republic", "Czechia"),
+            Map.entry("Ivory Coast", "Cote d'Ivoire"),
+            Map.entry("Myanmar", "Burma"),
+            Map.entry("Macedonia", "North Macedonia"),
+            Map.entry("Vatican", "Holy See"),
+            Map.entry("Swaziland", "Eswatini"),
+            Map.entry("East Timor", "Timor-Leste"),
+            Map.entry("Congo", "Congo (Kinshasa)"),
+            Map.entry("Democratic Republic of the Congo", "Congo (Kinshasa)"),
+            Map.entry("Republic of the Congo", "Congo (Brazzaville)"));
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final int MAX_SUGGESTIONS = 5;
+
+    private final Map<String, String> countryByKey;
+    private final String[] sortedKeys;
+    private final String[] countryOfSortedKey;
+    private final int[] trigramCounts;
+    private final Map<String, int[]> keysByTrigram;
+    private final int countries;
+
+    private CountryIndex(Map<String, String> countryByKey, int countries) {
+        this.countryByKey = countryByKey;
+        this.countries = countries;
+        sortedKeys = countryByKey.keySet().toArray(new String[0]);
+        Arrays.sort(sortedKeys);
+        countryOfSortedKey = new String[sortedKeys.length];
+        trigramCounts = new int[sortedKeys.length];
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < sortedKeys.length; i++) {
+            countryOfSortedKey[i] = countryByKey.get(sortedKeys[i]);
+            Set<String> keyTrigrams = trigrams(sortedKeys[i]);
+            trigramCounts[i] = keyTrigrams.size();
+            for (String trigram : keyTrigrams) {
+                postings.computeIfAbsent(trigram, t -> new ArrayList<>()).add(i);
+            }
+        }
+        keysByTrigram = new HashMap<>(postings.size() * 2);
+        postings.forEach((trigram, keys) -> keysByTrigram.put(trigram, keys.stream().mapToInt(k -> k).toArray()));
+    }
+
+    /**
+     * @param countries country names as upstream spells them
+     * @param aliases   other names of countries, e.g. abbreviations, mapped to upstream names;
+     *                  aliases of countries which are not in countries are ignored
+     * @return index of countries, aliases and COMMON_ALIASES
+     */
+    public static CountryIndex of(Collection<String> countries, Map<String, String> aliases) {
+        Set<String> names = new LinkedHashSet<>(countries);
+        Map<String, String> countryByKey = new HashMap<>(names.size() * 4);
+        for (String country : names) {
+            countryByKey.putIfAbsent(normalize(country), country);
+        }
+        //upstream names win over aliases which normalize the same
+        for (Map<String, String> aliasMap : List.of(aliases, COMMON_ALIASES)) {
+            aliasMap.forEach((alias, country) -> {
+                if (names.contains(country)) countryByKey.putIfAbsent(normalize(alias), country);
+            });
+        }
+        countryByKey.remove("");
+        return new CountryIndex(countryByKey, names.size());
+    }
+
+    public static CountryIndex of(Collection<String> countries) {
+        return of(countries, Collections.emptyMap());
+    }
+
+    /**
+     * @return lower case name without accents, with words separated by single spaces
+     */
+    static String normalize(String name) {
+        String decomposed = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * @param input name of country as user typed it
+     * @return upstream name of country, or suggestions of the closest names if input matches no name or alias
+     */
+    public Match resolve(String input) {
+        if (input == null) return new Match(null, null, List.of());
+        String country = countryByKey.get(normalize(input));
+        if (country != null) return new Match(input, country, List.of());
+        return new Match(input, null, suggest(input, MAX_SUGGESTIONS));
+    }
+
+    /**
+     * @param input name of country as user typed it
+     * @param limit maximum number of suggestions
+     * @return upstream names of countries closest to input, closest first
+     */
+    public List<String> suggest(String input, int limit) {
+        String key = normalize(input);
+        if (key.isEmpty()) return List.of();
+        int[] sharedTrigrams = new int[sortedKeys.length];
+        Set<String> inputTrigrams = trigrams(key);
+        for (String trigram : inputTrigrams) {
+            int[] keys = keysByTrigram.get(trigram);
+            if (keys == null) continue;
+            for (int k : keys) {
+                sharedTrigrams[k]++;
+            }
+        }
+        //names starting with input, e.g. "germ"
+        int first = Arrays.binarySearch(sortedKeys, key);
+        if (first < 0) first = -first - 1;
+        List<Candidate> candidates = new ArrayList<>();
+        for (int k = 0; k < sortedKeys.length; k++) {
+            boolean prefix = k >= first && sortedKeys[k].startsWith(key);
+            if (!prefix && sharedTrigrams[k] == 0) continue;
+            double similarity = 2d * sharedTrigrams[k] / (inputTrigrams.size() + trigramCounts[k]);
+            if (!prefix && similarity < 0.3) continue;
+            int distance = prefix ? 0 : editDistance(key, sortedKeys[k]);
+            if (!prefix && distance > Math.max(2, key.length() / 2)) continue;
+            candidates.add(new Candidate(countryOfSortedKey[k], distance, similarity));
+        }
+        candidates.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+                : Double.compare(b.similarity, a.similarity));
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (Candidate candidate : candidates) {
+            if (suggestions.size() == limit) break;
+            suggestions.add(candidate.country);
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    /**
+     * @return trigrams of key padded with spaces, so first and last letters carry weight
+     */
+    private static Set<String> trigrams(String key) {
+        String padded = "  " + key + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * @return Damerau-Levenshtein distance (optimal string alignment), a swap of neighbours counts as one edit
+     */
+    static int editDistance(String a, String b) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, previous2[j - 2] + 1);
+                }
+                current[j] = d;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * @return number of countries, aliases not counted
+     */
+    public int size() {
+        return countries;
+    }
+
+    private static final class Candidate {
+        final String country;
+        final int distance;
+        final double similarity;
+
+        Candidate(String country, int distance, double similarity) {
+            this.country = country;
+            this.distance = distance;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Result of resolving user input: upstream name of country or suggestions
+     */
+    public static final class Match {
+        private final String input;
+        private final String country;
+        private final List<String> suggestions;
+
+        Match(String input, String country, List<String> suggestions) {
+            this.input = input;
+            this.country = country;
+            this.suggestions = suggestions;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        /**
+         * @return upstream name of country or null if input is unknown
+         */
+        public String getCountry() {
+            return country;
+        }
+
+        public boolean isResolved() {
+            return country != null;
+        }
+
+        /**
+         * @return closest names if input is unknown, closest first, may be empty
+         */
+        public List<String> getSuggestions() {
+            return suggestions;
+        }
+    }
+}
@@ -1,60 +1,1185 @@
 package org.study.service;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.MalformedJsonException;
 import org.study.entity.CountryCovidData;
+import org.study.entity.CountryCovidDataStore;
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.export.Column;
+import org.study.export.CovidDataExport;
+import org.study.export.ExportFormat;
+import org.study.metrics.CachedPercentile;
+import org.study.metrics.EndpointMetrics;
+import org.study.metrics.LatencyHistogram;
+import org.study.metrics.ServiceMetrics;
 import org.study.response.CasesUrlResponse;
 import org.study.response.HistoryUrlResponse;
 import org.study.response.VaccinesUrlResponse;
+import org.study.utils.ContentEncodings;
+import org.study.utils.CountingInputStream;
 import org.study.utils.JsonUtils;
 import org.study.utils.ParameterStringBuilder;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.time.Duration;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 public class Covid19InfoService {
 
+    /**
+     * system property with path of properties file, read instead of app.properties
+     */
+    public static final String APP_PROPERTIES_PROPERTY = "app.properties";
+    private static final String APP_PROPERTIES = "app.properties";
+    private static final long DEFAULT_REQUEST_TIMEOUT_SECONDS = 10L;
+    private static final int DEFAULT_CACHE_MAX_SIZE = 1024;
+    private static final long DEFAULT_CACHE_STALE_SECONDS = 600L;
+    private static final long DEFAULT_SNAPSHOT_MAX_AGE_SECONDS = 86400L;
+    private static final long DEFAULT_SNAPSHOT_REFRESH_SECONDS = 3600L;
+    private static final long DEFAULT_LOOKUP_DEADLINE_MILLIS = 5000L;
+    private static final long DEFAULT_COUNTRY_INDEX_RETRY_SECONDS = 30L;
+    private static final int DEFAULT_MAX_RETRIES = 2;
+    private static final long DEFAULT_RETRY_BACKOFF_MILLIS = 50L;
+    private static final double DEFAULT_HEDGE_PERCENTILE = 95d;
+    private static final long DEFAULT_HEDGE_MIN_SAMPLES = 20L;
+    private static final long HEDGE_DELAY_RECOMPUTE_SAMPLES = 32L;
+    private static final Duration HEDGE_DELAY_MAX_AGE = Duration.ofSeconds(1);
+    private static final double DEFAULT_UPSTREAM_MAX_REQUESTS_PER_SECOND = 20d;
+    private static final long DEFAULT_REFRESH_AHEAD_SECONDS = 60L;
+    private static final long DEFAULT_REFRESH_AHEAD_JITTER_MILLIS = 5000L;
+    private static final long DEFAULT_REFRESH_AHEAD_THREADS = 2L;
+    private static final long DEFAULT_REFRESH_AHEAD_INTERVAL_MILLIS = 1000L;
+    private static final long DEFAULT_CONCURRENCY_INITIAL_LIMIT = 8L;
+    private static final long DEFAULT_CONCURRENCY_MIN_LIMIT = 1L;
+    private static final long DEFAULT_CONCURRENCY_MAX_LIMIT = 64L;
+    private static final long DEFAULT_CONCURRENCY_MAX_QUEUED = 1024L;
+    private static final double DEFAULT_CONCURRENCY_LATENCY_TOLERANCE = 3d;
+    private static final String ALL_COUNTRIES_SUFFIX = "/all";
+
     Properties appProps;
-    HttpClient httpClient;
+    /**
+     * created by the first request to upstream, see getHttpClient()
+     */
+    private volatile HttpClient httpClient;
+    Duration requestTimeout;
+    String acceptEncoding;
+    Duration lookupDeadline;
+    int maxRetries;
+    Duration retryBackoff;
+    double hedgePercentile;
+    long hedgeMinSamples;
+    /**
+     * hedge delay by endpoint name, see getHedgeDelayMillis
+     */
+    final Map<String, CachedPercentile> hedgeDelays = new ConcurrentHashMap<>();
+    volatile WorldSnapshot snapshot;
+    /**
+     * time after which a prefetched snapshot is too old to answer lookups, Long.MAX_VALUE for a loaded one
+     */
+    volatile long snapshotExpiresAtMillis = Long.MAX_VALUE;
+    final AtomicBoolean snapshotPrefetching = new AtomicBoolean();
+    ResponseCache<Object> responseCache;
+    Map<String, Duration> ttlByUrl;
+    ServiceMetrics metrics;
+    HistoryStore historyStore;
+    boolean countryIndexEnabled;
+    /**
+     * whether the country index may be built from an all-country /cases request, see setCountryIndexFetching
+     */
+    volatile boolean countryIndexFetching = true;
+    volatile CountryIndex countryIndex;
+    CompletableFuture<CountryIndex> countryIndexLoading;
+    Duration countryIndexRetryAfter;
+    /**
+     * time before which a failed all-country /cases request for the index is not tried again
+     */
+    long countryIndexRetryAtMillis;
+    /**
+     * UPSTREAM_MAX_REQUESTS_PER_SECOND, every request to upstream takes a permit, but only refresh-ahead
+     * waits for them, lookups are never held back
+     */
+    RateLimiter upstreamRateLimiter;
+    RefreshAheadScheduler refreshAhead;
+    /**
+     * adaptive concurrency limiter by endpoint name, null if ADAPTIVE_CONCURRENCY is off
+     */
+    Map<String, ConcurrencyLimiter> concurrencyLimiters;
+    private WorldSnapshot aggregatedSnapshot;
+    private RegionAggregates regionAggregates;
+    final SingleFlight<Object> singleFlight = new SingleFlight<>();
+    Clock clock;
+    Path snapshotFile;
+    volatile SnapshotStore snapshotStore;
+    Duration snapshotMaxAge;
+    Duration snapshotRefreshAfter;
+    final AtomicBoolean snapshotStoreRefreshing = new AtomicBoolean();
+    final ChangeFeed changeFeed = new ChangeFeed();
 
     public Covid19InfoService() throws IOException {
-        String appConfigPath = new File(".").getCanonicalPath() + "\\app.properties";
-        appProps = new Properties();
-        appProps.load(new FileInputStream(appConfigPath));
-        httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this(loadAppProps());
+    }
+
+    /**
+     * @param appProps properties with endpoint URLs (CASES_URL, VACCINES_URL, HISTORY_URL) and optional settings
+     */
+    public Covid19InfoService(Properties appProps) {
+        this(appProps, Clock.systemUTC());
+    }
+
+    /**
+     * @param appProps properties with endpoint URLs (CASES_URL, VACCINES_URL, HISTORY_URL) and optional settings
+     * @param clock    source of current time for cache expiry and snapshot file age
+     */
+    public Covid19InfoService(Properties appProps, Clock clock) {
+        this.appProps = appProps;
+        this.clock = clock;
+        requestTimeout = Duration.ofSeconds(getLongProperty("REQUEST_TIMEOUT_SECONDS", DEFAULT_REQUEST_TIMEOUT_SECONDS));
+        acceptEncoding = appProps.getProperty("ACCEPT_ENCODING", ContentEncodings.SUPPORTED).trim();
+        lookupDeadline = Duration.ofMillis(getLongProperty("LOOKUP_DEADLINE_MILLIS", DEFAULT_LOOKUP_DEADLINE_MILLIS));
+        maxRetries = (int) getLongProperty("MAX_RETRIES", DEFAULT_MAX_RETRIES);
+        retryBackoff = Duration.ofMillis(getLongProperty("RETRY_BACKOFF_MILLIS", DEFAULT_RETRY_BACKOFF_MILLIS));
+        hedgePercentile = getDoubleProperty("HEDGE_PERCENTILE", DEFAULT_HEDGE_PERCENTILE);
+        hedgeMinSamples = getLongProperty("HEDGE_MIN_SAMPLES", DEFAULT_HEDGE_MIN_SAMPLES);
+        responseCache = new ResponseCache<>((int) getLongProperty("CACHE_MAX_SIZE", DEFAULT_CACHE_MAX_SIZE),
+                Duration.ofSeconds(getLongProperty("CACHE_STALE_SECONDS", DEFAULT_CACHE_STALE_SECONDS)),
+                clock, Objects::nonNull);
+        ttlByUrl = new HashMap<>();
+        Map<String, String> urlByEndpoint = new LinkedHashMap<>();
+        for (String endpoint : new String[]{"CASES", "VACCINES", "HISTORY"}) {
+            String url = appProps.getProperty(endpoint + "_URL");
+            if (url == null) continue;
+            ttlByUrl.put(url, Duration.ofSeconds(getLongProperty(endpoint + "_TTL_SECONDS", 0L)));
+            urlByEndpoint.put(endpoint + "_URL", url);
+        }
+        metrics = new ServiceMetrics(urlByEndpoint);
+        snapshotMaxAge = Duration.ofSeconds(getLongProperty("SNAPSHOT_MAX_AGE_SECONDS", DEFAULT_SNAPSHOT_MAX_AGE_SECONDS));
+        snapshotRefreshAfter = Duration.ofSeconds(
+                getLongProperty("SNAPSHOT_REFRESH_SECONDS", DEFAULT_SNAPSHOT_REFRESH_SECONDS));
+        historyStore = openHistoryStore();
+        upstreamRateLimiter = new RateLimiter(getDoubleProperty("UPSTREAM_MAX_REQUESTS_PER_SECOND",
+                DEFAULT_UPSTREAM_MAX_REQUESTS_PER_SECOND), clock);
+        int refreshAheadTopK = (int) getLongProperty("REFRESH_AHEAD_TOP_K", 0L);
+        if (refreshAheadTopK > 0) {
+            refreshAhead = new RefreshAheadScheduler(this, refreshAheadTopK,
+                    Duration.ofSeconds(getLongProperty("REFRESH_AHEAD_SECONDS", DEFAULT_REFRESH_AHEAD_SECONDS)),
+                    Duration.ofMillis(getLongProperty("REFRESH_AHEAD_JITTER_MILLIS",
+                            DEFAULT_REFRESH_AHEAD_JITTER_MILLIS)),
+                    upstreamRateLimiter,
+                    (int) getLongProperty("REFRESH_AHEAD_THREADS", DEFAULT_REFRESH_AHEAD_THREADS));
+        }
+        if (Boolean.parseBoolean(appProps.getProperty("ADAPTIVE_CONCURRENCY", "false").trim())) {
+            concurrencyLimiters = new ConcurrentHashMap<>();
+        }
+        countryIndexEnabled = Boolean.parseBoolean(appProps.getProperty("COUNTRY_INDEX", "false").trim());
+        countryIndexRetryAfter = Duration.ofSeconds(
+                getLongProperty("COUNTRY_INDEX_RETRY_SECONDS", DEFAULT_COUNTRY_INDEX_RETRY_SECONDS));
+        String snapshotFileName = appProps.getProperty("SNAPSHOT_FILE");
+        if (snapshotFileName != null && !snapshotFileName.isBlank()) {
+            snapshotFile = Path.of(snapshotFileName.trim());
+            openSnapshotStore();
+        }
+    }
+
+    private long getLongProperty(String name, long defaultValue) {
+        String value = appProps.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private double getDoubleProperty(String name, double defaultValue) {
+        String value = appProps.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * opens HISTORY_STORE_FILE or keeps history in memory if it is not set or can't be opened
+     */
+    private HistoryStore openHistoryStore() {
+        int overlapDays = (int) getLongProperty("HISTORY_OVERLAP_DAYS", HistoryStore.DEFAULT_OVERLAP_DAYS);
+        String historyFileName = appProps.getProperty("HISTORY_STORE_FILE");
+        if (historyFileName != null && !historyFileName.isBlank()) {
+            try {
+                return HistoryStore.open(Path.of(historyFileName.trim()), overlapDays);
+            } catch (IOException e) {
+                System.err.println("Can't open history store " + historyFileName + ": " + e.getMessage());
+            }
+        }
+        return HistoryStore.inMemory(overlapDays);
+    }
+
+    /**
+     * reads the file named by system property "app.properties" if it is set,
+     * else app.properties of working directory, else app.properties of classpath
+     */
+    static Properties loadAppProps() throws IOException {
+        Properties props = new Properties();
+        String configured = System.getProperty(APP_PROPERTIES_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            try (InputStream in = Files.newInputStream(Path.of(configured.trim()))) {
+                props.load(in);
+            }
+            return props;
+        }
+        Path local = Path.of(APP_PROPERTIES);
+        if (Files.isRegularFile(local)) {
+            try (InputStream in = Files.newInputStream(local)) {
+                props.load(in);
+            }
+            return props;
+        }
+        try (InputStream in = Covid19InfoService.class.getResourceAsStream("/" + APP_PROPERTIES)) {
+            if (in == null) throw new FileNotFoundException(APP_PROPERTIES + " is neither in working directory "
+                    + "nor on classpath, set -D" + APP_PROPERTIES_PROPERTY + "=<file>");
+            props.load(in);
+        }
+        return props;
+    }
+
+    /**
+     * @return client for upstream requests, created on first use, so that lookups answered from the snapshot
+     * file or cache don't start its selector thread
+     */
+    HttpClient getHttpClient() {
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .connectTimeout(Duration.ofSeconds(10))
+                            .build();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
     }
 
     public CountryCovidData getCountryCovidData(String country) {
+        return getCountryCovidDataAsync(country).join();
+    }
+
+    /**
+     * answers "World", a continent or (with a loaded snapshot) a location from region totals,
+     * otherwise resolves country with the country index first, an unknown name is answered with suggestions
+     * and never reaches upstream
+     *
+     * @param country String
+     * @return future of CountryCovidData
+     */
+    public CompletableFuture<CountryCovidData> getCountryCovidDataAsync(String country) {
+        Deadline deadline = Deadline.after(lookupDeadline);
+        return resolveAsync(country, deadline).thenCompose(match -> getCountryCovidDataAsync(match, deadline));
+    }
+
+    /**
+     * resolves input the way getCountryCovidDataAsync does, for callers which need the name before the data,
+     * e.g. as a cache key
+     *
+     * @param country name as user typed it
+     * @return future of match: upstream name of country, world or region name as it is, input itself if the
+     * country index is off, or suggestions if input is unknown
+     */
+    public CompletableFuture<CountryIndex.Match> resolveAsync(String country) {
+        return resolveAsync(country, Deadline.after(lookupDeadline));
+    }
+
+    /**
+     * looks up a match of resolveAsync without resolving it again
+     *
+     * @param match resolved input
+     * @return future of CountryCovidData, suggestions if match is not resolved
+     */
+    public CompletableFuture<CountryCovidData> getCountryCovidDataAsync(CountryIndex.Match match) {
+        return getCountryCovidDataAsync(match, Deadline.after(lookupDeadline));
+    }
+
+    private CompletableFuture<CountryIndex.Match> resolveAsync(String country, Deadline deadline) {
+        if (isRegion(country)) {
+            return CompletableFuture.completedFuture(new CountryIndex.Match(country, country, List.of()));
+        }
+        return getCountryIndexAsync(deadline).thenApply(index ->
+                index == null ? new CountryIndex.Match(country, country, List.of()) : index.resolve(country));
+    }
+
+    private CompletableFuture<CountryCovidData> getCountryCovidDataAsync(CountryIndex.Match match, Deadline deadline) {
+        if (!match.isResolved()) {
+            return CompletableFuture.completedFuture(CountryCovidData.builder()
+                    .country(match.getInput())
+                    .suggestions(match.getSuggestions())
+                    .build());
+        }
+        if (isRegion(match.getCountry())) return getRegionCovidDataAsync(match.getCountry());
+        return lookupAsync(match.getCountry(), deadline);
+    }
+
+    /**
+     * @return true for the world, a continent or, with a loaded snapshot, a location which is not a country
+     */
+    private boolean isRegion(String name) {
+        WorldSnapshot currentSnapshot = getLookupSnapshot();
+        return RegionAggregates.isWorldOrContinent(name) || currentSnapshot != null
+                && currentSnapshot.getCases(name) == null
+                && getRegionAggregates(currentSnapshot).get(name) != null;
+    }
+
+    /**
+     * starts /cases, /vaccines and /history requests at once and combines them when all of them are done,
+     * a failed or timed out endpoint leaves its part of the result as "info not available";
+     * the endpoints run in parallel, so each of them gets what is left of the lookup's LOOKUP_DEADLINE_MILLIS
+     * budget and the lookup is answered by then at the latest;
+     * history is merged into the history store and read from it, so it is still there when /history fails
+     *
+     * @param country  String
+     * @param deadline deadline of the lookup, started before the country was resolved
+     * @return future of CountryCovidData
+     */
+    private CompletableFuture<CountryCovidData> lookupAsync(String country, Deadline deadline) {
+        //counted wherever the answer comes from, so the cache is warm when a snapshot expires
+        if (refreshAhead != null) refreshAhead.recordLookup(country);
+        WorldSnapshot currentSnapshot = getLookupSnapshot();
+        if (currentSnapshot != null) {
+            return CompletableFuture.completedFuture(getCountryCovidData(country, currentSnapshot));
+        }
+        SnapshotStore store = getFreshSnapshotStore();
+        if (store != null) {
+            return CompletableFuture.completedFuture(getCountryCovidData(country, store));
+        }
+
+        Map<String, String> parameters = getCountryParameters(country);
+        Map<String, String> historyParameters = getHistoryParameters(country);
+        long budgetMillis = deadline.remainingMillis();
+
+        //confirmed, recovered, deaths
+        CompletableFuture<CasesUrlResponse> cases =
+                fetchAsync(appProps.getProperty("CASES_URL"), parameters, CasesUrlResponse.class, deadline)
+                        .completeOnTimeout(null, budgetMillis, TimeUnit.MILLISECONDS);
+        //peopleVaccinated, population
+        CompletableFuture<VaccinesUrlResponse> vaccines =
+                fetchAsync(appProps.getProperty("VACCINES_URL"), parameters, VaccinesUrlResponse.class, deadline)
+                        .completeOnTimeout(null, budgetMillis, TimeUnit.MILLISECONDS);
+        //confirmed according to date
+        CompletableFuture<HistoryUrlResponse> fetchedHistory =
+                fetchParsedAsync(appProps.getProperty("HISTORY_URL"), historyParameters,
+                        body -> historyStore.merge(country, body), deadline)
+                        .completeOnTimeout(null, budgetMillis, TimeUnit.MILLISECONDS);
+        CompletableFuture<HistoryUrlResponse> history = fetchedHistory
+                .thenApply(merged -> merged != null ? merged : historyStore.getResponse(country));
+
+        //fill result object
+        return CompletableFuture.allOf(cases, vaccines, history).thenApply(v -> {
+            return getCountryCovidData(country, cases.join(), vaccines.join(), history.join(),
+                    cases.join() != null && vaccines.join() != null && fetchedHistory.join() != null);
+        });
+    }
+
+    private static Map<String, String> getCountryParameters(String country) {
         Map<String, String> parameters = new HashMap<>();
         parameters.put("country", country);
+        return parameters;
+    }
+
+    private static Map<String, String> getHistoryParameters(String country) {
+        Map<String, String> parameters = getCountryParameters(country);
+        parameters.put("status", "confirmed");
+        return parameters;
+    }
+
+    /**
+     * reloads cached /cases, /vaccines and /history responses of country ahead of their expiry
+     *
+     * @param country upstream name of country
+     * @return future completed with true if all responses were reloaded and cached
+     */
+    public CompletableFuture<Boolean> refreshCountryAsync(String country) {
+        Deadline deadline = Deadline.after(lookupDeadline);
+        Map<String, String> parameters = getCountryParameters(country);
+        CompletableFuture<Boolean> cases = refreshParsedAsync(appProps.getProperty("CASES_URL"), parameters,
+                getElementParser(CasesUrlResponse.class), deadline);
+        CompletableFuture<Boolean> vaccines = refreshParsedAsync(appProps.getProperty("VACCINES_URL"), parameters,
+                getElementParser(VaccinesUrlResponse.class), deadline);
+        CompletableFuture<Boolean> history = refreshParsedAsync(appProps.getProperty("HISTORY_URL"),
+                getHistoryParameters(country), body -> historyStore.merge(country, body), deadline);
+        return CompletableFuture.allOf(cases, vaccines, history)
+                .thenApply(v -> cases.join() && vaccines.join() && history.join());
+    }
+
+    /**
+     * @return time until the first of cached /cases, /vaccines and /history responses of country expires,
+     * negative if one has expired, null if one is not cached
+     */
+    public Duration getTimeToLive(String country) {
+        Map<String, String> parameters = getCountryParameters(country);
+        Duration min = null;
+        for (String uri : new String[]{
+                appProps.getProperty("CASES_URL") + ParameterStringBuilder.getParamsString(parameters),
+                appProps.getProperty("VACCINES_URL") + ParameterStringBuilder.getParamsString(parameters),
+                appProps.getProperty("HISTORY_URL")
+                        + ParameterStringBuilder.getParamsString(getHistoryParameters(country))}) {
+            Duration timeToLive = responseCache.getTimeToLive(uri);
+            if (timeToLive == null) return null;
+            if (min == null || timeToLive.compareTo(min) < 0) min = timeToLive;
+        }
+        return min;
+    }
+
+    /**
+     * starts refreshing the most requested countries ahead of expiry if REFRESH_AHEAD_TOP_K is set,
+     * meant for long-running modes
+     */
+    public void startRefreshAhead() {
+        if (refreshAhead != null) {
+            refreshAhead.start(Duration.ofMillis(
+                    getLongProperty("REFRESH_AHEAD_INTERVAL_MILLIS", DEFAULT_REFRESH_AHEAD_INTERVAL_MILLIS)));
+        }
+    }
+
+    public RefreshAheadScheduler getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    /**
+     * sums countries of region from the loaded snapshot, or from all-country /cases and /vaccines responses
+     * fetched for it (and cached like any other response) if no snapshot is loaded; /history, the largest
+     * of the payloads, isn't needed for totals and isn't fetched
+     *
+     * @param region "World", continent or location like "Western Europe"
+     * @return future of region totals, "info not available" if region is unknown
+     */
+    public CompletableFuture<CountryCovidData> getRegionCovidDataAsync(String region) {
+        WorldSnapshot currentSnapshot = getLookupSnapshot();
+        CompletableFuture<WorldSnapshot> source = currentSnapshot != null
+                ? CompletableFuture.completedFuture(currentSnapshot) : fetchCasesAndVaccinesAsync();
+        return source.thenApply(world -> {
+            RegionAggregates aggregates = getRegionAggregates(world);
+            CountryCovidData totals = aggregates.get(region);
+            return totals != null ? totals
+                    : CountryCovidData.builder().country(region).complete(aggregates.isComplete()).build();
+        });
+    }
+
+    /**
+     * @return totals of regions of snapshot, computed once per snapshot
+     */
+    public synchronized RegionAggregates getRegionAggregates(WorldSnapshot world) {
+        if (aggregatedSnapshot != world) {
+            regionAggregates = RegionAggregates.compute(world);
+            aggregatedSnapshot = world;
+        }
+        return regionAggregates;
+    }
+
+    /**
+     * generates CountryCovidData from snapshot without any network I/O
+     *
+     * @param country  String
+     * @param snapshot CovidDataSnapshot
+     */
+    public CountryCovidData getCountryCovidData(String country, CovidDataSnapshot snapshot) {
+        return getCountryCovidData(country, snapshot.getCases(country), snapshot.getVaccines(country),
+                snapshot.getHistory(country), true);
+    }
+
+    /**
+     * fetches /cases, /vaccines and /history for all countries at once (one request per endpoint)
+     * and answers every following lookup from this snapshot
+     *
+     * @return future of loaded snapshot
+     */
+    public CompletableFuture<WorldSnapshot> loadSnapshotAsync() {
+        return fetchSnapshotAsync().thenApply(loaded -> {
+            snapshotExpiresAtMillis = Long.MAX_VALUE;
+            snapshot = loaded;
+            if (!loaded.getCountries().isEmpty()) countryIndex = buildCountryIndex(loaded);
+            return loaded;
+        });
+    }
 
-        //do /cases request in order to get confirmed, recovered, deaths
-        String content = doRequest(appProps.getProperty("CASES_URL"), parameters);
-        CasesUrlResponse cases = getResponseObject(content, CasesUrlResponse.class);
+    public WorldSnapshot loadSnapshot() {
+        return loadSnapshotAsync().join();
+    }
+
+    /**
+     * fetches all countries in background and installs the snapshot only if every endpoint answered,
+     * until then lookups keep going to upstream. The snapshot answers lookups only as long as the cached
+     * all-country responses it was made of are fresh (*_TTL_SECONDS), then lookups go to upstream again
+     * and the next of them prefetches a new one; nothing is installed if those responses aren't cached.
+     * Does nothing while a prefetch is running.
+     *
+     * @return future completed with true if snapshot was installed
+     */
+    public CompletableFuture<Boolean> prefetchSnapshotAsync() {
+        if (!snapshotPrefetching.compareAndSet(false, true)) return CompletableFuture.completedFuture(false);
+        return fetchSnapshotAsync().thenApply(fetched -> {
+                    if (!fetched.isComplete()) return false;
+                    long expiresAtMillis = getAllCountryExpiresAtMillis();
+                    //stale responses are being revalidated, the next lookup prefetches again
+                    if (expiresAtMillis <= clock.millis()) return false;
+                    snapshotExpiresAtMillis = expiresAtMillis;
+                    snapshot = fetched;
+                    countryIndex = buildCountryIndex(fetched);
+                    return true;
+                })
+                .whenComplete((installed, e) -> snapshotPrefetching.set(false));
+    }
 
-        //do /vaccines request in order to get peopleVaccinated, population
-        content = doRequest(appProps.getProperty("VACCINES_URL"), parameters);
-        VaccinesUrlResponse vaccines = getResponseObject(content, VaccinesUrlResponse.class);
+    /**
+     * @return time at which the first of cached all-country /cases, /vaccines and /history responses expires,
+     * Long.MIN_VALUE if one of them isn't cached
+     */
+    private long getAllCountryExpiresAtMillis() {
+        long now = clock.millis();
+        long expiresAtMillis = Long.MAX_VALUE;
+        String historyParameters = ParameterStringBuilder.getParamsString(getAllHistoryParameters());
+        for (String uri : new String[]{appProps.getProperty("CASES_URL"), appProps.getProperty("VACCINES_URL"),
+                appProps.getProperty("HISTORY_URL") + historyParameters}) {
+            Duration timeToLive = responseCache.getTimeToLive(uri);
+            if (timeToLive == null) return Long.MIN_VALUE;
+            expiresAtMillis = Math.min(expiresAtMillis, now + timeToLive.toMillis());
+        }
+        return expiresAtMillis;
+    }
 
-        //do /history request in order to get confirmed according to date
+    private static Map<String, String> getAllHistoryParameters() {
+        Map<String, String> parameters = new HashMap<>();
         parameters.put("status", "confirmed");
-        content = doRequest(appProps.getProperty("HISTORY_URL"), parameters);
-        HistoryUrlResponse history = getResponseObject(content, HistoryUrlResponse.class);
+        return parameters;
+    }
 
-        //fill result object
-        return getCountryCovidData(country, cases, vaccines, history);
+    /**
+     * @return snapshot which answers lookups like getSnapshot(), an expired prefetched snapshot starts
+     * prefetching a new one
+     */
+    private WorldSnapshot getLookupSnapshot() {
+        WorldSnapshot current = getSnapshot();
+        if (current == null && snapshot != null) prefetchSnapshotAsync();
+        return current;
+    }
+
+    /**
+     * fetches /cases and /vaccines for all countries at once, which is all that region totals are made of
+     *
+     * @return future of fetched snapshot without history, endpoints which failed are empty in it
+     */
+    private CompletableFuture<WorldSnapshot> fetchCasesAndVaccinesAsync() {
+        Deadline deadline = Deadline.after(requestTimeout);
+        CompletableFuture<Map<String, CasesUrlResponse>> cases =
+                fetchAllAsync(appProps.getProperty("CASES_URL"), new HashMap<>(), CasesUrlResponse.class, deadline);
+        CompletableFuture<Map<String, VaccinesUrlResponse>> vaccines =
+                fetchAllAsync(appProps.getProperty("VACCINES_URL"), new HashMap<>(), VaccinesUrlResponse.class,
+                        deadline);
+        return cases.thenCombine(vaccines, (casesByCountry, vaccinesByCountry) ->
+                new WorldSnapshot(casesByCountry, vaccinesByCountry, Map.of(), clock.millis()));
+    }
+
+    /**
+     * fetches /cases, /vaccines and /history for all countries at once without installing the result
+     *
+     * @return future of fetched snapshot, endpoints which failed are empty in it
+     */
+    CompletableFuture<WorldSnapshot> fetchSnapshotAsync() {
+        Map<String, String> historyParameters = getAllHistoryParameters();
+        //bulk payloads are large, so they get the whole request timeout rather than the lookup budget
+        Deadline deadline = Deadline.after(requestTimeout);
+
+        CompletableFuture<Map<String, CasesUrlResponse>> cases =
+                fetchAllAsync(appProps.getProperty("CASES_URL"), new HashMap<>(), CasesUrlResponse.class, deadline);
+        CompletableFuture<Map<String, VaccinesUrlResponse>> vaccines =
+                fetchAllAsync(appProps.getProperty("VACCINES_URL"), new HashMap<>(), VaccinesUrlResponse.class,
+                        deadline);
+        CompletableFuture<Map<String, HistoryUrlResponse>> history =
+                fetchAllAsync(appProps.getProperty("HISTORY_URL"), historyParameters, HistoryUrlResponse.class,
+                        deadline);
+
+        return CompletableFuture.allOf(cases, vaccines, history).thenApply(v ->
+                new WorldSnapshot(cases.join(), vaccines.join(), history.join(), clock.millis()));
+    }
+
+    /**
+     * streams all-country /cases, /vaccines and /history bodies into files of format in directory,
+     * one file per endpoint (e.g. history.csv), bypassing the cache; rows are written while bodies are read,
+     * so memory use doesn't depend on the size of the data. Every file is written next to its target
+     * and moved into place when complete.
+     * <p>
+     * Requests are not retried or hedged, as a second attempt would have to start its file over.
+     *
+     * @return future of exported files and their row counts, completed exceptionally if any request
+     * or write failed
+     */
+    public CompletableFuture<Map<Path, Long>> exportAsync(Path directory, ExportFormat format) {
+        Map<String, String> historyParameters = new HashMap<>();
+        historyParameters.put("status", "confirmed");
+        Path casesFile = CovidDataExport.file(directory, CovidDataExport.CASES, format);
+        Path vaccinesFile = CovidDataExport.file(directory, CovidDataExport.VACCINES, format);
+        Path historyFile = CovidDataExport.file(directory, CovidDataExport.HISTORY, format);
+        CompletableFuture<Long> cases = exportTableAsync(appProps.getProperty("CASES_URL"), new HashMap<>(),
+                casesFile, format, CovidDataExport.CASES_COLUMNS, CovidDataExport::writeCases);
+        CompletableFuture<Long> vaccines = exportTableAsync(appProps.getProperty("VACCINES_URL"), new HashMap<>(),
+                vaccinesFile, format, CovidDataExport.VACCINES_COLUMNS, CovidDataExport::writeVaccines);
+        CompletableFuture<Long> history = exportTableAsync(appProps.getProperty("HISTORY_URL"), historyParameters,
+                historyFile, format, CovidDataExport.HISTORY_COLUMNS, CovidDataExport::writeHistory);
+        return CompletableFuture.allOf(cases, vaccines, history).thenApply(v -> {
+            Map<Path, Long> rowsByFile = new LinkedHashMap<>();
+            rowsByFile.put(casesFile, cases.join());
+            rowsByFile.put(vaccinesFile, vaccines.join());
+            rowsByFile.put(historyFile, history.join());
+            return rowsByFile;
+        });
+    }
+
+    private CompletableFuture<Long> exportTableAsync(String urlStr, Map<String, String> parameters, Path file,
+                                                     ExportFormat format, List<Column> columns,
+                                                     CovidDataExport.RowsWriter rowsWriter) {
+        String uri = urlStr + ParameterStringBuilder.getParamsString(parameters);
+        return sendAttemptAsync(uri, body -> CovidDataExport.writeFile(body, file, format, columns, rowsWriter),
+                metrics.forUri(uri), Deadline.after(requestTimeout));
+    }
+
+    /**
+     * @return snapshot which answers lookups, null if none was loaded or the prefetched one has expired
+     */
+    public WorldSnapshot getSnapshot() {
+        WorldSnapshot current = snapshot;
+        return current != null && clock.millis() < snapshotExpiresAtMillis ? current : null;
+    }
+
+    /**
+     * gives country index (COUNTRY_INDEX=true) built from the first source available: world snapshot,
+     * fresh snapshot file or one all-country /cases request
+     *
+     * @return future of country index, completed with null if index is off or can't be built
+     */
+    public CompletableFuture<CountryIndex> getCountryIndexAsync() {
+        return getCountryIndexAsync(Deadline.after(lookupDeadline));
+    }
+
+    /**
+     * gives country index like getCountryIndexAsync(), waiting for an all-country /cases request no longer than
+     * the deadline of the lookup which needs it; the request is shared by concurrent lookups, and after it failed
+     * lookups go without index for COUNTRY_INDEX_RETRY_SECONDS instead of each waiting for another try
+     *
+     * @param deadline deadline of the lookup
+     * @return future of country index, completed with null if index is off, can't be built or isn't built in time
+     */
+    synchronized CompletableFuture<CountryIndex> getCountryIndexAsync(Deadline deadline) {
+        if (!countryIndexEnabled) return CompletableFuture.completedFuture(null);
+        if (countryIndex != null) return CompletableFuture.completedFuture(countryIndex);
+        WorldSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null && !currentSnapshot.getCountries().isEmpty()) {
+            countryIndex = buildCountryIndex(currentSnapshot);
+            return CompletableFuture.completedFuture(countryIndex);
+        }
+        SnapshotStore store = getFreshSnapshotStore();
+        if (store != null) {
+            countryIndex = buildCountryIndex(store);
+            return CompletableFuture.completedFuture(countryIndex);
+        }
+        if (!countryIndexFetching || clock.millis() < countryIndexRetryAtMillis) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (countryIndexLoading == null) {
+            CompletableFuture<CountryIndex> loading = fetchAllAsync(appProps.getProperty("CASES_URL"), new HashMap<>(),
+                    CasesUrlResponse.class, deadline)
+                    .thenApply(casesByCountry -> {
+                        synchronized (this) {
+                            countryIndexLoading = null;
+                            if (casesByCountry.isEmpty()) {
+                                countryIndexRetryAtMillis = clock.millis() + countryIndexRetryAfter.toMillis();
+                                return null;
+                            }
+                            countryIndex = CountryIndex.of(casesByCountry.keySet(), getAbbreviations(casesByCountry));
+                            return countryIndex;
+                        }
+                    });
+            //completed at once when /cases is cached, there is nothing to wait for then
+            if (loading.isDone()) return loading;
+            countryIndexLoading = loading;
+        }
+        //a lookup which joined a request started by another one still waits no longer than its own deadline
+        return countryIndexLoading.copy().completeOnTimeout(null, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param fetching false to build the country index only from a snapshot, meant for one-shot lookups,
+     *                 which would otherwise wait for a whole all-country /cases request before their own requests
+     */
+    public void setCountryIndexFetching(boolean fetching) {
+        countryIndexFetching = fetching;
+    }
+
+    /**
+     * @return index of countries of snapshot with abbreviations of their cases, the same whether snapshot
+     * is in memory or in the snapshot file
+     */
+    private static CountryIndex buildCountryIndex(CovidDataSnapshot snapshot) {
+        Collection<String> countries = snapshot.getCountries();
+        Map<String, CasesUrlResponse> casesByCountry = new HashMap<>();
+        for (String country : countries) {
+            CasesUrlResponse cases = snapshot.getCases(country);
+            if (cases != null) casesByCountry.put(country, cases);
+        }
+        return CountryIndex.of(countries, getAbbreviations(casesByCountry));
+    }
+
+    /**
+     * @return map of abbreviations like "FR" to upstream country names
+     */
+    private static Map<String, String> getAbbreviations(Map<String, CasesUrlResponse> casesByCountry) {
+        Map<String, String> abbreviations = new HashMap<>();
+        casesByCountry.forEach((country, cases) -> {
+            if (cases.getAbbreviation() != null) abbreviations.put(cases.getAbbreviation(), country);
+        });
+        return abbreviations;
+    }
+
+    /**
+     * maps SNAPSHOT_FILE if it exists, a missing or broken file is treated as absent
+     */
+    private void openSnapshotStore() {
+        if (!Files.isRegularFile(snapshotFile)) return;
+        try {
+            SnapshotStore previous = snapshotStore;
+            snapshotStore = SnapshotStore.open(snapshotFile);
+            if (previous != null) previous.close();
+        } catch (IOException e) {
+            System.err.println("Can't read snapshot file " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * gives snapshot file if it is younger than SNAPSHOT_MAX_AGE_SECONDS,
+     * starts background refresh when file is missing or older than SNAPSHOT_REFRESH_SECONDS
+     *
+     * @return snapshot store or null if there is no fresh enough file
+     */
+    private SnapshotStore getFreshSnapshotStore() {
+        if (snapshotFile == null) return null;
+        SnapshotStore store = snapshotStore;
+        long ageMillis = store == null ? Long.MAX_VALUE : clock.millis() - store.getCreatedAtMillis();
+        if (ageMillis > snapshotRefreshAfter.toMillis()) refreshSnapshotStoreAsync();
+        return ageMillis <= snapshotMaxAge.toMillis() ? store : null;
+    }
+
+    /**
+     * fetches all countries and rewrites SNAPSHOT_FILE, does nothing if refresh is already running
+     *
+     * @return future completed with true when file was rewritten
+     */
+    public CompletableFuture<Boolean> refreshSnapshotStoreAsync() {
+        if (snapshotFile == null || !snapshotStoreRefreshing.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return fetchSnapshotAsync().thenApply(fetched -> {
+                    //keep the previous file rather than replace it with an empty one when upstream is down
+                    if (fetched.getCountries().isEmpty()) return false;
+                    try {
+                        SnapshotStore.write(snapshotFile, fetched);
+                    } catch (IOException e) {
+                        System.err.println("Can't write snapshot file " + snapshotFile + ": " + e.getMessage());
+                        return false;
+                    }
+                    openSnapshotStore();
+                    return true;
+                })
+                .whenComplete((written, e) -> snapshotStoreRefreshing.set(false));
+    }
+
+    public SnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
+    /**
+     * fetches all countries and writes CountryCovidData of every country whose cases, vaccines or latest history
+     * changed since the previous poll to out, one JSON object per line; a country gone from upstream is written
+     * with nothing but its name, the first poll writes every country. Unchanged countries are compared by
+     * content hash only, they are neither assembled nor serialized. Responses come through the response cache,
+     * so polls see upstream changes once *_TTL_SECONDS have passed. A snapshot missing an endpoint is skipped,
+     * as all of its countries would look changed. Polls are meant to run one at a time.
+     *
+     * @return future of number of lines written, -1 if snapshot was skipped
+     */
+    public CompletableFuture<Integer> pollChangesAsync(Appendable out) {
+        return fetchSnapshotAsync().thenApply(fetched -> {
+            if (!fetched.isComplete()) return -1;
+            ChangeFeed.Changes changes = changeFeed.diff(fetched);
+            try {
+                for (String country : changes.getCountries()) {
+                    JsonUtils.gson().toJson(getCountryCovidData(country, fetched), CountryCovidData.class, out);
+                    out.append('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            //a failed write leaves the previous snapshot in place, so its changes are written by the next poll
+            changes.commit();
+            return changes.getCountries().size();
+        });
+    }
+
+    /**
+     * performs an asynchronous GET request and fills response object of every country from its content
+     *
+     * @return future of map of country names to response objects, completed with empty map if request
+     * or parsing failed
+     */
+    <T> CompletableFuture<Map<String, T>> fetchAllAsync(String urlStr, Map<String, String> parameters,
+                                                        Class<T> classOfT, Deadline deadline) {
+        return fetchParsedAsync(urlStr, parameters,
+                body -> JsonUtils.readJsonElementsByMember(body, "All", classOfT, JsonUtils.gson()), deadline)
+                .thenApply(objects -> objects == null ? new LinkedHashMap<>() : objects);
+    }
+
+    /**
+     * performs an asynchronous GET request and fills response object from its content
+     *
+     * @param urlStr     String with URL
+     * @param parameters Map of parameters for GET request
+     * @param classOfT   class of response object
+     * @param deadline   time by which retries and hedged requests have to be done
+     * @param <T>        response object class parameter
+     * @return future of response object, completed with null if request or parsing failed
+     */
+    <T> CompletableFuture<T> fetchAsync(String urlStr, Map<String, String> parameters, Class<T> classOfT,
+                                        Deadline deadline) {
+        return fetchParsedAsync(urlStr, parameters, getElementParser(classOfT), deadline);
+    }
+
+    private static <T> BodyParser<T> getElementParser(Class<T> classOfT) {
+        return body -> JsonUtils.readJsonElement(body, "All", classOfT, JsonUtils.gson());
+    }
+
+    /**
+     * performs an asynchronous GET request and parses its body while it is streamed,
+     * parsed objects are cached for the TTL configured for the endpoint (*_TTL_SECONDS),
+     * concurrent requests of the same URI share one exchange and one parsed object (and the deadline
+     * of the caller which started it), every URI must always be parsed with the same parser
+     *
+     * @param urlStr     String with URL
+     * @param parameters Map of parameters for GET request
+     * @param parser     parser of response body
+     * @param deadline   time by which retries and hedged requests have to be done
+     * @param <T>        parsed object class parameter
+     * @return future of parsed object, completed with null if request or parsing failed
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> fetchParsedAsync(String urlStr, Map<String, String> parameters,
+                                                      BodyParser<T> parser, Deadline deadline) {
+        String uri = urlStr + ParameterStringBuilder.getParamsString(parameters);
+        return responseCache.get(uri, ttlByUrl.getOrDefault(urlStr, Duration.ZERO), getLoader(uri, parser, deadline))
+                .thenApply(parsed -> (T) parsed);
+    }
+
+    /**
+     * reloads response into the cache whether it has expired or not, with the same parser fetchParsedAsync uses
+     *
+     * @return future completed with true if response was reloaded and cached
+     */
+    private <T> CompletableFuture<Boolean> refreshParsedAsync(String urlStr, Map<String, String> parameters,
+                                                              BodyParser<T> parser, Deadline deadline) {
+        String uri = urlStr + ParameterStringBuilder.getParamsString(parameters);
+        return responseCache.refresh(uri, ttlByUrl.getOrDefault(urlStr, Duration.ZERO),
+                getLoader(uri, parser, deadline));
+    }
+
+    /**
+     * @return loader of uri which shares exchanges already in flight
+     */
+    private <T> Supplier<CompletableFuture<Object>> getLoader(String uri, BodyParser<T> parser, Deadline deadline) {
+        return () -> singleFlight.execute(uri,
+                () -> sendParsedAsync(uri, parser, null, deadline).thenApply(parsed -> (Object) parsed));
+    }
+
+    /**
+     * performs an asynchronous GET request bypassing the cache and parses body from InputStream,
+     * decompressing it on the way, so the whole payload is never held as a String; transient failures are retried with jittered backoff
+     * and a slow request is hedged by a second one, both only while the deadline allows
+     *
+     * @param failedValue value to complete with in case of response code is not 200, request timed out
+     *                    or failed, or body can't be parsed
+     * @return future of parsed object
+     */
+    private <T> CompletableFuture<T> sendParsedAsync(String uri, BodyParser<T> parser, T failedValue,
+                                                     Deadline deadline) {
+        return sendWithRetriesAsync(uri, parser, metrics.forUri(uri), deadline, 0)
+                .exceptionally(e -> {
+                    System.err.println("Request " + uri + " failed: " + unwrap(e));
+                    return failedValue;
+                });
+    }
+
+    private <T> CompletableFuture<T> sendWithRetriesAsync(String uri, BodyParser<T> parser,
+                                                          EndpointMetrics endpointMetrics, Deadline deadline,
+                                                          int retry) {
+        return sendHedgedAsync(uri, parser, endpointMetrics, deadline)
+                .handle((parsed, e) -> {
+                    if (e == null) return CompletableFuture.completedFuture(parsed);
+                    long backoffMillis = getBackoffMillis(retry);
+                    if (retry >= maxRetries || !isTransient(e) || deadline.remainingMillis() <= backoffMillis) {
+                        return CompletableFuture.<T>failedFuture(unwrap(e));
+                    }
+                    endpointMetrics.recordRetry();
+                    Executor delayed = CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.supplyAsync(() -> retry + 1, delayed)
+                            .thenCompose(next -> sendWithRetriesAsync(uri, parser, endpointMetrics, deadline, next));
+                })
+                .thenCompose(next -> next);
+    }
+
+    /**
+     * sends a second request when the first one is still running after HEDGE_PERCENTILE of the endpoint's
+     * headers latency, the first successful answer wins and the other request is cancelled
+     */
+    private <T> CompletableFuture<T> sendHedgedAsync(String uri, BodyParser<T> parser,
+                                                     EndpointMetrics endpointMetrics, Deadline deadline) {
+        CompletableFuture<T> primary = sendAttemptAsync(uri, parser, endpointMetrics, deadline);
+        long hedgeAfterMillis = getHedgeDelayMillis(uri, endpointMetrics);
+        if (hedgeAfterMillis < 0 || deadline.remainingMillis() <= hedgeAfterMillis) return primary;
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        //attempts still running, the result fails only when the last of them fails
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<T>> hedge = new AtomicReference<>();
+        race(primary, result, running);
+        CompletableFuture.delayedExecutor(hedgeAfterMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone() || deadline.isExpired()
+                    || running.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) return;
+            endpointMetrics.recordHedge();
+            CompletableFuture<T> second = sendAttemptAsync(uri, parser, endpointMetrics, deadline);
+            hedge.set(second);
+            race(second, result, running);
+            if (result.isDone()) second.cancel(true);
+        });
+        return result.whenComplete((parsed, e) -> {
+            primary.cancel(true);
+            CompletableFuture<T> second = hedge.get();
+            if (second != null) second.cancel(true);
+        });
+    }
+
+    private static <T> void race(CompletableFuture<T> attempt, CompletableFuture<T> result, AtomicInteger running) {
+        attempt.whenComplete((parsed, e) -> {
+            if (e == null) result.complete(parsed);
+            else if (running.decrementAndGet() == 0) result.completeExceptionally(unwrap(e));
+        });
+    }
+
+    /**
+     * performs one exchange limited by the remaining time of the deadline and records it in metrics
+     * of its endpoint, cancelling the returned future cancels the exchange; with ADAPTIVE_CONCURRENCY
+     * the exchange waits for a permit of its endpoint's concurrency limiter first
+     *
+     * @return future of parsed object, completed exceptionally with UpstreamStatusException in case
+     * of response code is not 200, or with ConcurrencyLimitException if no permit was given in time
+     */
+    private <T> CompletableFuture<T> sendAttemptAsync(String uri, BodyParser<T> parser,
+                                                      EndpointMetrics endpointMetrics, Deadline deadline) {
+        if (concurrencyLimiters == null) return sendExchangeAsync(uri, parser, endpointMetrics, deadline, null);
+        //all-country requests take far longer than single ones, they'd look slow against the same baseline
+        ConcurrencyLimiter limiter = getConcurrencyLimiter(isAllCountries(uri)
+                ? endpointMetrics.getName() + ALL_COUNTRIES_SUFFIX : endpointMetrics.getName());
+        CompletableFuture<ConcurrencyLimiter.Permit> permit = limiter.acquire(deadline.remaining());
+        CompletableFuture<T> result = new CompletableFuture<>();
+        permit.whenComplete((granted, e) -> {
+            if (e != null) {
+                result.completeExceptionally(unwrap(e));
+                return;
+            }
+            if (result.isDone()) {
+                //cancelled while queued
+                granted.release(ConcurrencyLimiter.Outcome.IGNORED);
+                return;
+            }
+            AtomicLong headersNanos = new AtomicLong(-1L);
+            CompletableFuture<T> exchange = sendExchangeAsync(uri, parser, endpointMetrics, deadline, headersNanos);
+            exchange.whenComplete((parsed, exchangeError) -> {
+                //held until the body is read, but judged by the time upstream took to answer
+                granted.release(getOutcome(exchangeError), headersNanos.get());
+                if (exchangeError == null) result.complete(parsed);
+                else result.completeExceptionally(unwrap(exchangeError));
+            });
+            result.whenComplete((parsed, resultError) -> {
+                if (resultError instanceof CancellationException) exchange.cancel(true);
+            });
+        });
+        result.whenComplete((parsed, e) -> {
+            if (e instanceof CancellationException) permit.cancel(true);
+        });
+        return result;
+    }
+
+    private ConcurrencyLimiter getConcurrencyLimiter(String endpoint) {
+        return concurrencyLimiters.computeIfAbsent(endpoint, name -> new ConcurrencyLimiter(name,
+                (int) getLongProperty("CONCURRENCY_INITIAL_LIMIT", DEFAULT_CONCURRENCY_INITIAL_LIMIT),
+                (int) getLongProperty("CONCURRENCY_MIN_LIMIT", DEFAULT_CONCURRENCY_MIN_LIMIT),
+                (int) getLongProperty("CONCURRENCY_MAX_LIMIT", DEFAULT_CONCURRENCY_MAX_LIMIT),
+                (int) getLongProperty("CONCURRENCY_MAX_QUEUED", DEFAULT_CONCURRENCY_MAX_QUEUED),
+                getDoubleProperty("CONCURRENCY_LATENCY_TOLERANCE", DEFAULT_CONCURRENCY_LATENCY_TOLERANCE)));
+    }
+
+    /**
+     * @return DROPPED for throttling (429, 5xx) and timeouts of requests upstream has seen, which mean upstream
+     * is over capacity; a deadline which ran out before the request was sent says nothing about upstream
+     */
+    private static ConcurrencyLimiter.Outcome getOutcome(Throwable e) {
+        if (e == null) return ConcurrencyLimiter.Outcome.SUCCESS;
+        Throwable cause = unwrap(e);
+        if (cause instanceof UncheckedIOException) cause = cause.getCause();
+        if (cause instanceof UpstreamStatusException && ((UpstreamStatusException) cause).isTransient()
+                || cause instanceof HttpTimeoutException && !(cause instanceof DeadlineExceededException)) {
+            return ConcurrencyLimiter.Outcome.DROPPED;
+        }
+        return ConcurrencyLimiter.Outcome.IGNORED;
+    }
+
+    /**
+     * @return true if uri asks for all countries rather than one
+     */
+    static boolean isAllCountries(String uri) {
+        return !uri.contains("?country=") && !uri.contains("&country=");
+    }
+
+    /**
+     * @return adaptive concurrency limiters by endpoint name, e.g. CASES_URL for single-country requests
+     * and CASES_URL/all for all-country ones, empty if ADAPTIVE_CONCURRENCY is off or nothing was sent yet
+     */
+    public Map<String, ConcurrencyLimiter> getConcurrencyLimiters() {
+        return concurrencyLimiters == null ? Map.of() : Collections.unmodifiableMap(concurrencyLimiters);
+    }
+
+    /**
+     * @param headersNanos set to the time until response headers when they arrive, may be null
+     */
+    private <T> CompletableFuture<T> sendExchangeAsync(String uri, BodyParser<T> parser,
+                                                       EndpointMetrics endpointMetrics, Deadline deadline,
+                                                       AtomicLong headersNanos) {
+        endpointMetrics.recordRequest();
+        //never blocks, lookups only leave fewer permits for refresh-ahead, which is the one gated by the limit
+        upstreamRateLimiter.consume(1);
+        Duration remaining = deadline.remaining();
+        if (remaining.isZero()) {
+            HttpTimeoutException e = new DeadlineExceededException("deadline exceeded");
+            endpointMetrics.recordFailure(e);
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = buildRequest(uri, remaining.compareTo(requestTimeout) < 0 ? remaining : requestTimeout);
+        if (request == null) {
+            IllegalArgumentException e = new IllegalArgumentException("Malformed request " + uri);
+            endpointMetrics.recordFailure(e);
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<InputStream>> exchange =
+                getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<T> attempt = exchange.thenApply(response -> {
+            long headersAt = System.nanoTime();
+            endpointMetrics.recordHeaders(response.statusCode(), headersAt - start, isAllCountries(uri));
+            if (headersNanos != null) headersNanos.set(headersAt - start);
+            try (CountingInputStream wire = new CountingInputStream(response.body())) {
+                if (response.statusCode() != 200) throw new UpstreamStatusException(response.statusCode(), uri);
+                long cpuStart = ServiceMetrics.currentThreadCpuNanos();
+                //the decoder is closed too, gzip and deflate hold native memory until then
+                try (CountingInputStream body = new CountingInputStream(ContentEncodings.decode(
+                        response.headers().firstValue("Content-Encoding").orElse(null), wire))) {
+                    T parsed = parser.parse(body);
+                    //read the rest, so the connection can be reused
+                    body.transferTo(OutputStream.nullOutputStream());
+                    long parseCpu = cpuStart < 0 ? -1L : ServiceMetrics.currentThreadCpuNanos() - cpuStart;
+                    wire.transferTo(OutputStream.nullOutputStream());
+                    endpointMetrics.recordBody(wire.getCount(), body.getCount(), System.nanoTime() - headersAt,
+                            parseCpu);
+                    return parsed;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        attempt.whenComplete((parsed, e) -> {
+            if (e == null) return;
+            Throwable cause = unwrap(e);
+            if (cause instanceof CancellationException) {
+                //lost the race to a hedged request
+                exchange.cancel(true);
+            } else if (!(cause instanceof UpstreamStatusException)) {
+                //non-200 responses are already counted by recordHeaders
+                endpointMetrics.recordFailure(cause);
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * @return true if failure may not happen again: timeouts, I/O errors and 429/5xx response codes
+     */
+    private static boolean isTransient(Throwable e) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof UncheckedIOException) cause = cause.getCause();
+        if (cause instanceof UpstreamStatusException) return ((UpstreamStatusException) cause).isTransient();
+        return cause instanceof IOException && !(cause instanceof MalformedJsonException);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * @return RETRY_BACKOFF_MILLIS doubled for every retry, half of it randomized so retries of
+     * concurrent lookups spread out
+     */
+    private long getBackoffMillis(int retry) {
+        long backoff = retryBackoff.toMillis() << Math.min(retry, 16);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * @return HEDGE_PERCENTILE of headers latency of the endpoint's requests of the same kind (single or
+     * all-country), or -1 if hedging is off or there are fewer than HEDGE_MIN_SAMPLES responses to estimate
+     * it from; the percentile is cached, it is recomputed every HEDGE_DELAY_RECOMPUTE_SAMPLES responses or
+     * HEDGE_DELAY_MAX_AGE
+     */
+    private long getHedgeDelayMillis(String uri, EndpointMetrics endpointMetrics) {
+        if (hedgePercentile <= 0) return -1L;
+        boolean allCountries = isAllCountries(uri);
+        LatencyHistogram latency = endpointMetrics.getHeadersLatency(allCountries);
+        if (latency.getCount() < hedgeMinSamples) return -1L;
+        CachedPercentile delay = hedgeDelays.computeIfAbsent(
+                allCountries ? endpointMetrics.getName() + ALL_COUNTRIES_SUFFIX : endpointMetrics.getName(),
+                endpoint -> new CachedPercentile(latency, hedgePercentile, HEDGE_DELAY_RECOMPUTE_SAMPLES,
+                        HEDGE_DELAY_MAX_AGE));
+        return Math.max(1L, (delay.get() + 999) / 1000);
     }
 
     /**
@@ -67,31 +1192,70 @@ public class Covid19InfoService {
      */
     public CountryCovidData getCountryCovidData(String country, CasesUrlResponse cases,
                                                 VaccinesUrlResponse vaccines, HistoryUrlResponse history) {
+        return getCountryCovidData(country, cases, vaccines, history, true);
+    }
+
+    /**
+     * @param history  history whose indicators are computed only if it doesn't keep them yet
+     * @param complete false if an endpoint failed and its part is missing
+     */
+    private CountryCovidData getCountryCovidData(String country, CasesUrlResponse cases, VaccinesUrlResponse vaccines,
+                                                 HistoryUrlResponse history, boolean complete) {
         if (country == null || country.isEmpty()) return null;
         CountryCovidData.CountryCovidDataBuilder builder = CountryCovidData.builder();
-        builder.country(country);
+        builder.country(country).complete(complete);
 //        CountryCovidData ccd = new CountryCovidData(country);
-        Long tempConfirmed = null;
         if (cases != null) {
             builder.confirmed(cases.getConfirmed())
                     .recovered(cases.getRecovered())
                     .deaths(cases.getDeaths());
-            tempConfirmed = cases.getConfirmed();
         }
         if (vaccines != null && vaccines.getPopulation() != 0L) {
             builder.vaccinatedLevel((vaccines.getPeopleVaccinated() + 0d) / vaccines.getPopulation() * 100);
         }
-        if (history != null && history.getConfirmedByDateMap() != null && !history.getConfirmedByDateMap().isEmpty()
-                && tempConfirmed != null) {
-            Map.Entry<Date, Long> e = history.getConfirmedByDateMap().entrySet().stream().findFirst().orElse(null);//.limit(1L).forEach(e -> {
-            if (e != null) {
-                builder.lastHistoryDataDate(e.getKey());
-                builder.confirmedSinceLastHistoryData(tempConfirmed - e.getValue());
-            }
+        if (history != null && history.getConfirmedByDate() != null && !history.getConfirmedByDate().isEmpty()
+                && cases != null) {
+            TimeSeries confirmedByDate = history.getConfirmedByDate();
+            builder.lastHistoryDataEpochDay(confirmedByDate.getEpochDay(confirmedByDate.size() - 1));
+            builder.confirmedSinceLastHistoryData(cases.getConfirmed() - confirmedByDate.getLatestValue());
+        }
+        if (history != null) {
+            builder.historyStats(HistoryAnalytics.analyze(history));
         }
         return builder.build();
     }
 
+    /**
+     * generates CountryCovidData of every country of snapshot into an off-heap store, in order of
+     * snapshot.getCountries(), so that large snapshots don't have to be held as objects
+     *
+     * @param snapshot CovidDataSnapshot
+     * @return store of one record per country
+     */
+    public CountryCovidDataStore getAllCountryCovidData(CovidDataSnapshot snapshot) {
+        Collection<String> countries = snapshot.getCountries();
+        CountryCovidDataStore store = new CountryCovidDataStore(countries.size());
+        for (String country : countries) {
+            store.add(getCountryCovidData(country, snapshot));
+        }
+        return store;
+    }
+
+    /**
+     * gives history indicators of every country of snapshot, as computed when the snapshot was created
+     *
+     * @param snapshot WorldSnapshot
+     * @return map of country names to indicators
+     */
+    public Map<String, HistoryStats> getHistoryStats(WorldSnapshot snapshot) {
+        Map<String, HistoryStats> statsByCountry = new HashMap<>();
+        for (String country : snapshot.getCountries()) {
+            HistoryStats stats = snapshot.getHistoryStats(country);
+            if (stats != null) statsByCountry.put(country, stats);
+        }
+        return statsByCountry;
+    }
+
     /**
      * Fills obj with info from JsonElement with name "All"
      *
@@ -101,8 +1265,39 @@ public class Covid19InfoService {
      * @return response object
      */
     public <T> T getResponseObject(String content, Class<T> classOfT) {
-        Gson gson = new Gson();
-        return gson.fromJson(JsonUtils.getJsonElement(content, "All"), classOfT);
+        try {
+            return JsonUtils.readJsonElement(new StringReader(content), "All", classOfT, JsonUtils.gson());
+        } catch (IOException e) {
+            throw new JsonParseException(e);
+        }
+    }
+
+    /**
+     * Fills obj with info from JsonElement with name "All" while content is streamed
+     *
+     * @param content  UTF-8 content from response
+     * @param classOfT class of response object
+     * @param <T>      response object class parameter
+     * @return response object
+     */
+    public <T> T getResponseObject(InputStream content, Class<T> classOfT) throws IOException {
+        return JsonUtils.readJsonElement(content, "All", classOfT, JsonUtils.gson());
+    }
+
+    /**
+     * Fills obj for every country with info from its JsonElement with name "All"
+     *
+     * @param content  all-country content from response
+     * @param classOfT class of response object
+     * @param <T>      response object class parameter
+     * @return map of country names to response objects
+     */
+    public <T> Map<String, T> getResponseObjects(String content, Class<T> classOfT) {
+        try {
+            return JsonUtils.readJsonElementsByMember(new StringReader(content), "All", classOfT, JsonUtils.gson());
+        } catch (IOException e) {
+            throw new JsonParseException(e);
+        }
     }
 
     /**
@@ -114,24 +1309,76 @@ public class Covid19InfoService {
      */
 
     public String doRequest(String urlStr, Map<String, String> parameters) {
+        return doRequestAsync(urlStr, parameters).join();
+    }
+
+    /**
+     * performs an asynchronous GET request with given url and parameters
+     *
+     * @param urlStr     String with URL
+     * @param parameters Map of parameters for GET request
+     * @return future of content from response, completed with empty String in case of response code is not 200,
+     * request timed out or failed
+     */
+    public CompletableFuture<String> doRequestAsync(String urlStr, Map<String, String> parameters) {
+        return sendParsedAsync(urlStr + ParameterStringBuilder.getParamsString(parameters),
+                body -> new String(body.readAllBytes(), StandardCharsets.UTF_8), "", Deadline.after(requestTimeout));
+    }
+
+    /**
+     * @return GET request or null if uri is malformed
+     */
+    private HttpRequest buildRequest(String uri, Duration timeout) {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .GET()
-                    .uri(URI.create(urlStr + ParameterStringBuilder.getParamsString(parameters)))
-                    .build();
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() != 200) return "";
-            return response.body();
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
+                    .uri(URI.create(uri))
+                    .timeout(timeout);
+            if (!acceptEncoding.isEmpty()) builder.header("Accept-Encoding", acceptEncoding);
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Malformed request " + uri + ": " + e.getMessage());
+            return null;
         }
-        return "";
     }
 
+    /**
+     * Cache of parsed response objects keyed by request URI
+     */
+    public ResponseCache<Object> getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Confirmed cases by date of countries looked up so far
+     */
+    public HistoryStore getHistoryStore() {
+        return historyStore;
+    }
+
+    /**
+     * Coalescing of concurrent requests of the same URI
+     */
+    public SingleFlight<Object> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Latency, size, status and failure metrics of upstream endpoints
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
 
     public Properties getAppProps() {
         return appProps;
     }
+
+    /**
+     * parses response body while it is streamed
+     */
+    @FunctionalInterface
+    interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
 }
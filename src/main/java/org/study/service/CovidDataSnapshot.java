@@ -0,0 +1,41 @@
+package org.study.service;
+
+import org.study.entity.HistoryStats;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+
+import java.util.Collection;
+
+/**
+ * Locally available responses of all countries, lookups in it never reach the network
+ */
+public interface CovidDataSnapshot {
+
+    /**
+     * @return cases of country or null if there is no data
+     */
+    CasesUrlResponse getCases(String country);
+
+    /**
+     * @return vaccines of country or null if there is no data
+     */
+    VaccinesUrlResponse getVaccines(String country);
+
+    /**
+     * @return history of country or null if there is no data
+     */
+    HistoryUrlResponse getHistory(String country);
+
+    /**
+     * @return indicators of the history of country or null if there is no history
+     */
+    default HistoryStats getHistoryStats(String country) {
+        return HistoryAnalytics.analyze(getHistory(country));
+    }
+
+    /**
+     * @return names of all countries in snapshot
+     */
+    Collection<String> getCountries();
+}
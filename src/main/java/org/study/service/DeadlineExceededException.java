@@ -0,0 +1,16 @@
+package org.study.service;
+
+import java.net.http.HttpTimeoutException;
+
+/**
+ * Thrown when a request is not sent because its deadline ran out before, e.g. while it waited for a permit
+ * or for a retry; upstream never saw the request
+ */
+public class DeadlineExceededException extends HttpTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,164 @@
+package org.study.service;
+
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.response.HistoryUrlResponse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes HistoryStats from cumulative confirmed series. Windows are found by epoch day, so days missing
+ * in upstream data don't stretch them, and their averages are divided by the actual number of days.
+ * <p>
+ * Analysis costs O(n log n) in the length of the series and copies its days, so histories keep their
+ * indicators once computed, see analyze(HistoryUrlResponse).
+ */
+public class HistoryAnalytics {
+
+    private static final double LN_2 = Math.log(2);
+    /**
+     * countries analysed by one fork/join leaf task
+     */
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * computes all indicators of one series: the peak looks at the 7-day window ending at every point, whose
+     * start is binary searched, and the day array of the series is copied (TimeSeries.getEpochDays()) on every call
+     *
+     * @param confirmed cumulative confirmed by day
+     * @return indicators, HistoryStats.EMPTY for null or empty series
+     */
+    public static HistoryStats analyze(TimeSeries confirmed) {
+        if (confirmed == null || confirmed.isEmpty()) return HistoryStats.EMPTY;
+        int[] days = confirmed.getEpochDays();
+        int n = days.length;
+
+        //7-day sum of new cases is confirmed[i] - confirmed[start], so the peak needs no window buffer
+        double peak = Double.NaN;
+        int peakDay = HistoryStats.NO_DAY;
+        for (int i = 1; i < n; i++) {
+            int start = windowStart(days, i, 7);
+            if (start < 0) continue;
+            double average = (confirmed.getValue(i) - confirmed.getValue(start)) / (double) (days[i] - days[start]);
+            if (Double.isNaN(peak) || average > peak) {
+                peak = average;
+                peakDay = days[i];
+            }
+        }
+
+        int last = n - 1;
+        long latest = confirmed.getValue(last);
+        int start7 = windowStart(days, last, 7);
+        int start14 = windowStart(days, last, 14);
+        double average7 = start7 < 0 ? Double.NaN
+                : (latest - confirmed.getValue(start7)) / (double) (days[last] - days[start7]);
+        double average14 = start14 < 0 ? Double.NaN
+                : (latest - confirmed.getValue(start14)) / (double) (days[last] - days[start14]);
+
+        double growth = Double.NaN;
+        if (n > 1 && confirmed.getValue(last - 1) > 0) {
+            long previous = confirmed.getValue(last - 1);
+            growth = (latest - previous) * 100d / previous / (days[last] - days[last - 1]);
+        }
+
+        double doubling = Double.NaN;
+        if (start7 >= 0 && confirmed.getValue(start7) > 0 && latest > confirmed.getValue(start7)) {
+            double factor = (double) latest / confirmed.getValue(start7);
+            doubling = (days[last] - days[start7]) * LN_2 / Math.log(factor);
+        }
+        return new HistoryStats(average7, average14, growth, doubling, peak, peakDay);
+    }
+
+    /**
+     * gives indicators kept by history, computing and keeping them on first use; concurrent first uses
+     * may both compute, either result is the same
+     *
+     * @return indicators of history, null if history is null
+     */
+    public static HistoryStats analyze(HistoryUrlResponse history) {
+        if (history == null) return null;
+        HistoryStats stats = history.getStats();
+        if (stats == null) {
+            stats = analyze(history.getConfirmedByDate());
+            history.setStats(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * @return index of the latest point at least span days before point end, -1 if history does not reach back
+     */
+    private static int windowStart(int[] days, int end, int span) {
+        int index = Arrays.binarySearch(days, 0, end, days[end] - span);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * analyses every series in parallel on the common fork/join pool
+     *
+     * @param confirmedByCountry cumulative confirmed series of countries
+     * @return indicators of every country
+     */
+    public static Map<String, HistoryStats> analyzeAll(Map<String, TimeSeries> confirmedByCountry) {
+        return analyzeAll(confirmedByCountry, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * analyses every series in parallel on given fork/join pool
+     *
+     * @param confirmedByCountry cumulative confirmed series of countries
+     * @param pool               pool to run on
+     * @return indicators of every country
+     */
+    public static Map<String, HistoryStats> analyzeAll(Map<String, TimeSeries> confirmedByCountry,
+                                                       ForkJoinPool pool) {
+        String[] countries = confirmedByCountry.keySet().toArray(new String[0]);
+        TimeSeries[] series = new TimeSeries[countries.length];
+        for (int i = 0; i < countries.length; i++) {
+            series[i] = confirmedByCountry.get(countries[i]);
+        }
+        HistoryStats[] stats = new HistoryStats[countries.length];
+        pool.invoke(new AnalyzeTask(series, stats, 0, series.length));
+
+        Map<String, HistoryStats> result = new HashMap<>(countries.length * 2);
+        for (int i = 0; i < countries.length; i++) {
+            result.put(countries[i], stats[i]);
+        }
+        return result;
+    }
+
+    /**
+     * splits the country range in halves until it is small enough to analyse directly
+     */
+    private static class AnalyzeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TimeSeries[] series;
+        private final HistoryStats[] stats;
+        private final int from;
+        private final int to;
+
+        AnalyzeTask(TimeSeries[] series, HistoryStats[] stats, int from, int to) {
+            this.series = series;
+            this.stats = stats;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    stats[i] = analyze(series[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new AnalyzeTask(series, stats, from, mid), new AnalyzeTask(series, stats, mid, to));
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.study.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.study.entity.TimeSeries;
+import org.study.response.HistoryUrlResponse;
+import org.study.utils.JsonUtils;
+import org.study.utils.TimeSeriesTypeAdapter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Confirmed cases by date of every country seen so far, updated incrementally.
+ * <p>
+ * Upstream lists dates newest first and only the newest days change, so merge reads /history until it meets
+ * overlapDays days in a row which the store already has with the same value and stops there; only new or
+ * changed days are written. Refresh cost is then proportional to the number of changed days rather than
+ * to the length of the series (bytes are still downloaded, as upstream can't be asked for a date range).
+ * <p>
+ * Optionally every written day is appended to a log file (magic, version, then records of UTF country name,
+ * int epoch day, long value), which is replayed on open.
+ */
+public class HistoryStore implements AutoCloseable {
+
+    public static final int DEFAULT_OVERLAP_DAYS = 3;
+
+    private static final int MAGIC = 0x43313948; //"C19H"
+    private static final int VERSION = 1;
+
+    private final Map<String, Series> seriesByCountry = new ConcurrentHashMap<>();
+    private final int overlapDays;
+    private final DataOutputStream log;
+    private final LongAdder readDays = new LongAdder();
+    private final LongAdder writtenDays = new LongAdder();
+
+    private HistoryStore(int overlapDays, DataOutputStream log) {
+        this.overlapDays = overlapDays;
+        this.log = log;
+    }
+
+    /**
+     * @param overlapDays number of known unchanged days in a row after which reading stops
+     * @return store kept in memory only
+     */
+    public static HistoryStore inMemory(int overlapDays) {
+        return new HistoryStore(overlapDays, null);
+    }
+
+    /**
+     * replays log file if it exists and appends following updates to it
+     *
+     * @param logFile     log file
+     * @param overlapDays number of known unchanged days in a row after which reading stops
+     * @return opened store
+     */
+    public static HistoryStore open(Path logFile, int overlapDays) throws IOException {
+        boolean exists = Files.isRegularFile(logFile) && Files.size(logFile) > 0;
+        Map<String, Series> replayed = exists ? replay(logFile) : Map.of();
+        DataOutputStream log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (!exists) {
+            log.writeInt(MAGIC);
+            log.writeInt(VERSION);
+            log.flush();
+        }
+        HistoryStore store = new HistoryStore(overlapDays, log);
+        store.seriesByCountry.putAll(replayed);
+        return store;
+    }
+
+    private static Map<String, Series> replay(Path logFile) throws IOException {
+        Map<String, Series> replayed = new ConcurrentHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a history log");
+            while (true) {
+                String country;
+                int epochDay;
+                long value;
+                try {
+                    country = in.readUTF();
+                    epochDay = in.readInt();
+                    value = in.readLong();
+                } catch (EOFException e) {
+                    //end of log, or a record cut off by a crash
+                    break;
+                }
+                replayed.computeIfAbsent(country, c -> new Series()).put(epochDay, value);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * @return series of country or null if country has never been merged
+     */
+    public TimeSeries get(String country) {
+        Series series = seriesByCountry.get(country);
+        return series == null ? null : series.toTimeSeries();
+    }
+
+    /**
+     * @return stored history of country as response object with its indicators, the same object until
+     * the next change of the series, or null if country has never been merged
+     */
+    public HistoryUrlResponse getResponse(String country) {
+        Series series = seriesByCountry.get(country);
+        return series == null ? null : series.toResponse();
+    }
+
+    /**
+     * reads {"All": {..., "dates": {...}}} of country, stopping as soon as the rest of dates is known,
+     * and merges new and changed days into the store
+     *
+     * @param country country name
+     * @param body    UTF-8 /history body, left unread after the point where reading stopped
+     * @return merged history of country or null if body has no "All" element
+     */
+    public HistoryUrlResponse merge(String country, InputStream body) throws IOException {
+        Series known = seriesByCountry.get(country);
+        Series series = known != null ? known : new Series();
+        TimeSeries updates = JsonUtils.readJsonElement(body, "All", jsonReader -> readUpdates(jsonReader, series));
+        if (updates == null) return null;
+        //unknown names are stored only once upstream has answered for them
+        if (known == null) seriesByCountry.putIfAbsent(country, series);
+        apply(country, seriesByCountry.get(country), updates);
+        return getResponse(country);
+    }
+
+    /**
+     * reads members of "All" up to "dates" and its days until overlapDays of known unchanged days in a row
+     *
+     * @return new or changed days, empty if there is no "dates"
+     */
+    private TimeSeries readUpdates(JsonReader jsonReader, Series known) throws IOException {
+        TimeSeries.Builder updates = new TimeSeries.Builder();
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+            return updates.build();
+        }
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (!jsonReader.nextName().equals("dates") || jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                jsonReader.skipValue();
+                continue;
+            }
+            jsonReader.beginObject();
+            int unchangedInRow = 0;
+            int previousDay = Integer.MAX_VALUE;
+            boolean newestFirst = true;
+            while (jsonReader.hasNext()) {
+                int epochDay = TimeSeriesTypeAdapter.parseEpochDay(jsonReader.nextName());
+                if (jsonReader.peek() == JsonToken.NULL) {
+                    jsonReader.nextNull();
+                    continue;
+                }
+                long value = jsonReader.nextLong();
+                readDays.increment();
+                newestFirst &= epochDay < previousDay;
+                previousDay = epochDay;
+                if (!known.contains(epochDay, value)) {
+                    unchangedInRow = 0;
+                    updates.add(epochDay, value);
+                } else if (++unchangedInRow >= overlapDays && newestFirst) {
+                    //older days are known already
+                    return updates.build();
+                }
+            }
+            return updates.build();
+        }
+        return updates.build();
+    }
+
+    /**
+     * @param updates new or changed days, applied oldest first, so new days are plain appends
+     */
+    private void apply(String country, Series series, TimeSeries updates) throws IOException {
+        if (updates.isEmpty()) return;
+        series.putAll(updates);
+        writtenDays.add(updates.size());
+        if (log == null) return;
+        synchronized (log) {
+            for (int i = 0; i < updates.size(); i++) {
+                log.writeUTF(country);
+                log.writeInt(updates.getEpochDay(i));
+                log.writeLong(updates.getValue(i));
+            }
+            log.flush();
+        }
+    }
+
+    /**
+     * @return number of days read from upstream bodies
+     */
+    public long getReadDays() {
+        return readDays.sum();
+    }
+
+    /**
+     * @return number of new or changed days written to the store
+     */
+    public long getWrittenDays() {
+        return writtenDays.sum();
+    }
+
+    public int size() {
+        return seriesByCountry.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (log != null) {
+            synchronized (log) {
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * Growable series sorted by day, new days are appended in place, the TimeSeries copy and the response
+     * with its indicators are made on demand and kept until the next change
+     */
+    private static final class Series {
+        private int[] epochDays = new int[16];
+        private long[] values = new long[16];
+        private int size;
+        private TimeSeries view;
+        private HistoryUrlResponse response;
+
+        synchronized boolean contains(int epochDay, long value) {
+            int index = Arrays.binarySearch(epochDays, 0, size, epochDay);
+            return index >= 0 && values[index] == value;
+        }
+
+        synchronized void put(int epochDay, long value) {
+            view = null;
+            response = null;
+            if (size == 0 || epochDays[size - 1] < epochDay) {
+                ensureCapacity(size + 1);
+                epochDays[size] = epochDay;
+                values[size] = value;
+                size++;
+                return;
+            }
+            int index = Arrays.binarySearch(epochDays, 0, size, epochDay);
+            if (index >= 0) {
+                values[index] = value;
+                return;
+            }
+            //a day missing in the middle, rare
+            int insertAt = -index - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(epochDays, insertAt, epochDays, insertAt + 1, size - insertAt);
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            epochDays[insertAt] = epochDay;
+            values[insertAt] = value;
+            size++;
+        }
+
+        synchronized void putAll(TimeSeries updates) {
+            for (int i = 0; i < updates.size(); i++) {
+                put(updates.getEpochDay(i), updates.getValue(i));
+            }
+        }
+
+        synchronized TimeSeries toTimeSeries() {
+            if (view == null) {
+                view = TimeSeries.of(Arrays.copyOf(epochDays, size), Arrays.copyOf(values, size));
+            }
+            return view;
+        }
+
+        synchronized HistoryUrlResponse toResponse() {
+            if (response == null) {
+                response = new HistoryUrlResponse();
+                response.setConfirmedByDate(toTimeSeries());
+                HistoryAnalytics.analyze(response);
+            }
+            return response;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= epochDays.length) return;
+            int newCapacity = Math.max(capacity, epochDays.length * 2);
+            epochDays = Arrays.copyOf(epochDays, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+}
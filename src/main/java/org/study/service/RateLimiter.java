@@ -0,0 +1,64 @@
+package org.study.service;
+
+import java.time.Clock;
+
+/**
+ * Token bucket refilled at a fixed rate, holding at most one second of permits
+ */
+public class RateLimiter {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+    private final Clock clock;
+    private double permits;
+    private long refilledAtMillis;
+
+    public RateLimiter(double permitsPerSecond, Clock clock) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1d, permitsPerSecond);
+        this.clock = clock;
+        this.permits = capacity;
+        this.refilledAtMillis = clock.millis();
+    }
+
+    /**
+     * takes permits only if all of them are available
+     *
+     * @return true if permits were taken
+     */
+    public synchronized boolean tryAcquire(int count) {
+        refill();
+        if (permits < count) return false;
+        permits -= count;
+        return true;
+    }
+
+    /**
+     * takes permits even if they are not available, the debt delays following tryAcquire calls
+     */
+    public synchronized void consume(int count) {
+        refill();
+        permits -= count;
+    }
+
+    /**
+     * gives back permits taken with tryAcquire, e.g. once the requests they were reserved for
+     * have consumed their own permits
+     */
+    public synchronized void release(int count) {
+        refill();
+        permits = Math.min(capacity, permits + count);
+    }
+
+    public synchronized double getAvailablePermits() {
+        refill();
+        return permits;
+    }
+
+    private void refill() {
+        long now = clock.millis();
+        if (now <= refilledAtMillis) return;
+        permits = Math.min(capacity, permits + (now - refilledAtMillis) * permitsPerSecond / 1000d);
+        refilledAtMillis = now;
+    }
+}
@@ -0,0 +1,173 @@
+package org.study.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the most requested countries in cache: counts upstream lookups of every country and, on every tick,
+ * reloads the top-K countries whose cached responses expire within refreshBefore.
+ * <p>
+ * Refreshes start after a random delay of up to jitter, so countries cached at the same time don't all go
+ * to upstream at once, and only when the global upstream rate limiter has permits left for all three requests
+ * of a country, which are reserved until the refresh is done. Counts are halved on every tick, so countries
+ * which are no longer asked for drop out.
+ */
+public class RefreshAheadScheduler implements AutoCloseable {
+
+    private static final int REQUESTS_PER_COUNTRY = 3;
+
+    private final Covid19InfoService infoService;
+    private final int topK;
+    private final Duration refreshBefore;
+    private final Duration jitter;
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService executor;
+    private final Map<String, AtomicLong> lookups = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    /**
+     * @param infoService   service whose cache is refreshed
+     * @param topK          number of most requested countries kept fresh
+     * @param refreshBefore how long before expiry of the first of its responses a country is refreshed
+     * @param jitter        max random delay of a refresh
+     * @param rateLimiter   global upstream rate limiter, refreshes use only permits which are left
+     * @param threads       number of threads starting refreshes
+     */
+    public RefreshAheadScheduler(Covid19InfoService infoService, int topK, Duration refreshBefore, Duration jitter,
+                                 RateLimiter rateLimiter, int threads) {
+        this.infoService = infoService;
+        this.topK = topK;
+        this.refreshBefore = refreshBefore;
+        this.jitter = jitter;
+        this.rateLimiter = rateLimiter;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "refresh-ahead-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+    }
+
+    /**
+     * runs tick periodically until closed
+     */
+    public void start(Duration interval) {
+        executor.scheduleWithFixedDelay(this::tick, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordLookup(String country) {
+        lookups.computeIfAbsent(country, c -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * schedules refresh of the top-K countries which expire soon and halves lookup counts
+     *
+     * @return future completed when refreshes scheduled by this tick are done, exceptionally if one of them
+     * could not be started
+     */
+    public CompletableFuture<Void> tick() {
+        List<CompletableFuture<Boolean>> started = new ArrayList<>();
+        for (String country : getTopCountries()) {
+            Duration timeToLive = infoService.getTimeToLive(country);
+            if (timeToLive == null || timeToLive.compareTo(refreshBefore) > 0) continue;
+            if (refreshing.contains(country)) continue;
+            if (!rateLimiter.tryAcquire(REQUESTS_PER_COUNTRY)) {
+                rateLimited.increment();
+                continue;
+            }
+            refreshing.add(country);
+            started.add(schedule(country, timeToLive));
+        }
+        lookups.values().removeIf(count -> count.updateAndGet(c -> c / 2) == 0);
+        return CompletableFuture.allOf(started.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * @return countries with most lookups, most requested first
+     */
+    public List<String> getTopCountries() {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        lookups.forEach((country, count) -> counts.add(Map.entry(country, count.get())));
+        counts.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        List<String> top = new ArrayList<>(Math.min(topK, counts.size()));
+        for (int i = 0; i < counts.size() && i < topK; i++) {
+            top.add(counts.get(i).getKey());
+        }
+        return top;
+    }
+
+    /**
+     * starts refresh after a random delay, which is kept short enough to finish before expiry
+     */
+    private CompletableFuture<Boolean> schedule(String country, Duration timeToLive) {
+        long maxDelay = Math.max(0L, Math.min(jitter.toMillis(), timeToLive.toMillis() / 2));
+        long delay = maxDelay == 0 ? 0L : ThreadLocalRandom.current().nextLong(maxDelay + 1);
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        try {
+            executor.schedule(() -> {
+                CompletableFuture<Boolean> refresh;
+                try {
+                    refresh = infoService.refreshCountryAsync(country);
+                } catch (RuntimeException e) {
+                    failed(country, done, e);
+                    return;
+                }
+                refresh.whenComplete((refreshed, e) -> {
+                    //requests of the refresh have consumed permits themselves, including retries and hedges
+                    rateLimiter.release(REQUESTS_PER_COUNTRY);
+                    refreshing.remove(country);
+                    if (e == null && refreshed) refreshes.increment();
+                    done.complete(e == null && refreshed);
+                });
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            failed(country, done, e);
+        }
+        return done;
+    }
+
+    /**
+     * gives back what a refresh which never started holds, so the country is refreshed by a later tick
+     */
+    private void failed(String country, CompletableFuture<Boolean> done, RuntimeException e) {
+        rateLimiter.release(REQUESTS_PER_COUNTRY);
+        refreshing.remove(country);
+        done.completeExceptionally(e);
+    }
+
+    /**
+     * @return number of countries refreshed
+     */
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return number of refreshes put off because the upstream rate limit was reached
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
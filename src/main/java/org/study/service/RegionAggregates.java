@@ -0,0 +1,212 @@
+package org.study.service;
+
+import org.study.entity.CountryCovidData;
+import org.study.response.CasesUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Totals of the world, every continent and every location (e.g. "Western Europe") of an all-country snapshot,
+ * computed in one parallel pass.
+ * <p>
+ * Confirmed, recovered and deaths are summed; vaccinated level is weighted by population, i.e. people vaccinated
+ * over population of the countries which have vaccination data. Entries without a continent, such as upstream's
+ * "Global", are aggregates themselves and are left out, otherwise the world would be counted twice.
+ */
+public final class RegionAggregates {
+
+    public static final String WORLD = "World";
+
+    /**
+     * continents as upstream names them, recognized before any data is loaded
+     */
+    public static final List<String> CONTINENTS = List.of("Africa", "Asia", "Europe", "North America",
+            "South America", "Oceania");
+
+    private static final int LEAF_SIZE = 16;
+
+    private final Map<String, Totals> totalsByRegion;
+    private final Map<String, String> regionByKey;
+    private final boolean complete;
+
+    private RegionAggregates(Map<String, Totals> totalsByRegion, boolean complete) {
+        this.totalsByRegion = totalsByRegion;
+        this.complete = complete;
+        regionByKey = new HashMap<>(totalsByRegion.size() * 2);
+        for (String region : totalsByRegion.keySet()) {
+            regionByKey.put(key(region), region);
+        }
+    }
+
+    /**
+     * @return true if name is the world or a continent
+     */
+    public static boolean isWorldOrContinent(String name) {
+        if (name == null) return false;
+        String key = key(name);
+        return key.equals(key(WORLD)) || CONTINENTS.stream().anyMatch(continent -> key(continent).equals(key));
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static RegionAggregates compute(CovidDataSnapshot snapshot) {
+        return compute(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * sums every country of snapshot into its region totals in parallel on given fork/join pool
+     *
+     * @param snapshot all-country snapshot, countries without cases data or without continent are left out
+     * @param pool     pool to run on
+     * @return totals of the world, continents and locations
+     */
+    public static RegionAggregates compute(CovidDataSnapshot snapshot, ForkJoinPool pool) {
+        String[] countries = snapshot.getCountries().toArray(new String[0]);
+        CasesUrlResponse[] cases = new CasesUrlResponse[countries.length];
+        VaccinesUrlResponse[] vaccines = new VaccinesUrlResponse[countries.length];
+        boolean anyCases = false;
+        boolean anyVaccines = false;
+        for (int i = 0; i < countries.length; i++) {
+            cases[i] = snapshot.getCases(countries[i]);
+            vaccines[i] = snapshot.getVaccines(countries[i]);
+            anyCases |= cases[i] != null;
+            anyVaccines |= vaccines[i] != null;
+        }
+        return new RegionAggregates(pool.invoke(new SumTask(cases, vaccines, 0, countries.length)),
+                anyCases && anyVaccines);
+    }
+
+    /**
+     * @param region world, continent or location, in any case
+     * @return totals of region in CountryCovidData or null if region is unknown
+     */
+    public CountryCovidData get(String region) {
+        if (region == null) return null;
+        String name = regionByKey.get(key(region));
+        if (name == null) return null;
+        Totals totals = totalsByRegion.get(name);
+        CountryCovidData.CountryCovidDataBuilder builder = CountryCovidData.builder()
+                .country(name)
+                .complete(complete)
+                .confirmed(totals.confirmed)
+                .recovered(totals.recovered)
+                .deaths(totals.deaths);
+        if (totals.vaccinatedPopulation > 0) {
+            builder.vaccinatedLevel((totals.peopleVaccinated + 0d) / totals.vaccinatedPopulation * 100);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return false if snapshot had no cases or no vaccines at all, i.e. an all-country request failed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return number of countries summed into region, 0 if region is unknown
+     */
+    public int getCountryCount(String region) {
+        String name = region == null ? null : regionByKey.get(key(region));
+        return name == null ? 0 : totalsByRegion.get(name).countries;
+    }
+
+    /**
+     * @return sorted names of regions
+     */
+    public Set<String> getRegions() {
+        return Collections.unmodifiableSet(new TreeSet<>(totalsByRegion.keySet()));
+    }
+
+    /**
+     * Running sums of one region
+     */
+    private static final class Totals {
+        long confirmed;
+        long recovered;
+        long deaths;
+        long peopleVaccinated;
+        long vaccinatedPopulation;
+        int countries;
+
+        void add(CasesUrlResponse cases, VaccinesUrlResponse vaccines) {
+            confirmed += cases.getConfirmed();
+            recovered += cases.getRecovered();
+            deaths += cases.getDeaths();
+            if (vaccines != null && vaccines.getPopulation() > 0) {
+                peopleVaccinated += vaccines.getPeopleVaccinated();
+                vaccinatedPopulation += vaccines.getPopulation();
+            }
+            countries++;
+        }
+
+        void add(Totals other) {
+            confirmed += other.confirmed;
+            recovered += other.recovered;
+            deaths += other.deaths;
+            peopleVaccinated += other.peopleVaccinated;
+            vaccinatedPopulation += other.vaccinatedPopulation;
+            countries += other.countries;
+        }
+    }
+
+    /**
+     * splits the country range in halves, sums leaves into their own maps and merges them on the way up
+     */
+    private static class SumTask extends RecursiveTask<Map<String, Totals>> {
+        private static final long serialVersionUID = 1L;
+
+        private final CasesUrlResponse[] cases;
+        private final VaccinesUrlResponse[] vaccines;
+        private final int from;
+        private final int to;
+
+        SumTask(CasesUrlResponse[] cases, VaccinesUrlResponse[] vaccines, int from, int to) {
+            this.cases = cases;
+            this.vaccines = vaccines;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, Totals> compute() {
+            if (to - from <= LEAF_SIZE) {
+                Map<String, Totals> totals = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    if (cases[i] == null) continue;
+                    String continent = cases[i].getContinent();
+                    //"Global" and the like sum up countries which are in the snapshot anyway
+                    if (continent == null || continent.isBlank()) continue;
+                    totals.computeIfAbsent(WORLD, r -> new Totals()).add(cases[i], vaccines[i]);
+                    totals.computeIfAbsent(continent, r -> new Totals()).add(cases[i], vaccines[i]);
+                    String location = cases[i].getLocation();
+                    if (location != null && !location.isBlank() && !location.equals(continent)) {
+                        totals.computeIfAbsent(location, r -> new Totals()).add(cases[i], vaccines[i]);
+                    }
+                }
+                return totals;
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(cases, vaccines, from, mid);
+            left.fork();
+            Map<String, Totals> totals = new SumTask(cases, vaccines, mid, to).compute();
+            left.join().forEach((region, sums) -> totals.merge(region, sums, (a, b) -> {
+                a.add(b);
+                return a;
+            }));
+            return totals;
+        }
+    }
+}
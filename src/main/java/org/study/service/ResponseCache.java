@@ -0,0 +1,172 @@
+package org.study.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache with per-entry TTL and LRU eviction.
+ * An entry which is expired by no more than staleWindow is still returned while it is reloaded in background
+ * (stale-while-revalidate), so callers are blocked only on entries they have never seen or that are too old.
+ *
+ * @param <V> cached value class parameter
+ */
+public class ResponseCache<V> {
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAtMillis;
+
+        Entry(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final int maxSize;
+    private final long staleWindowMillis;
+    private final Clock clock;
+    private final Predicate<V> cacheable;
+    private final Map<String, Entry<V>> entries;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize     max number of entries, least recently used entry is evicted when it is exceeded
+     * @param staleWindow how long after expiry an entry may still be served while it is reloaded
+     * @param clock       source of current time
+     * @param cacheable   tells whether loaded value may be stored, e.g. failed responses should not
+     */
+    public ResponseCache(int maxSize, Duration staleWindow, Clock clock, Predicate<V> cacheable) {
+        this.maxSize = maxSize;
+        this.staleWindowMillis = staleWindow.toMillis();
+        this.clock = clock;
+        this.cacheable = cacheable;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() <= ResponseCache.this.maxSize) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * returns cached value of key or loads it
+     *
+     * @param key    cache key
+     * @param ttl    time to live of loaded value, value is not cached if ttl is zero or negative
+     * @param loader loads value when it is absent or too old
+     * @return future of value
+     */
+    public CompletableFuture<V> get(String key, Duration ttl, Supplier<CompletableFuture<V>> loader) {
+        if (ttl.isZero() || ttl.isNegative()) return loader.get();
+        long now = clock.millis();
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && now < entry.expiresAtMillis) {
+            hits.increment();
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        if (entry != null && now < entry.expiresAtMillis + staleWindowMillis) {
+            staleHits.increment();
+            revalidate(key, ttl, loader);
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        misses.increment();
+        return load(key, ttl, loader);
+    }
+
+    /**
+     * loads value of key and stores it whether the cached one has expired or not,
+     * does nothing if key is already being reloaded
+     *
+     * @param key    cache key
+     * @param ttl    time to live of loaded value, nothing is loaded if ttl is zero or negative
+     * @param loader loads value
+     * @return future completed with true if value was loaded and stored
+     */
+    public CompletableFuture<Boolean> refresh(String key, Duration ttl, Supplier<CompletableFuture<V>> loader) {
+        if (ttl.isZero() || ttl.isNegative() || !revalidating.add(key)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return loader.get()
+                .thenApply(value -> {
+                    if (!cacheable.test(value)) return false;
+                    put(key, value, ttl);
+                    return true;
+                })
+                .whenComplete((stored, e) -> revalidating.remove(key));
+    }
+
+    /**
+     * @return remaining time to live of key, negative if it is expired, null if it is absent
+     */
+    public Duration getTimeToLive(String key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        return entry == null ? null : Duration.ofMillis(entry.expiresAtMillis - clock.millis());
+    }
+
+    private void revalidate(String key, Duration ttl, Supplier<CompletableFuture<V>> loader) {
+        if (!revalidating.add(key)) return;
+        load(key, ttl, loader).whenComplete((v, e) -> revalidating.remove(key));
+    }
+
+    private CompletableFuture<V> load(String key, Duration ttl, Supplier<CompletableFuture<V>> loader) {
+        return loader.get().thenApply(value -> {
+            if (cacheable.test(value)) put(key, value, ttl);
+            return value;
+        });
+    }
+
+    public synchronized void put(String key, V value, Duration ttl) {
+        entries.put(key, new Entry<>(value, clock.millis() + ttl.toMillis()));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", staleHits=" + getStaleHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + ", size=" + size();
+    }
+}
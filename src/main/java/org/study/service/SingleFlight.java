@@ -0,0 +1,68 @@
+package org.study.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: while a load is in flight, every other caller with the same key
+ * gets the same future instead of starting its own load
+ *
+ * @param <V> loaded value class parameter
+ */
+public class SingleFlight<V> {
+
+    private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param key    load key
+     * @param loader starts load, called only if there is no load of key in flight
+     * @return future of in-flight load of key
+     */
+    public CompletableFuture<V> execute(String key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        loads.increment();
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+            return created;
+        }
+        load.whenComplete((value, e) -> {
+            //removed before completion, so callers coming after it start a new load
+            inFlight.remove(key, created);
+            if (e != null) created.completeExceptionally(e);
+            else created.complete(value);
+        });
+        return created;
+    }
+
+    /**
+     * @return number of loads started
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * @return number of callers which joined a load already in flight
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,294 @@
+package org.study.service;
+
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary snapshot file with the latest cases, vaccination and history data of every country, read through
+ * a MappedByteBuffer.
+ * <p>
+ * Layout: header (magic, version, creation time, record count), then fixed-width records sorted by UTF-8 bytes
+ * of country name, so the record array itself is the country index and is binary searched in place:
+ * <pre>
+ *   0  name length (1 byte) + UTF-8 name (63 bytes, zero padded)
+ *  64  int flags (HAS_CASES, HAS_VACCINES, HAS_HISTORY), abbreviation (4 ASCII bytes, zero padded)
+ *  72  long confirmed, recovered, deaths
+ *  96  long peopleVaccinated, population
+ * 112  long latest history date (epoch day), latest history confirmed
+ * 128  double HistoryStats of the whole history (7 and 14-day averages, growth, doubling time, peak), int peak day
+ * </pre>
+ * Only the latest history point is kept, so the indicators are computed on write.
+ */
+public class SnapshotStore implements CovidDataSnapshot, AutoCloseable {
+
+    private static final int MAGIC = 0x43313953; //"C19S"
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 176;
+    static final int MAX_NAME_BYTES = 63;
+    static final int MAX_ABBREVIATION_BYTES = 4;
+
+    private static final int HAS_CASES = 1;
+    private static final int HAS_VACCINES = 1 << 1;
+    private static final int HAS_HISTORY = 1 << 2;
+
+    private static final int FLAGS = 64;
+    private static final int ABBREVIATION = 68;
+    private static final int CONFIRMED = 72;
+    private static final int RECOVERED = 80;
+    private static final int DEATHS = 88;
+    private static final int PEOPLE_VACCINATED = 96;
+    private static final int POPULATION = 104;
+    private static final int HISTORY_DATE = 112;
+    private static final int HISTORY_CONFIRMED = 120;
+    private static final int AVERAGE_7D = 128;
+    private static final int AVERAGE_14D = 136;
+    private static final int GROWTH = 144;
+    private static final int DOUBLING = 152;
+    private static final int PEAK = 160;
+    private static final int PEAK_DAY = 168;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long createdAtMillis;
+    private final int recordCount;
+
+    private SnapshotStore(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a snapshot file");
+        }
+        createdAtMillis = buffer.getLong(8);
+        recordCount = buffer.getInt(16);
+        if (buffer.capacity() < HEADER_SIZE + (long) recordCount * RECORD_SIZE) {
+            throw new IOException("Truncated snapshot file");
+        }
+    }
+
+    /**
+     * maps existing snapshot file into memory
+     *
+     * @param file snapshot file
+     * @return opened store
+     */
+    public static SnapshotStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SnapshotStore(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * writes snapshot into file, file is replaced atomically so readers never see it half written,
+     * countries with names longer than 63 UTF-8 bytes are skipped, as are abbreviations which are not
+     * 1 to 4 ASCII characters
+     *
+     * @param file     snapshot file
+     * @param snapshot WorldSnapshot
+     */
+    public static void write(Path file, WorldSnapshot snapshot) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        for (String country : snapshot.getCountries()) {
+            byte[] name = country.getBytes(StandardCharsets.UTF_8);
+            if (name.length <= MAX_NAME_BYTES) names.add(name);
+        }
+        names.sort(Arrays::compareUnsigned);
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + names.size() * RECORD_SIZE);
+        out.putInt(MAGIC).putInt(VERSION).putLong(snapshot.getLoadedAtMillis()).putInt(names.size()).putInt(0);
+        for (byte[] name : names) {
+            writeRecord(out, name, snapshot);
+        }
+        out.flip();
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) channel.write(out);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeRecord(ByteBuffer out, byte[] name, WorldSnapshot snapshot) {
+        String country = new String(name, StandardCharsets.UTF_8);
+        int start = out.position();
+        out.put((byte) name.length).put(name);
+        out.position(start + FLAGS);
+
+        int flags = 0;
+        CasesUrlResponse cases = snapshot.getCases(country);
+        VaccinesUrlResponse vaccines = snapshot.getVaccines(country);
+        HistoryUrlResponse history = snapshot.getHistory(country);
+        TimeSeries latest = history == null ? null : history.getConfirmedByDate();
+        if (latest != null && latest.isEmpty()) latest = null;
+        HistoryStats stats = latest == null ? HistoryStats.EMPTY : snapshot.getHistoryStats(country);
+        if (cases != null) flags |= HAS_CASES;
+        if (vaccines != null) flags |= HAS_VACCINES;
+        if (latest != null) flags |= HAS_HISTORY;
+
+        out.putInt(flags);
+        String abbreviation = cases == null ? null : cases.getAbbreviation();
+        if (abbreviation != null && !abbreviation.isEmpty() && abbreviation.length() <= MAX_ABBREVIATION_BYTES
+                && StandardCharsets.US_ASCII.newEncoder().canEncode(abbreviation)) {
+            out.put(abbreviation.getBytes(StandardCharsets.US_ASCII));
+        }
+        out.position(start + ABBREVIATION + MAX_ABBREVIATION_BYTES);
+        out.putLong(cases == null ? 0L : cases.getConfirmed())
+                .putLong(cases == null ? 0L : cases.getRecovered())
+                .putLong(cases == null ? 0L : cases.getDeaths());
+        out.putLong(vaccines == null ? 0L : vaccines.getPeopleVaccinated())
+                .putLong(vaccines == null ? 0L : vaccines.getPopulation());
+        out.putLong(latest == null ? 0L : latest.getEpochDay(latest.size() - 1))
+                .putLong(latest == null ? 0L : latest.getLatestValue());
+        out.putDouble(stats.getNewCasesAverage7d())
+                .putDouble(stats.getNewCasesAverage14d())
+                .putDouble(stats.getDailyGrowthPercent())
+                .putDouble(stats.getDoublingTimeDays())
+                .putDouble(stats.getPeakNewCasesAverage7d())
+                .putInt(stats.getPeakEpochDay());
+        out.position(start + RECORD_SIZE);
+    }
+
+    /**
+     * @param country country name, case sensitive
+     * @return offset of country record or -1 if there is no such country
+     */
+    private int find(String country) {
+        byte[] key = country.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_NAME_BYTES) return -1;
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_SIZE + mid * RECORD_SIZE;
+            int cmp = compareName(offset, key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return offset;
+        }
+        return -1;
+    }
+
+    private int compareName(int offset, byte[] key) {
+        int length = buffer.get(offset) & 0xFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(offset + 1 + i), key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    public boolean contains(String country) {
+        return find(country) >= 0;
+    }
+
+    @Override
+    public CasesUrlResponse getCases(String country) {
+        int offset = find(country);
+        if (offset < 0 || (buffer.getInt(offset + FLAGS) & HAS_CASES) == 0) return null;
+        CasesUrlResponse cases = new CasesUrlResponse();
+        cases.setConfirmed(buffer.getLong(offset + CONFIRMED));
+        cases.setRecovered(buffer.getLong(offset + RECOVERED));
+        cases.setDeaths(buffer.getLong(offset + DEATHS));
+        int length = 0;
+        while (length < MAX_ABBREVIATION_BYTES && buffer.get(offset + ABBREVIATION + length) != 0) length++;
+        if (length > 0) {
+            byte[] abbreviation = new byte[length];
+            buffer.get(offset + ABBREVIATION, abbreviation);
+            cases.setAbbreviation(new String(abbreviation, StandardCharsets.US_ASCII));
+        }
+        return cases;
+    }
+
+    @Override
+    public VaccinesUrlResponse getVaccines(String country) {
+        int offset = find(country);
+        if (offset < 0 || (buffer.getInt(offset + FLAGS) & HAS_VACCINES) == 0) return null;
+        VaccinesUrlResponse vaccines = new VaccinesUrlResponse();
+        vaccines.setPeopleVaccinated(buffer.getLong(offset + PEOPLE_VACCINATED));
+        vaccines.setPopulation(buffer.getLong(offset + POPULATION));
+        return vaccines;
+    }
+
+    /**
+     * @return history with the latest data point only and the indicators of the whole history
+     */
+    @Override
+    public HistoryUrlResponse getHistory(String country) {
+        int offset = find(country);
+        if (offset < 0 || (buffer.getInt(offset + FLAGS) & HAS_HISTORY) == 0) return null;
+        HistoryUrlResponse history = new HistoryUrlResponse();
+        history.setConfirmedByDate(new TimeSeries.Builder(1)
+                .add((int) buffer.getLong(offset + HISTORY_DATE), buffer.getLong(offset + HISTORY_CONFIRMED))
+                .build());
+        history.setStats(readHistoryStats(offset));
+        return history;
+    }
+
+    /**
+     * @return indicators computed from the whole history when the file was written
+     */
+    @Override
+    public HistoryStats getHistoryStats(String country) {
+        int offset = find(country);
+        if (offset < 0 || (buffer.getInt(offset + FLAGS) & HAS_HISTORY) == 0) return null;
+        return readHistoryStats(offset);
+    }
+
+    private HistoryStats readHistoryStats(int offset) {
+        return new HistoryStats(buffer.getDouble(offset + AVERAGE_7D), buffer.getDouble(offset + AVERAGE_14D),
+                buffer.getDouble(offset + GROWTH), buffer.getDouble(offset + DOUBLING),
+                buffer.getDouble(offset + PEAK), buffer.getInt(offset + PEAK_DAY));
+    }
+
+    /**
+     * @return names of all countries in file in index order
+     */
+    @Override
+    public List<String> getCountries() {
+        List<String> countries = new ArrayList<>(recordCount);
+        byte[] name = new byte[MAX_NAME_BYTES];
+        for (int i = 0; i < recordCount; i++) {
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            int length = buffer.get(offset) & 0xFF;
+            buffer.get(offset + 1, name, 0, length);
+            countries.add(new String(name, 0, length, StandardCharsets.UTF_8));
+        }
+        return countries;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
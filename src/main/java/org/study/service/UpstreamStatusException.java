@@ -0,0 +1,28 @@
+package org.study.service;
+
+/**
+ * Thrown when upstream answers with a response code other than 200
+ */
+public class UpstreamStatusException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public UpstreamStatusException(int statusCode, String uri) {
+        super("Response code " + statusCode + " for " + uri);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if the same request may succeed later: 429, 500, 502, 503 and 504
+     */
+    public boolean isTransient() {
+        return statusCode == 429 || statusCode == 500 || statusCode == 502 || statusCode == 503
+                || statusCode == 504;
+    }
+}
@@ -0,0 +1,82 @@
+package org.study.service;
+
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * All-country responses of /cases, /vaccines and /history indexed by country name. Indicators of every
+ * history are computed in parallel when the snapshot is created and kept by the history responses.
+ */
+public class WorldSnapshot implements CovidDataSnapshot {
+
+    private final Map<String, CasesUrlResponse> cases;
+    private final Map<String, VaccinesUrlResponse> vaccines;
+    private final Map<String, HistoryUrlResponse> history;
+    private final long loadedAtMillis;
+
+    public WorldSnapshot(Map<String, CasesUrlResponse> cases, Map<String, VaccinesUrlResponse> vaccines,
+                         Map<String, HistoryUrlResponse> history, long loadedAtMillis) {
+        this.cases = Collections.unmodifiableMap(cases);
+        this.vaccines = Collections.unmodifiableMap(vaccines);
+        this.history = Collections.unmodifiableMap(history);
+        this.loadedAtMillis = loadedAtMillis;
+        analyzeHistory();
+    }
+
+    private void analyzeHistory() {
+        Map<String, TimeSeries> confirmedByCountry = new HashMap<>();
+        history.forEach((country, response) -> {
+            if (response != null && response.getStats() == null) {
+                confirmedByCountry.put(country, response.getConfirmedByDate());
+            }
+        });
+        Map<String, HistoryStats> stats = HistoryAnalytics.analyzeAll(confirmedByCountry);
+        stats.forEach((country, countryStats) -> history.get(country).setStats(countryStats));
+    }
+
+    @Override
+    public CasesUrlResponse getCases(String country) {
+        return cases.get(country);
+    }
+
+    @Override
+    public VaccinesUrlResponse getVaccines(String country) {
+        return vaccines.get(country);
+    }
+
+    @Override
+    public HistoryUrlResponse getHistory(String country) {
+        return history.get(country);
+    }
+
+    /**
+     * @return sorted names of countries present in any of the endpoints
+     */
+    @Override
+    public Set<String> getCountries() {
+        Set<String> countries = new TreeSet<>(cases.keySet());
+        countries.addAll(vaccines.keySet());
+        countries.addAll(history.keySet());
+        return countries;
+    }
+
+    /**
+     * @return true if every endpoint gave some countries
+     */
+    public boolean isComplete() {
+        return !cases.isEmpty() && !vaccines.isEmpty() && !history.isEmpty();
+    }
+
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+}
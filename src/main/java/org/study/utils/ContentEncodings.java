@@ -0,0 +1,82 @@
+package org.study.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decoding of HTTP response bodies by their Content-Encoding
+ */
+public final class ContentEncodings {
+
+    /**
+     * value of Accept-Encoding header for the encodings decode supports
+     */
+    public static final String SUPPORTED = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ContentEncodings() {
+    }
+
+    /**
+     * wraps body so it is decompressed while it is read
+     *
+     * @param contentEncoding value of Content-Encoding header, null or identity if body is not compressed
+     * @param body            body as it comes from the wire
+     * @return decoded body, closing it releases native memory of the decompressor and closes body
+     * @throws IOException if encoding is not supported or gzip header is broken
+     */
+    public static InputStream decode(String contentEncoding, InputStream body) throws IOException {
+        if (contentEncoding == null) return body;
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "":
+            case "identity":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body, BUFFER_SIZE);
+            case "deflate":
+                return inflate(body);
+            default:
+                throw new IOException("Unsupported Content-Encoding " + contentEncoding);
+        }
+    }
+
+    /**
+     * "deflate" should be zlib-wrapped, but some servers send raw deflate, so the zlib header is checked first
+     */
+    private static InputStream inflate(InputStream body) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        int cmf = in.read();
+        int flg = cmf < 0 ? -1 : in.read();
+        if (flg >= 0) in.unread(flg);
+        if (cmf >= 0) in.unread(cmf);
+        boolean zlib = flg >= 0 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        return new OwnInflaterInputStream(in, new Inflater(!zlib));
+    }
+
+    /**
+     * InflaterInputStream ends only the Inflater it created itself, this one is passed in, so it is ended on close
+     */
+    private static final class OwnInflaterInputStream extends InflaterInputStream {
+
+        OwnInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.study.utils;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.study.entity.CountryCovidData;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes CountryCovidData as {"country": "France", "confirmed": 33357883, ..., "lastHistoryDataDate": "2022-08-18"},
+ * leaving out what is not available, and reads it back
+ */
+public class CountryCovidDataTypeAdapter extends TypeAdapter<CountryCovidData> {
+
+    @Override
+    public void write(JsonWriter out, CountryCovidData ccd) throws IOException {
+        if (ccd == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (ccd.getCountry() != null) out.name("country").value(ccd.getCountry());
+        writeLong(out, ccd, "confirmed", CountryCovidData.CONFIRMED, ccd.getConfirmedAsLong());
+        writeLong(out, ccd, "recovered", CountryCovidData.RECOVERED, ccd.getRecoveredAsLong());
+        writeLong(out, ccd, "deaths", CountryCovidData.DEATHS, ccd.getDeathsAsLong());
+        writeDouble(out, "vaccinatedLevel", ccd.getVaccinatedLevelAsDouble());
+        writeLong(out, ccd, "confirmedSinceLastHistoryData", CountryCovidData.CONFIRMED_SINCE_LAST_HISTORY_DATA,
+                ccd.getConfirmedSinceLastHistoryDataAsLong());
+        writeDay(out, "lastHistoryDataDate", ccd.getLastHistoryDataEpochDay());
+        writeDouble(out, "newCasesAverage7d", ccd.getNewCasesAverage7dAsDouble());
+        writeDouble(out, "newCasesAverage14d", ccd.getNewCasesAverage14dAsDouble());
+        writeDouble(out, "dailyGrowthPercent", ccd.getDailyGrowthPercentAsDouble());
+        writeDouble(out, "doublingTimeDays", ccd.getDoublingTimeDaysAsDouble());
+        writeDouble(out, "peakNewCasesAverage7d", ccd.getPeakNewCasesAverage7dAsDouble());
+        writeDay(out, "peakDate", ccd.getPeakEpochDay());
+        if (ccd.getSuggestions() != null) {
+            out.name("suggestions").beginArray();
+            for (String suggestion : ccd.getSuggestions()) {
+                out.value(suggestion);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    private static void writeLong(JsonWriter out, CountryCovidData ccd, String name, int flag, long value)
+            throws IOException {
+        if (ccd.isAvailable(flag)) out.name(name).value(value);
+    }
+
+    private static void writeDouble(JsonWriter out, String name, double value) throws IOException {
+        if (!Double.isNaN(value)) out.name(name).value(value);
+    }
+
+    private static void writeDay(JsonWriter out, String name, int epochDay) throws IOException {
+        if (epochDay != CountryCovidData.NO_DAY) out.name(name).value(LocalDate.ofEpochDay(epochDay).toString());
+    }
+
+    @Override
+    public CountryCovidData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CountryCovidData.CountryCovidDataBuilder builder = CountryCovidData.builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "country":
+                    builder.country(in.nextString());
+                    break;
+                case "confirmed":
+                    builder.confirmed(in.nextLong());
+                    break;
+                case "recovered":
+                    builder.recovered(in.nextLong());
+                    break;
+                case "deaths":
+                    builder.deaths(in.nextLong());
+                    break;
+                case "vaccinatedLevel":
+                    builder.vaccinatedLevel(in.nextDouble());
+                    break;
+                case "confirmedSinceLastHistoryData":
+                    builder.confirmedSinceLastHistoryData(in.nextLong());
+                    break;
+                case "lastHistoryDataDate":
+                    builder.lastHistoryDataEpochDay(TimeSeriesTypeAdapter.parseEpochDay(in.nextString()));
+                    break;
+                case "newCasesAverage7d":
+                    builder.newCasesAverage7d(in.nextDouble());
+                    break;
+                case "newCasesAverage14d":
+                    builder.newCasesAverage14d(in.nextDouble());
+                    break;
+                case "dailyGrowthPercent":
+                    builder.dailyGrowthPercent(in.nextDouble());
+                    break;
+                case "doublingTimeDays":
+                    builder.doublingTimeDays(in.nextDouble());
+                    break;
+                case "peakNewCasesAverage7d":
+                    builder.peakNewCasesAverage7d(in.nextDouble());
+                    break;
+                case "peakDate":
+                    builder.peakEpochDay(TimeSeriesTypeAdapter.parseEpochDay(in.nextString()));
+                    break;
+                case "suggestions":
+                    List<String> suggestions = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        suggestions.add(in.nextString());
+                    }
+                    in.endArray();
+                    builder.suggestions(suggestions);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
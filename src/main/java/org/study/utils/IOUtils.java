@@ -1,14 +1,26 @@
 package org.study.utils;
 
+import java.io.PrintStream;
 import java.util.Scanner;
 
 public class IOUtils {
+
+    /**
+     * one Scanner for the whole run, a Scanner per call would lose input buffered by the previous one
+     */
+    private static Scanner in;
+
+    private static synchronized Scanner getScanner() {
+        if (in == null) in = new Scanner(System.in);
+        return in;
+    }
+
     public static String getNotBlankLineFromCmd() {
         return getNotBlankLineFromCmd("");
     }
 
     public static String getNotBlankLineFromCmd(String message) {
-        Scanner in = new Scanner(System.in);
+        Scanner in = getScanner();
         String line = "";
         do {
             if (message != null && !message.isEmpty()) System.out.println(message);
@@ -16,4 +28,25 @@ public class IOUtils {
         } while (line.isEmpty());
         return line;
     }
+
+    /**
+     * @param prompt printed without line break before reading, skipped if null or empty
+     * @return trimmed line or null if input is over
+     */
+    public static String readLineFromCmd(String prompt) {
+        return readLineFromCmd(prompt, System.out);
+    }
+
+    /**
+     * @param prompt printed to out without line break before reading, skipped if null or empty
+     * @return trimmed line or null if input is over
+     */
+    public static String readLineFromCmd(String prompt, PrintStream out) {
+        Scanner in = getScanner();
+        if (prompt != null && !prompt.isEmpty()) {
+            out.print(prompt);
+            out.flush();
+        }
+        return in.hasNextLine() ? in.nextLine().trim() : null;
+    }
 }
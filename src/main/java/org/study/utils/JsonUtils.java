@@ -1,11 +1,55 @@
 package org.study.utils;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class JsonUtils {
 
+    /**
+     * Gson is created when the first body is parsed or record written, not when the class is loaded
+     */
+    private static final class GsonHolder {
+        static final Gson GSON = new Gson();
+    }
+
+    /**
+     * @return plain Gson shared by parsing and serialization, CountryCovidData brings its own type adapter
+     */
+    public static Gson gson() {
+        return GsonHolder.GSON;
+    }
+
+    /**
+     * reads element the JsonReader is positioned at, it may stop before the end of the element
+     *
+     * @param <T> object class parameter
+     */
+    @FunctionalInterface
+    public interface ElementReader<T> {
+        T read(JsonReader jsonReader) throws IOException;
+    }
+
+    /**
+     * reads the whole element of a top-level member the JsonReader is positioned at
+     */
+    @FunctionalInterface
+    public interface MemberElementReader {
+        void read(String member, JsonReader jsonReader) throws IOException;
+    }
+
     /**
      * searches for element in String representation of JSON
      *
@@ -36,4 +80,171 @@ public class JsonUtils {
         }
         return null;
     }
+
+    /**
+     * streams top-level members of UTF-8 JSON until element with given name is found and binds it to classOfT,
+     * other members are skipped without building any tree
+     *
+     * @param in       UTF-8 JSON
+     * @param name     Name of element to find
+     * @param classOfT class of object to bind element to
+     * @param gson     Gson used for binding
+     * @param <T>      object class parameter
+     * @return object or null if nothing was found, element is null or input is empty
+     */
+    public static <T> T readJsonElement(InputStream in, String name, Class<T> classOfT, Gson gson)
+            throws IOException {
+        return readJsonElement(new InputStreamReader(in, StandardCharsets.UTF_8), name, classOfT, gson);
+    }
+
+    /**
+     * streams top-level members of JSON until element with given name is found and binds it to classOfT,
+     * other members are skipped without building any tree
+     *
+     * @param reader   JSON
+     * @param name     Name of element to find
+     * @param classOfT class of object to bind element to
+     * @param gson     Gson used for binding
+     * @param <T>      object class parameter
+     * @return object or null if nothing was found, element is null or input is empty
+     */
+    public static <T> T readJsonElement(Reader reader, String name, Class<T> classOfT, Gson gson)
+            throws IOException {
+        return readJsonElement(reader, name, jsonReader -> gson.<T>fromJson(jsonReader, classOfT));
+    }
+
+    /**
+     * streams top-level members of UTF-8 JSON until element with given name is found and reads it
+     * with elementReader, other members are skipped without building any tree
+     *
+     * @param in            UTF-8 JSON
+     * @param name          Name of element to find
+     * @param elementReader reader of element
+     * @param <T>           object class parameter
+     * @return object or null if nothing was found, element is null or input is empty
+     */
+    public static <T> T readJsonElement(InputStream in, String name, ElementReader<T> elementReader)
+            throws IOException {
+        return readJsonElement(new InputStreamReader(in, StandardCharsets.UTF_8), name, elementReader);
+    }
+
+    private static <T> T readJsonElement(Reader reader, String name, ElementReader<T> elementReader)
+            throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        if (!beginObject(jsonReader)) return null;
+        return findAndRead(jsonReader, name, elementReader);
+    }
+
+    /**
+     * streams JSON like {"France": {"All": {...}}, "Germany": {"All": {...}}} and binds element with given name
+     * of every top-level member to classOfT, other elements are skipped without building any tree
+     *
+     * @param in       UTF-8 JSON
+     * @param name     Name of element to find inside each member
+     * @param classOfT class of object to bind elements to
+     * @param gson     Gson used for binding
+     * @param <T>      object class parameter
+     * @return map of member names to objects, members without element are left out
+     */
+    public static <T> Map<String, T> readJsonElementsByMember(InputStream in, String name, Class<T> classOfT,
+                                                              Gson gson) throws IOException {
+        return readJsonElementsByMember(new InputStreamReader(in, StandardCharsets.UTF_8), name, classOfT, gson);
+    }
+
+    /**
+     * streams JSON like {"France": {"All": {...}}, "Germany": {"All": {...}}} and binds element with given name
+     * of every top-level member to classOfT, other elements are skipped without building any tree
+     *
+     * @param reader   JSON
+     * @param name     Name of element to find inside each member
+     * @param classOfT class of object to bind elements to
+     * @param gson     Gson used for binding
+     * @param <T>      object class parameter
+     * @return map of member names to objects, members without element are left out
+     */
+    public static <T> Map<String, T> readJsonElementsByMember(Reader reader, String name, Class<T> classOfT,
+                                                              Gson gson) throws IOException {
+        Map<String, T> objects = new LinkedHashMap<>();
+        forEachElementByMember(reader, name, (member, jsonReader) -> {
+            T object = gson.fromJson(jsonReader, classOfT);
+            if (object != null) objects.put(member, object);
+        });
+        return objects;
+    }
+
+    /**
+     * streams JSON like {"France": {"All": {...}}, "Germany": {"All": {...}}} and passes element with given name
+     * of every top-level member to elementReader as soon as it is reached, so nothing but the current element
+     * is held in memory
+     *
+     * @param in            UTF-8 JSON
+     * @param name          Name of element to find inside each member
+     * @param elementReader reader of elements, members without element or with null element are skipped
+     * @return number of elements read
+     */
+    public static long forEachElementByMember(InputStream in, String name, MemberElementReader elementReader)
+            throws IOException {
+        return forEachElementByMember(new InputStreamReader(in, StandardCharsets.UTF_8), name, elementReader);
+    }
+
+    private static long forEachElementByMember(Reader reader, String name, MemberElementReader elementReader)
+            throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        if (!beginObject(jsonReader)) return 0;
+        long elements = 0;
+        while (jsonReader.hasNext()) {
+            String member = jsonReader.nextName();
+            if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                jsonReader.skipValue();
+                continue;
+            }
+            jsonReader.beginObject();
+            Boolean found = findAndRead(jsonReader, name, r -> {
+                elementReader.read(member, r);
+                return Boolean.TRUE;
+            });
+            //rest of member after the element
+            while (jsonReader.hasNext()) {
+                jsonReader.skipValue();
+            }
+            jsonReader.endObject();
+            if (found != null) elements++;
+        }
+        return elements;
+    }
+
+    /**
+     * @return true if reader is positioned inside an object, false if input is empty or is not an object
+     */
+    private static boolean beginObject(JsonReader jsonReader) throws IOException {
+        try {
+            if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) return false;
+        } catch (EOFException e) {
+            return false;
+        }
+        jsonReader.beginObject();
+        return true;
+    }
+
+    /**
+     * skips members of current object until element with given name and binds it,
+     * reader is left right after the element or at the end of the object
+     */
+    private static <T> T findAndRead(JsonReader jsonReader, String name, ElementReader<T> elementReader)
+            throws IOException {
+        while (jsonReader.hasNext()) {
+            if (!jsonReader.nextName().equals(name)) {
+                jsonReader.skipValue();
+                continue;
+            }
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return null;
+            }
+            return elementReader.read(jsonReader);
+        }
+        return null;
+    }
 }
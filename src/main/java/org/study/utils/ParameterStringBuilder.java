@@ -3,11 +3,13 @@ package org.study.utils;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class ParameterStringBuilder {
 
     /**
-     * Transforms given map of parameters into String, that could be added to request
+     * Transforms given map of parameters into String, that could be added to request.
+     * Parameters are sorted by name, so equal maps always give equal Strings
      *
      * @param params Map of parameters
      * @return String representation of parameters
@@ -15,7 +17,7 @@ public class ParameterStringBuilder {
     public static String getParamsString(Map<String, String> params) {
         StringBuilder result = new StringBuilder();
 
-        for (Map.Entry<String, String> entry : params.entrySet()) {
+        for (Map.Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
             result.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8));
             result.append("=");
             result.append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
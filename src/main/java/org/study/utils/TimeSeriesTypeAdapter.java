@@ -0,0 +1,78 @@
+package org.study.utils;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.study.entity.TimeSeries;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Reads {"2022-08-18": 33357883, "2022-08-17": 33334278, ...} straight into TimeSeries primitive arrays
+ * and writes it back newest first, as upstream does
+ */
+public class TimeSeriesTypeAdapter extends TypeAdapter<TimeSeries> {
+
+    @Override
+    public TimeSeries read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TimeSeries.Builder builder = new TimeSeries.Builder(1024);
+        in.beginObject();
+        while (in.hasNext()) {
+            int epochDay = parseEpochDay(in.nextName());
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            builder.add(epochDay, in.nextLong());
+        }
+        in.endObject();
+        return builder.build();
+    }
+
+    @Override
+    public void write(JsonWriter out, TimeSeries series) throws IOException {
+        if (series == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (int i = series.size() - 1; i >= 0; i--) {
+            out.name(series.getDate(i).toString()).value(series.getValue(i));
+        }
+        out.endObject();
+    }
+
+    /**
+     * @param date date in yyyy-MM-dd format
+     * @return days since 1970-01-01
+     */
+    public static int parseEpochDay(String date) {
+        try {
+            if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+                return Math.toIntExact(LocalDate.of(digits(date, 0, 4), digits(date, 5, 7), digits(date, 8, 10))
+                        .toEpochDay());
+            }
+            return Math.toIntExact(LocalDate.parse(date).toEpochDay());
+        } catch (DateTimeException | NumberFormatException e) {
+            throw new JsonSyntaxException("Unparseable date: " + date, e);
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException(s);
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncLookupTests {
+
+    //three endpoints are requested at once, so lookup takes about one delay instead of three
+    @Test
+    void lookupLatencyCloseToSlowestCall() throws IOException {
+        try (StubUpstream upstream = new StubUpstream().delay(path -> 300L)) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+            infoService.getCountryCovidData("Warmup");
+
+            long start = System.nanoTime();
+            CountryCovidData ccd = infoService.getCountryCovidDataAsync("France").join();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertNotNull(ccd.getVaccinatedLevel());
+            assertEquals(0L, ccd.getConfirmedSinceLastHistoryData());
+            assertTrue(elapsedMillis < 800, "lookup took " + elapsedMillis + " ms");
+        }
+    }
+
+    //failed endpoint leaves its fields empty
+    @Test
+    void failedEndpointGivesPartialResult() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            upstream.on("/vaccines", q -> {
+                throw new IllegalStateException("upstream failure");
+            });
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            CountryCovidData ccd = infoService.getCountryCovidDataAsync("France").join();
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertNull(ccd.getVaccinatedLevel());
+            assertNotNull(ccd.getLastHistoryDataDate());
+        }
+    }
+
+    //timed out endpoint leaves its fields empty
+    @Test
+    void timedOutEndpointGivesPartialResult() throws IOException {
+        try (StubUpstream upstream = new StubUpstream().delay(path -> path.equals("/history") ? 3000L : 0L)) {
+            Properties props = upstream.appProps();
+            props.setProperty("REQUEST_TIMEOUT_SECONDS", "1");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+
+            CountryCovidData ccd = infoService.getCountryCovidDataAsync("France").join();
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertNotNull(ccd.getVaccinatedLevel());
+            assertNull(ccd.getLastHistoryDataDate());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.service.BatchLookupService;
+import org.study.service.Covid19InfoService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchLookupTests {
+
+    private static final int COUNTRIES = 48;
+    private static final long UPSTREAM_DELAY_MILLIS = 40L;
+
+    private static String countryList() {
+        return IntStream.range(0, COUNTRIES).mapToObj(i -> "Country" + i + "\n\n").collect(Collectors.joining());
+    }
+
+    //every listed country gets a result and in-flight lookups never exceed the cap
+    @Test
+    void batchRespectsConcurrencyCap() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try (StubUpstream upstream = new StubUpstream()) {
+            upstream.on("/cases", q -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(UPSTREAM_DELAY_MILLIS);
+                inFlight.decrementAndGet();
+                return StubUpstream.casesBody(q.get("country"));
+            });
+            Properties props = upstream.appProps();
+            //a hedged second request would be one more in flight than the cap allows lookups
+            props.setProperty("HEDGE_PERCENTILE", "0");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+            List<CountryCovidData> results = new ArrayList<>();
+
+            int count = new BatchLookupService(infoService, 4)
+                    .run(new BufferedReader(new StringReader(countryList())), results::add, failure -> {
+                    });
+
+            assertEquals(COUNTRIES, count);
+            assertEquals(COUNTRIES, results.size());
+            assertTrue(maxInFlight.get() <= 4, "max in flight " + maxInFlight.get());
+        }
+    }
+
+    //a lookup which fails is reported by name instead of being left out
+    @Test
+    void failedLookupIsReported() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps()) {
+                @Override
+                public CompletableFuture<CountryCovidData> getCountryCovidDataAsync(String country) {
+                    if (country.equals("Country1")) return CompletableFuture.failedFuture(new IOException("down"));
+                    return super.getCountryCovidDataAsync(country);
+                }
+            };
+            List<CountryCovidData> results = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+
+            int count = new BatchLookupService(infoService, 2)
+                    .run(new BufferedReader(new StringReader("Country0\nCountry1\nCountry2\n")), results::add,
+                            failures::add);
+
+            assertEquals(3, count);
+            assertEquals(2, results.size());
+            assertEquals(List.of("Can't look up Country1: java.io.IOException: down"), failures);
+        }
+    }
+
+    //throughput grows with concurrency while the upstream is latency bound
+    @Test
+    void throughputByConcurrency() throws Exception {
+        try (StubUpstream upstream = new StubUpstream().delay(path -> UPSTREAM_DELAY_MILLIS)) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+            infoService.getCountryCovidData("Warmup");
+
+            double sequential = 0;
+            double best = 0;
+            for (int concurrency : new int[]{1, 4, 16}) {
+                long start = System.nanoTime();
+                new BatchLookupService(infoService, concurrency)
+                        .run(new BufferedReader(new StringReader(countryList())), ccd -> {
+                        }, failure -> {
+                        });
+                double perSecond = COUNTRIES / ((System.nanoTime() - start) / 1e9);
+                System.out.printf("concurrency %2d: %7.1f lookups/s%n", concurrency, perSecond);
+                if (concurrency == 1) sequential = perSecond;
+                best = Math.max(best, perSecond);
+            }
+            assertTrue(best > sequential * 2, "sequential " + sequential + ", best " + best);
+        }
+    }
+}
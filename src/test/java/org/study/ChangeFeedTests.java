@@ -0,0 +1,103 @@
+package org.study;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.study.bench.Fixtures;
+import org.study.service.Covid19InfoService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeFeedTests {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * serves recorded all-country bodies of src/test/resources/fixtures/changes/{poll}
+     */
+    private static StubUpstream replay(AtomicReference<String> poll) throws IOException {
+        StubUpstream upstream = new StubUpstream();
+        for (String endpoint : List.of("cases", "vaccines", "history")) {
+            upstream.on("/" + endpoint, q -> Fixtures.load("changes/" + poll.get() + "/" + endpoint + ".json"));
+        }
+        return upstream;
+    }
+
+    private static List<JsonObject> poll(Covid19InfoService infoService, int expectedLines) {
+        StringBuilder out = new StringBuilder();
+        assertEquals(expectedLines, infoService.pollChangesAsync(out).join());
+        List<JsonObject> records = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            if (!line.isEmpty()) records.add(GSON.fromJson(line, JsonObject.class));
+        }
+        assertEquals(Math.max(0, expectedLines), records.size());
+        return records;
+    }
+
+    private static List<String> countries(List<JsonObject> records) {
+        List<String> countries = new ArrayList<>();
+        records.forEach(record -> countries.add(record.get("country").getAsString()));
+        return countries;
+    }
+
+    //replayed snapshots give every country first, then only countries whose numbers changed
+    @Test
+    void recordedSnapshotsGiveChangedCountries() throws IOException {
+        AtomicReference<String> recorded = new AtomicReference<>("poll1");
+        try (StubUpstream upstream = replay(recorded)) {
+            Properties props = upstream.appProps();
+            props.setProperty("MAX_RETRIES", "0");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+
+            List<JsonObject> first = poll(infoService, 3);
+            assertEquals(List.of("France", "Germany", "Italy"), countries(first));
+            assertEquals(33357883L, first.get(0).get("confirmed").getAsLong());
+            assertEquals("2022-08-18", first.get(0).get("lastHistoryDataDate").getAsString());
+
+            //Germany's cases and Italy's vaccines changed, France only got a new "updated" time
+            recorded.set("poll2");
+            List<JsonObject> second = poll(infoService, 2);
+            assertEquals(List.of("Germany", "Italy"), countries(second));
+            assertEquals(31918830L, second.get(0).get("confirmed").getAsLong());
+
+            poll(infoService, 0);
+
+            //a day of history for France, Italy gone, Spain new
+            recorded.set("poll3");
+            List<JsonObject> third = poll(infoService, 3);
+            assertEquals(List.of("France", "Spain", "Italy"), countries(third));
+            assertEquals("2022-08-19", third.get(0).get("lastHistoryDataDate").getAsString());
+            assertEquals(1, third.get(2).size());
+
+            poll(infoService, 0);
+        }
+    }
+
+    //snapshot missing an endpoint is skipped, its changes come with the next complete one
+    @Test
+    void incompleteSnapshotIsSkipped() throws IOException {
+        AtomicReference<String> recorded = new AtomicReference<>("poll1");
+        try (StubUpstream upstream = replay(recorded)) {
+            Properties props = upstream.appProps();
+            props.setProperty("MAX_RETRIES", "0");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+            poll(infoService, 3);
+
+            recorded.set("poll2");
+            upstream.status(path -> path.equals("/vaccines") ? 503 : 200);
+            assertTrue(poll(infoService, -1).isEmpty());
+
+            upstream.status(path -> 200);
+            List<JsonObject> changed = poll(infoService, 2);
+            assertEquals(List.of("Germany", "Italy"), countries(changed));
+            assertTrue(changed.get(1).has("vaccinatedLevel"));
+        }
+    }
+}
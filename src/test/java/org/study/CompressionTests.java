@@ -0,0 +1,189 @@
+package org.study;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.study.bench.Fixtures;
+import org.study.entity.CountryCovidData;
+import org.study.metrics.EndpointMetrics;
+import org.study.service.Covid19InfoService;
+import org.study.utils.ContentEncodings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressionTests {
+
+    private static final int COUNTRIES = 200;
+
+    private static String read(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    //gzip, zlib and raw deflate are decoded, unknown encodings are rejected
+    @Test
+    void decode() throws IOException {
+        byte[] plain = Fixtures.load(Fixtures.CASES).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(raw, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            out.write(plain);
+        }
+
+        String expected = new String(plain, StandardCharsets.UTF_8);
+        assertEquals(expected, read(ContentEncodings.decode("gzip",
+                new ByteArrayInputStream(StubUpstream.encode(plain, "gzip")))));
+        assertEquals(expected, read(ContentEncodings.decode("Deflate",
+                new ByteArrayInputStream(StubUpstream.encode(plain, "deflate")))));
+        assertEquals(expected, read(ContentEncodings.decode("deflate", new ByteArrayInputStream(raw.toByteArray()))));
+        assertEquals(expected, read(ContentEncodings.decode(null, new ByteArrayInputStream(plain))));
+        assertThrows(IOException.class, () -> ContentEncodings.decode("br", new ByteArrayInputStream(plain)));
+    }
+
+    //closing the decoded body closes the wire stream under it and the decoded body can't be read any more
+    @Test
+    void closingDecodedBodyClosesWire() throws IOException {
+        byte[] plain = Fixtures.load(Fixtures.CASES).getBytes(StandardCharsets.UTF_8);
+        for (String encoding : new String[]{"gzip", "deflate"}) {
+            boolean[] closed = {false};
+            InputStream wire = new ByteArrayInputStream(StubUpstream.encode(plain, encoding)) {
+                @Override
+                public void close() {
+                    closed[0] = true;
+                }
+            };
+            InputStream body = ContentEncodings.decode(encoding, wire);
+            assertEquals(plain[0], body.read());
+
+            body.close();
+
+            assertTrue(closed[0], encoding);
+            assertThrows(IOException.class, body::read, encoding);
+        }
+    }
+
+    //compressed responses give the same result with fewer bytes on the wire
+    @Test
+    void lookupWithCompression() throws Exception {
+        for (String encoding : new String[]{"gzip", "deflate"}) {
+            try (StubUpstream upstream = new StubUpstream().encoding(encoding)) {
+                Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+                CountryCovidData ccd = infoService.getCountryCovidData("France");
+
+                assertEquals(33357883L, ccd.getConfirmed());
+                assertTrue(ccd.getVaccinatedLevel() > 81);
+                EndpointMetrics cases = infoService.getMetrics().get("CASES_URL");
+                assertTrue(cases.getResponseBytes() < cases.getDecodedBytes(), encoding);
+            }
+        }
+    }
+
+    /**
+     * serves pre-encoded all-country fixtures, so the server itself allocates next to nothing
+     */
+    private static HttpServer fixtureServer(Map<String, byte[]> plainByPath, Map<String, byte[]> gzipByPath)
+            throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = accepted != null && accepted.contains("gzip");
+            byte[] bytes = (gzip ? gzipByPath : plainByPath).get(path);
+            if (bytes == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    private static long heapUsedAfterGc() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        return used;
+    }
+
+    //reports bytes on the wire and peak heap per endpoint for all-country responses with and without gzip
+    @Test
+    void transferReport() throws Exception {
+        Map<String, byte[]> plainByPath = new HashMap<>();
+        Map<String, byte[]> gzipByPath = new HashMap<>();
+        for (String[] fixture : new String[][]{{"/cases", Fixtures.CASES}, {"/vaccines", Fixtures.VACCINES},
+                {"/history", Fixtures.HISTORY}}) {
+            byte[] plain = Fixtures.world(Fixtures.load(fixture[1]), COUNTRIES).getBytes(StandardCharsets.UTF_8);
+            plainByPath.put(fixture[0], plain);
+            gzipByPath.put(fixture[0], StubUpstream.encode(plain, "gzip"));
+        }
+        HttpServer server = fixtureServer(plainByPath, gzipByPath);
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            System.out.printf("%-9s %-9s %12s %12s %12s%n", "endpoint", "encoding", "wire bytes", "decoded",
+                    "peak heap");
+            for (String endpoint : new String[]{"CASES", "VACCINES", "HISTORY"}) {
+                for (String acceptEncoding : new String[]{"", ContentEncodings.SUPPORTED}) {
+                    //only the measured endpoint answers, the others are 404
+                    Properties props = new Properties();
+                    props.setProperty("CASES_URL", base + (endpoint.equals("CASES") ? "/cases" : "/none"));
+                    props.setProperty("VACCINES_URL", base + (endpoint.equals("VACCINES") ? "/vaccines" : "/none"));
+                    props.setProperty("HISTORY_URL", base + (endpoint.equals("HISTORY") ? "/history" : "/none"));
+                    props.setProperty("ACCEPT_ENCODING", acceptEncoding);
+                    Covid19InfoService infoService = new Covid19InfoService(props);
+
+                    long baseline = heapUsedAfterGc();
+                    int countries = infoService.loadSnapshot().getCountries().size();
+                    long peak = heapPeak() - baseline;
+
+                    EndpointMetrics metrics = infoService.getMetrics().get(endpoint + "_URL");
+                    System.out.printf("%-9s %-9s %12d %12d %12d%n", endpoint,
+                            acceptEncoding.isEmpty() ? "identity" : "gzip", metrics.getResponseBytes(),
+                            metrics.getDecodedBytes(), peak);
+                    assertEquals(COUNTRIES, countries);
+                    if (!acceptEncoding.isEmpty()) {
+                        assertTrue(metrics.getResponseBytes() * 4 < metrics.getDecodedBytes());
+                    } else {
+                        assertEquals(metrics.getResponseBytes(), metrics.getDecodedBytes());
+                    }
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.service.ConcurrencyLimitException;
+import org.study.service.ConcurrencyLimiter;
+import org.study.service.Covid19InfoService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimiterTests {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    private static Properties limitedProps(StubUpstream upstream, boolean adaptive) {
+        Properties props = upstream.appProps();
+        props.setProperty("ADAPTIVE_CONCURRENCY", String.valueOf(adaptive));
+        props.setProperty("CONCURRENCY_INITIAL_LIMIT", "4");
+        //throttling alone drives the limit here, latency of a loaded single-CPU machine is too noisy
+        props.setProperty("CONCURRENCY_LATENCY_TOLERANCE", "100");
+        props.setProperty("MAX_RETRIES", "0");
+        props.setProperty("HEDGE_PERCENTILE", "0");
+        return props;
+    }
+
+    /**
+     * sends requests of distinct countries to /cases, keeping outstanding of them in flight at once
+     *
+     * @return number of requests answered with content
+     */
+    private static int load(Covid19InfoService infoService, String casesUrl, int requests, int outstanding,
+                            AtomicInteger countryNumber) throws InterruptedException {
+        Semaphore slots = new Semaphore(outstanding);
+        AtomicInteger answered = new AtomicInteger();
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            slots.acquire();
+            sent[i] = infoService.doRequestAsync(casesUrl, Map.of("country", "C" + countryNumber.incrementAndGet()))
+                    .whenComplete((content, e) -> {
+                        if (content != null && !content.isEmpty()) answered.incrementAndGet();
+                        slots.release();
+                    });
+        }
+        CompletableFuture.allOf(sent).join();
+        return answered.get();
+    }
+
+    //permits are given up to the limit, then requests queue in order and fail when queue is full
+    @Test
+    void requestsOverLimitQueue() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, 1, 2d);
+
+        ConcurrencyLimiter.Permit first = limiter.acquire(WAIT).join();
+        limiter.acquire(WAIT).join();
+        CompletableFuture<ConcurrencyLimiter.Permit> queued = limiter.acquire(WAIT);
+        CompletableFuture<ConcurrencyLimiter.Permit> rejected = limiter.acquire(WAIT);
+
+        assertFalse(queued.isDone());
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(e.getCause() instanceof ConcurrencyLimitException);
+        first.release(ConcurrencyLimiter.Outcome.IGNORED);
+        assertTrue(queued.isDone());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    //queued request gives up when it can't get a permit within its wait
+    @Test
+    void queuedRequestTimesOut() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, 1, 10, 10, 2d);
+        limiter.acquire(WAIT).join();
+
+        CompletableFuture<ConcurrencyLimiter.Permit> queued = limiter.acquire(Duration.ofMillis(50));
+
+        CompletionException e = assertThrows(CompletionException.class, queued::join);
+        assertTrue(e.getCause() instanceof ConcurrencyLimitException);
+        assertEquals(0, limiter.getQueued());
+    }
+
+    //drops of one episode shrink the limit once, successes of a busy limit grow it additively
+    @Test
+    void limitIsIncreasedAdditivelyAndDecreasedMultiplicatively() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 8, 1, 100, 100,
+                Double.POSITIVE_INFINITY);
+        ConcurrencyLimiter.Permit[] permits = new ConcurrencyLimiter.Permit[8];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limiter.acquire(WAIT).join();
+        }
+        for (ConcurrencyLimiter.Permit permit : permits) {
+            permit.release(ConcurrencyLimiter.Outcome.DROPPED);
+        }
+        assertEquals(6, limiter.getLimit());
+        assertEquals(8, limiter.getDrops());
+
+        //only requests sent while at least half of the limit was in use raise it, by 1/limit each
+        for (int round = 0; round < 3; round++) {
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) {
+                permits[i] = limiter.acquire(WAIT).join();
+            }
+            for (int i = 0; i < limit; i++) {
+                permits[i].release(ConcurrencyLimiter.Outcome.SUCCESS);
+            }
+        }
+        assertEquals(7, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(WAIT).join().release(ConcurrencyLimiter.Outcome.SUCCESS);
+        }
+        assertEquals(7, limiter.getLimit());
+
+        //a request which started after the last decrease may decrease it again
+        limiter.acquire(WAIT).join().release(ConcurrencyLimiter.Outcome.DROPPED);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    //latency told by the caller is judged against the baseline, not the time the permit was held
+    @Test
+    void latencyIsGivenByCaller() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 8, 1, 100, 100, 2d);
+        limiter.acquire(WAIT).join().release(ConcurrencyLimiter.Outcome.SUCCESS, 1_000_000L);
+
+        //held for 50 ms, e.g. while a large body was read, but upstream answered in 1 ms
+        ConcurrencyLimiter.Permit permit = limiter.acquire(WAIT).join();
+        Thread.sleep(50);
+        permit.release(ConcurrencyLimiter.Outcome.SUCCESS, 1_000_000L);
+        assertEquals(8, limiter.getLimit());
+
+        limiter.acquire(WAIT).join().release(ConcurrencyLimiter.Outcome.SUCCESS, 10_000_000L);
+        assertEquals(6, limiter.getLimit());
+    }
+
+    //all-country requests have their own limiter, so their latency doesn't count against single lookups
+    @Test
+    void allCountryRequestsHaveTheirOwnLimiter() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(limitedProps(upstream, true));
+            infoService.loadSnapshot();
+            infoService.doRequestAsync(upstream.url("/cases"), Map.of("country", "France")).join();
+
+            Map<String, ConcurrencyLimiter> limiters = infoService.getConcurrencyLimiters();
+            assertTrue(limiters.containsKey("CASES_URL"), limiters.keySet().toString());
+            assertTrue(limiters.containsKey("CASES_URL/all"), limiters.keySet().toString());
+            assertTrue(limiters.containsKey("HISTORY_URL/all"), limiters.keySet().toString());
+        }
+    }
+
+    //limit follows upstream capacity as it changes and keeps throttling far below an unlimited client's
+    @Test
+    void limitFollowsChangingCapacity() throws IOException, InterruptedException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            AtomicInteger capacity = new AtomicInteger(8);
+            upstream.delay(path -> 20L).capacity(path -> capacity.get());
+            AtomicInteger countryNumber = new AtomicInteger();
+
+            Covid19InfoService unlimited = new Covid19InfoService(limitedProps(upstream, false));
+            load(unlimited, upstream.url("/cases"), 200, 32, countryNumber);
+            int unlimitedThrottled = upstream.throttled("/cases");
+
+            Covid19InfoService infoService = new Covid19InfoService(limitedProps(upstream, true));
+            int answered = load(infoService, upstream.url("/cases"), 200, 32, countryNumber);
+            int throttled = upstream.throttled("/cases") - unlimitedThrottled;
+            ConcurrencyLimiter limiter = infoService.getConcurrencyLimiters().get("CASES_URL");
+            System.out.println("capacity 8: limit " + limiter.getLimit() + ", throttled " + throttled
+                    + " of 200, unlimited client throttled " + unlimitedThrottled + " of 200");
+            assertTrue(throttled * 2 < unlimitedThrottled, throttled + " vs " + unlimitedThrottled);
+            assertTrue(answered > 150, "answered " + answered);
+            assertTrue(limiter.getLimit() >= 3 && limiter.getLimit() <= 16, "limit " + limiter.getLimit());
+
+            capacity.set(32);
+            load(infoService, upstream.url("/cases"), 600, 32, countryNumber);
+            int raisedLimit = limiter.getLimit();
+            System.out.println("capacity 32: limit " + raisedLimit);
+            assertTrue(raisedLimit > 12, "limit " + raisedLimit);
+
+            capacity.set(4);
+            load(infoService, upstream.url("/cases"), 300, 32, countryNumber);
+            System.out.println("capacity 4: limit " + limiter.getLimit());
+            assertTrue(limiter.getLimit() <= 8, "limit " + limiter.getLimit());
+            assertEquals(0, limiter.getRejected());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.study;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.entity.CountryCovidDataStore;
+import org.study.entity.HistoryStats;
+import org.study.service.Covid19InfoService;
+import org.study.service.WorldSnapshot;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountryCovidDataStoreTests {
+
+    private static final int DAY = (int) LocalDate.parse("2022-08-18").toEpochDay();
+
+    private static CountryCovidData record(int i) {
+        CountryCovidData.CountryCovidDataBuilder builder = CountryCovidData.builder()
+                .country(i % 10 == 0 ? null : "Country \u00e9 " + i)
+                .confirmed(1000L * i)
+                .vaccinatedLevel(i % 3 == 0 ? Double.NaN : i / 7d)
+                .historyStats(new HistoryStats(i, i / 2d, Double.NaN, -i, i * 3d,
+                        i % 4 == 0 ? HistoryStats.NO_DAY : DAY - i));
+        if (i % 2 == 0) builder.recovered(0L).deaths(i);
+        if (i % 5 != 0) builder.lastHistoryDataEpochDay(DAY).confirmedSinceLastHistoryData(-i);
+        return builder.build();
+    }
+
+    //counts not set are unavailable, zero is a value
+    @Test
+    void unavailableValuesAreFlagged() {
+        CountryCovidData ccd = CountryCovidData.builder().country("France").recovered(0L).build();
+
+        assertEquals(CountryCovidData.RECOVERED, ccd.getFlags());
+        assertEquals(0L, ccd.getRecovered());
+        assertNull(ccd.getConfirmed());
+        assertNull(ccd.getConfirmedSinceLastHistoryData());
+        assertNull(ccd.getVaccinatedLevel());
+        assertNull(ccd.getLastHistoryDataDate());
+        assertTrue(Double.isNaN(ccd.getVaccinatedLevelAsDouble()));
+        assertEquals(CountryCovidData.NO_DAY, ccd.getPeakEpochDay());
+        assertTrue(ccd.toString().contains("    confirmed : info not available\n    recovered : 0\n"));
+    }
+
+    //JSON leaves out unavailable values and reads back into an equal record
+    @Test
+    void jsonOfAvailableValues() {
+        Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        CountryCovidData ccd = CountryCovidData.builder().country("France").confirmed(33357883L).deaths(149992L)
+                .vaccinatedLevel(81.5).lastHistoryDataEpochDay(DAY).confirmedSinceLastHistoryData(0L)
+                .suggestions(List.of("Frankreich")).build();
+
+        String json = gson.toJson(ccd);
+
+        assertEquals("{\"country\":\"France\",\"confirmed\":33357883,\"deaths\":149992,\"vaccinatedLevel\":81.5,"
+                + "\"confirmedSinceLastHistoryData\":0,\"lastHistoryDataDate\":\"2022-08-18\","
+                + "\"suggestions\":[\"Frankreich\"]}", json);
+        assertEquals(ccd, gson.fromJson(json, CountryCovidData.class));
+    }
+
+    //flyweight reads records as they were added, also after the store has grown
+    @Test
+    void storeKeepsRecords() {
+        CountryCovidDataStore store = new CountryCovidDataStore(4);
+        List<CountryCovidData> added = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            added.add(record(i));
+            assertEquals(i, store.add(added.get(i)));
+        }
+
+        assertEquals(1000, store.size());
+        CountryCovidDataStore.Record record = store.record();
+        for (int i = 0; i < 1000; i++) {
+            CountryCovidData ccd = added.get(i);
+            record.moveTo(i);
+            assertEquals(ccd.getCountry(), record.getCountry());
+            assertEquals(ccd.getConfirmedAsLong(), record.getConfirmed());
+            assertEquals(ccd.isAvailable(CountryCovidData.DEATHS), record.isAvailable(CountryCovidData.DEATHS));
+            assertEquals(ccd.getDoublingTimeDaysAsDouble(), record.getDoublingTimeDays());
+            assertEquals(ccd.getPeakEpochDay(), record.getPeakEpochDay());
+            assertEquals(ccd, store.get(i));
+        }
+        assertFalse(store.get(1).isAvailable(CountryCovidData.DEATHS));
+        assertThrows(IndexOutOfBoundsException.class, () -> record.moveTo(1000));
+    }
+
+    //every country of snapshot is stored as its lookup gives it
+    @Test
+    void snapshotIntoStore() throws IOException {
+        List<String> countries = List.of("France", "Germany", "Italy", "Spain");
+        try (StubUpstream upstream = new StubUpstream().world(countries)) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+            WorldSnapshot snapshot = infoService.loadSnapshot();
+
+            CountryCovidDataStore store = infoService.getAllCountryCovidData(snapshot);
+
+            assertEquals(4, store.size());
+            for (int i = 0; i < countries.size(); i++) {
+                assertEquals(infoService.getCountryCovidData(countries.get(i), snapshot), store.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+import org.study.service.CountryIndex;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CountryIndexTests {
+
+    private static final List<String> COUNTRIES = List.of("France", "Germany", "Italy", "US", "United Kingdom",
+            "Korea, South", "Cote d'Ivoire", "Georgia", "Iran", "Iraq", "Ireland", "Niger", "Nigeria");
+
+    private static final CountryIndex INDEX = CountryIndex.of(COUNTRIES, Map.of("FR", "France", "DE", "Germany"));
+
+    //case, accents, punctuation and aliases are resolved
+    @Test
+    void resolve() {
+        assertEquals("France", INDEX.resolve("france").getCountry());
+        assertEquals("France", INDEX.resolve("  FRANCE ").getCountry());
+        assertEquals("France", INDEX.resolve("fr").getCountry());
+        assertEquals("US", INDEX.resolve("United States").getCountry());
+        assertEquals("US", INDEX.resolve("usa").getCountry());
+        assertEquals("Korea, South", INDEX.resolve("korea south").getCountry());
+        assertEquals("Korea, South", INDEX.resolve("South Korea").getCountry());
+        assertEquals("Cote d'Ivoire", INDEX.resolve("C\u00f4te d\u2019Ivoire").getCountry());
+        assertEquals(13, INDEX.size());
+    }
+
+    //misspelled and partial names get the closest names as suggestions
+    @Test
+    void suggest() {
+        CountryIndex.Match untied = INDEX.resolve("Untied States");
+        assertFalse(untied.isResolved());
+        assertEquals("US", untied.getSuggestions().get(0));
+
+        assertEquals("Germany", INDEX.resolve("Germny").getSuggestions().get(0));
+        assertEquals("Germany", INDEX.resolve("germ").getSuggestions().get(0));
+        assertEquals("Nigeria", INDEX.resolve("Nigeira").getSuggestions().get(0));
+        assertTrue(INDEX.resolve("Ira").getSuggestions().containsAll(List.of("Iran", "Iraq")));
+        assertTrue(INDEX.resolve("Atlantis").getSuggestions().isEmpty());
+        assertTrue(INDEX.resolve("").getSuggestions().isEmpty());
+    }
+
+    //resolving takes microseconds
+    @Test
+    void resolveSpeed() {
+        String[] inputs = {"france", "Untied States", "germ", "Atlantis", "korea south"};
+        for (int i = 0; i < 20_000; i++) {
+            INDEX.resolve(inputs[i % inputs.length]);
+        }
+        int n = 50_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            INDEX.resolve(inputs[i % inputs.length]);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / n;
+        System.out.printf("country index: %.2f us per resolve%n", micros);
+        assertTrue(micros < 100, micros + " us");
+    }
+
+    //unknown names never reach upstream, the index is built from one all-country /cases request
+    @Test
+    void unknownNamesStayLocal() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Properties props = upstream.appProps();
+            props.setProperty("COUNTRY_INDEX", "true");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+
+            CountryCovidData unknown = infoService.getCountryCovidData("Frnace");
+            assertNull(unknown.getConfirmed());
+            assertEquals(List.of("France"), unknown.getSuggestions().subList(0, 1));
+            assertTrue(unknown.toString().contains("did you mean : France"));
+            assertEquals(1, upstream.hits("/cases"));
+            assertEquals(0, upstream.hits("/vaccines"));
+            assertEquals(0, upstream.hits("/history"));
+
+            CountryCovidData known = infoService.getCountryCovidData("germany");
+            assertEquals("Germany", known.getCountry());
+            assertEquals(33357883L, known.getConfirmed());
+            infoService.getCountryCovidData("Atlantis");
+            assertEquals(2, upstream.hits("/cases"));
+            assertEquals(1, upstream.hits("/vaccines"));
+        }
+    }
+
+    //after a failed all-country /cases request lookups go without index until COUNTRY_INDEX_RETRY_SECONDS passed
+    @Test
+    void failedIndexLoadIsNotRetriedByEveryLookup() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            //per-country /cases works, all-country /cases gives 404
+            upstream.on("/cases", q -> q.containsKey("country") ? StubUpstream.casesBody(q.get("country")) : null);
+            MutableClock clock = new MutableClock();
+            Properties props = upstream.appProps();
+            props.setProperty("COUNTRY_INDEX", "true");
+            props.setProperty("COUNTRY_INDEX_RETRY_SECONDS", "30");
+            Covid19InfoService infoService = new Covid19InfoService(props, clock);
+
+            assertEquals(33357883L, infoService.getCountryCovidData("France").getConfirmed());
+            assertEquals(2, upstream.hits("/cases"));
+            assertEquals(33357883L, infoService.getCountryCovidData("Germany").getConfirmed());
+            assertEquals(3, upstream.hits("/cases"));
+
+            clock.advance(Duration.ofSeconds(31));
+            infoService.getCountryCovidData("Italy");
+            assertEquals(5, upstream.hits("/cases"));
+        }
+    }
+
+    //one-shot lookups don't wait for all countries, the index isn't fetched for them
+    @Test
+    void indexIsNotFetchedWhenFetchingIsOff() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Properties props = upstream.appProps();
+            props.setProperty("COUNTRY_INDEX", "true");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+            infoService.setCountryIndexFetching(false);
+
+            assertEquals(33357883L, infoService.getCountryCovidData("France").getConfirmed());
+            assertEquals(1, upstream.hits("/cases"));
+            assertNull(infoService.getCountryIndexAsync().join());
+        }
+    }
+
+    //index comes from the loaded snapshot without any extra request
+    @Test
+    void indexFromSnapshot() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Properties props = upstream.appProps();
+            props.setProperty("COUNTRY_INDEX", "true");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+            infoService.loadSnapshot();
+
+            assertEquals(33357883L, infoService.getCountryCovidData("ITALY").getConfirmed());
+            assertEquals(3, infoService.getCountryIndexAsync().join().size());
+            assertEquals(1, upstream.hits("/cases"));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.study.export.Column;
+import org.study.export.ColumnarTableReader;
+import org.study.export.ColumnarTableWriter;
+import org.study.export.CovidDataExport;
+import org.study.export.CsvTableWriter;
+import org.study.export.ExportFormat;
+import org.study.export.JsonLinesTableWriter;
+import org.study.export.TableWriter;
+import org.study.service.Covid19InfoService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExportTests {
+
+    private static final List<Column> ODD_COLUMNS = List.of(Column.string("name"), Column.longValue("n"),
+            Column.doubleValue("x"), Column.date("day"));
+
+    private static FileChannel create(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static void writeOddRows(TableWriter out) throws IOException {
+        out.writeString("Korea, South");
+        out.writeLong(-42L);
+        out.writeDouble(1.5);
+        out.writeDate((int) LocalDate.parse("2022-08-18").toEpochDay());
+        out.endRow();
+        out.writeString("say \"hi\"\n\u00e9");
+        out.writeNull();
+        out.writeDouble(Double.NaN);
+        out.writeNull();
+        out.endRow();
+    }
+
+    //all three endpoints are exported as CSV, one row per country and one per country and date
+    @Test
+    void csvExportOfAllCountries(@TempDir Path dir) throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            Map<Path, Long> rows = infoService.exportAsync(dir, ExportFormat.CSV).join();
+
+            assertEquals(List.of(3L, 3L, 6L), List.copyOf(rows.values()));
+            assertEquals(List.of(
+                    "country,abbreviation,continent,location,population,confirmed,recovered,deaths",
+                    "France,,Europe,Western Europe,64979548,33357883,0,149992",
+                    "Germany,,Europe,Western Europe,64979548,33357883,0,149992",
+                    "Italy,,Europe,Western Europe,64979548,33357883,0,149992"),
+                    Files.readAllLines(dir.resolve("cases.csv")));
+            assertEquals(List.of(
+                    "country,population,people_vaccinated,vaccinated_level",
+                    "France,64979548,53019788," + 53019788d / 64979548 * 100),
+                    Files.readAllLines(dir.resolve("vaccines.csv")).subList(0, 2));
+            List<String> history = Files.readAllLines(dir.resolve("history.csv"));
+            assertEquals("country,date,confirmed", history.get(0));
+            assertEquals("France,2022-08-18,33357883", history.get(1));
+            assertEquals("Italy,2022-08-17,33334278", history.get(6));
+            //nothing but the exported files is left behind
+            assertEquals(3, Files.list(dir).count());
+        }
+    }
+
+    //columnar files hold the same rows as text, split into row groups
+    @Test
+    void columnarExportReadsBack(@TempDir Path dir) throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            infoService.exportAsync(dir, ExportFormat.COLUMNAR).join();
+
+            try (ColumnarTableReader reader = ColumnarTableReader.open(dir.resolve("history.c19c"))) {
+                assertEquals(CovidDataExport.HISTORY_COLUMNS.toString(), reader.getColumns().toString());
+                assertEquals(6, reader.getRowCount());
+                ColumnarTableReader.RowGroup group = reader.readRowGroup(0);
+                assertEquals("Germany", group.getString(0, 2));
+                assertEquals(LocalDate.parse("2022-08-18").toEpochDay(), group.getDate(1, 2));
+                assertEquals(33334278L, group.getLong(2, 3));
+            }
+        }
+    }
+
+    //strings are quoted and escaped, missing values are empty in CSV and null in JSON
+    @Test
+    void textFormatsEscapeValues(@TempDir Path dir) throws IOException {
+        try (TableWriter csv = new CsvTableWriter(create(dir.resolve("t.csv")), ODD_COLUMNS);
+             TableWriter jsonLines = new JsonLinesTableWriter(create(dir.resolve("t.jsonl")), ODD_COLUMNS)) {
+            writeOddRows(csv);
+            writeOddRows(jsonLines);
+        }
+
+        assertEquals("name,n,x,day\n"
+                        + "\"Korea, South\",-42,1.5,2022-08-18\n"
+                        + "\"say \"\"hi\"\"\n\u00e9\",,,\n",
+                Files.readString(dir.resolve("t.csv"), StandardCharsets.UTF_8));
+        assertEquals("{\"name\":\"Korea, South\",\"n\":-42,\"x\":1.5,\"day\":\"2022-08-18\"}\n"
+                        + "{\"name\":\"say \\\"hi\\\"\\n\u00e9\",\"n\":null,\"x\":null,\"day\":null}\n",
+                Files.readString(dir.resolve("t.jsonl"), StandardCharsets.UTF_8));
+    }
+
+    //nulls and runs of strings survive row group boundaries and bitmaps of more than one word
+    @Test
+    void columnarRowGroupsAndNulls(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("t.c19c");
+        try (TableWriter out = new ColumnarTableWriter(create(file), ODD_COLUMNS, 65)) {
+            for (int i = 0; i < 70; i++) {
+                out.writeString(i < 40 ? "A" : null);
+                out.writeLong(i);
+                if (i % 7 == 0) out.writeNull();
+                else out.writeDouble(i / 2d);
+                out.writeDate(19000 + i);
+                out.endRow();
+            }
+        }
+
+        try (ColumnarTableReader reader = ColumnarTableReader.open(file)) {
+            assertEquals(70, reader.getRowCount());
+            assertEquals(2, reader.getRowGroupCount());
+            int row = 0;
+            for (int g = 0; g < reader.getRowGroupCount(); g++) {
+                ColumnarTableReader.RowGroup group = reader.readRowGroup(g);
+                for (int r = 0; r < group.getRowCount(); r++, row++) {
+                    assertEquals(row < 40 ? "A" : null, group.getString(0, r));
+                    assertEquals(row >= 40, group.isNull(0, r));
+                    assertEquals(row, group.getLong(1, r));
+                    assertEquals(row % 7 == 0, group.isNull(2, r));
+                    if (row % 7 != 0) assertEquals(row / 2d, group.getDouble(2, r));
+                    assertEquals(19000 + row, group.getDate(3, r));
+                }
+            }
+            assertEquals(70, row);
+        }
+    }
+
+    //cells must follow column types and rows must be complete
+    @Test
+    void cellsAreChecked(@TempDir Path dir) throws IOException {
+        try (TableWriter out = new CsvTableWriter(create(dir.resolve("t.csv")), ODD_COLUMNS)) {
+            assertThrows(IllegalStateException.class, () -> out.writeLong(1L));
+            out.writeString("a");
+            assertThrows(IllegalStateException.class, out::endRow);
+        }
+    }
+
+    //failed request leaves neither the file nor its temporary file
+    @Test
+    void failedExportLeavesNoFile(@TempDir Path dir) throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            upstream.status(path -> path.equals("/history") ? 503 : 200);
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            assertThrows(CompletionException.class,
+                    () -> infoService.exportAsync(dir, ExportFormat.JSON_LINES).join());
+
+            assertFalse(Files.exists(dir.resolve("history.jsonl")));
+            assertTrue(Files.exists(dir.resolve("cases.jsonl")));
+            assertEquals(2, Files.list(dir).count());
+        }
+    }
+
+    //rows are written while the body is read, a body of many countries is exported in one pass
+    @Test
+    void historyIsStreamedIntoRows(@TempDir Path dir) throws IOException {
+        String body = StubUpstream.worldBody(List.of("A", "B", "C", "D"), StubUpstream::historyBody);
+        try (TableWriter out = ExportFormat.JSON_LINES.open(create(dir.resolve("h.jsonl")),
+                CovidDataExport.HISTORY_COLUMNS)) {
+            long rows = CovidDataExport.writeHistory(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                    out);
+            assertEquals(8, rows);
+        }
+        assertEquals("{\"country\":\"D\",\"date\":\"2022-08-17\",\"confirmed\":33334278}",
+                Files.readAllLines(dir.resolve("h.jsonl")).get(7));
+    }
+}
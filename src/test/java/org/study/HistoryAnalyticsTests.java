@@ -0,0 +1,164 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.response.HistoryUrlResponse;
+import org.study.service.Covid19InfoService;
+import org.study.service.HistoryAnalytics;
+import org.study.service.HistoryStore;
+import org.study.service.WorldSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistoryAnalyticsTests {
+
+    private static final LocalDate START = LocalDate.of(2022, 1, 1);
+
+    /**
+     * @return series whose daily new cases are given values, starting from 1000 confirmed
+     */
+    private static TimeSeries withNewCases(long... newCases) {
+        TimeSeries.Builder builder = new TimeSeries.Builder().add(START, 1000L);
+        long confirmed = 1000L;
+        for (int i = 0; i < newCases.length; i++) {
+            confirmed += newCases[i];
+            builder.add(START.plusDays(i + 1), confirmed);
+        }
+        return builder.build();
+    }
+
+    //averages, growth and peak of a series with a known shape
+    @Test
+    void indicatorsOfKnownSeries() {
+        long[] newCases = new long[20];
+        for (int i = 0; i < newCases.length; i++) {
+            newCases[i] = i < 10 ? 100L : 30L;
+        }
+        HistoryStats stats = HistoryAnalytics.analyze(withNewCases(newCases));
+
+        assertEquals(30d, stats.getNewCasesAverage7d(), 1e-9);
+        assertEquals((4 * 100 + 10 * 30) / 14d, stats.getNewCasesAverage14d(), 1e-9);
+        assertEquals(30 * 100d / (1000 + 10 * 100 + 9 * 30), stats.getDailyGrowthPercent(), 1e-9);
+        assertEquals(100d, stats.getPeakNewCasesAverage7d(), 1e-9);
+        assertEquals(START.plusDays(7).toEpochDay(), stats.getPeakEpochDay());
+    }
+
+    //confirmed doubling every 7 days gives doubling time of 7 days
+    @Test
+    void doublingTime() {
+        TimeSeries.Builder builder = new TimeSeries.Builder();
+        for (int i = 0; i < 15; i++) {
+            builder.add(START.plusDays(i), Math.round(1000 * Math.pow(2, i / 7d)));
+        }
+        assertEquals(7d, HistoryAnalytics.analyze(builder.build()).getDoublingTimeDays(), 0.01);
+        assertTrue(Double.isNaN(HistoryAnalytics.analyze(withNewCases(0, 0, 0, 0, 0, 0, 0, 0))
+                .getDoublingTimeDays()));
+    }
+
+    //windows are found by date, so weekly reported series give daily averages of the actual span
+    @Test
+    void seriesWithMissingDays() {
+        TimeSeries.Builder weekly = new TimeSeries.Builder();
+        for (int i = 0; i < 5; i++) {
+            weekly.add(START.plusDays(7L * i), 1000L + 700L * i);
+        }
+        HistoryStats stats = HistoryAnalytics.analyze(weekly.build());
+
+        assertEquals(100d, stats.getNewCasesAverage7d(), 1e-9);
+        assertEquals(100d, stats.getNewCasesAverage14d(), 1e-9);
+        assertEquals(700 * 100d / 3100 / 7, stats.getDailyGrowthPercent(), 1e-9);
+        assertEquals(7 * Math.log(2) / Math.log(3800d / 3100), stats.getDoublingTimeDays(), 1e-9);
+        assertEquals(100d, stats.getPeakNewCasesAverage7d(), 1e-9);
+        assertEquals(START.plusDays(7).toEpochDay(), stats.getPeakEpochDay());
+
+        //a day missing from the latest week leaves the 7-day average as it is
+        TimeSeries.Builder daily = new TimeSeries.Builder();
+        for (int i = 0; i <= 20; i++) {
+            if (i != 17) daily.add(START.plusDays(i), 1000L + 10L * i);
+        }
+        assertEquals(10d, HistoryAnalytics.analyze(daily.build()).getNewCasesAverage7d(), 1e-9);
+    }
+
+    //short history has no weekly indicators
+    @Test
+    void shortHistory() {
+        HistoryStats stats = HistoryAnalytics.analyze(withNewCases(5, 5));
+        assertTrue(Double.isNaN(stats.getNewCasesAverage7d()));
+        assertEquals(HistoryStats.NO_DAY, stats.getPeakEpochDay());
+        assertTrue(Double.isNaN(HistoryAnalytics.analyze(TimeSeries.EMPTY).getDailyGrowthPercent()));
+    }
+
+    //parallel analysis of all countries matches sequential one
+    @Test
+    void analyzeAllMatchesAnalyze() {
+        Map<String, TimeSeries> series = new HashMap<>();
+        for (int c = 0; c < 50; c++) {
+            long[] newCases = new long[30];
+            for (int i = 0; i < newCases.length; i++) {
+                newCases[i] = (c * 7L + i * 13L) % 50;
+            }
+            series.put("Country " + c, withNewCases(newCases));
+        }
+        Map<String, HistoryStats> stats = HistoryAnalytics.analyzeAll(series);
+        assertEquals(series.size(), stats.size());
+        for (Map.Entry<String, TimeSeries> e : series.entrySet()) {
+            assertEquals(HistoryAnalytics.analyze(e.getValue()).toString(), stats.get(e.getKey()).toString());
+        }
+    }
+
+    //indicators are part of CountryCovidData
+    @Test
+    void assemblerFillsIndicators() {
+        Covid19InfoService infoService = new Covid19InfoService(new Properties());
+        HistoryUrlResponse history = new HistoryUrlResponse();
+        history.setConfirmedByDate(withNewCases(10, 10, 10, 10, 10, 10, 10, 10));
+
+        CountryCovidData ccd = infoService.getCountryCovidData("France", null, null, history);
+
+        assertEquals(10d, ccd.getNewCasesAverage7d());
+        assertNull(ccd.getNewCasesAverage14d());
+        assertTrue(ccd.toString().contains("new cases, 7-day average : 10.0"));
+    }
+
+    //indicators are computed once per history and kept until it changes
+    @Test
+    void indicatorsAreKeptByHistory() throws IOException {
+        HistoryStore store = HistoryStore.inMemory(HistoryStore.DEFAULT_OVERLAP_DAYS);
+        store.merge("France", body("{\"All\": {\"dates\": {\"2022-01-02\": 1010, \"2022-01-01\": 1000}}}"));
+        HistoryUrlResponse merged = store.getResponse("France");
+        assertNotNull(merged.getStats());
+        assertSame(merged, store.getResponse("France"));
+        assertSame(merged.getStats(), HistoryAnalytics.analyze(merged));
+
+        store.merge("France", body("{\"All\": {\"dates\": {\"2022-01-03\": 1030, \"2022-01-02\": 1010}}}"));
+        HistoryUrlResponse changed = store.getResponse("France");
+        assertNotSame(merged, changed);
+        assertEquals(20 * 100d / 1010, changed.getStats().getDailyGrowthPercent(), 1e-9);
+
+        HistoryUrlResponse history = new HistoryUrlResponse();
+        history.setConfirmedByDate(withNewCases(10, 10));
+        WorldSnapshot snapshot = new WorldSnapshot(Map.of(), Map.of(), Map.of("Italy", history), 0L);
+        assertNotNull(history.getStats());
+        assertSame(history.getStats(), snapshot.getHistoryStats("Italy"));
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
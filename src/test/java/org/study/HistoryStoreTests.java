@@ -0,0 +1,128 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.study.entity.CountryCovidData;
+import org.study.entity.TimeSeries;
+import org.study.service.Covid19InfoService;
+import org.study.service.HistoryStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistoryStoreTests {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 22);
+
+    /**
+     * @param days      number of days since FIRST_DAY
+     * @param revisions added to the value of the latest day
+     * @return /history body with dates newest first, as upstream gives them
+     */
+    private static String historyBody(int days, long revisions) {
+        StringBuilder sb = new StringBuilder("{\"All\": {\"country\": \"France\", \"population\": 64979548, \"dates\": {");
+        for (int i = days - 1; i >= 0; i--) {
+            long value = 1000L * i + (i == days - 1 ? revisions : 0);
+            sb.append('"').append(FIRST_DAY.plusDays(i)).append("\": ").append(value);
+            if (i > 0) sb.append(", ");
+        }
+        return sb.append("} } }").toString();
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //a daily refresh reads and writes only the changed days, whatever the length of the series
+    @Test
+    void dailyRefreshTouchesChangedDaysOnly() throws IOException {
+        for (int days : new int[]{900, 1800}) {
+            HistoryStore store = HistoryStore.inMemory(HistoryStore.DEFAULT_OVERLAP_DAYS);
+            store.merge("France", body(historyBody(days, 0)));
+            assertEquals(days, store.getWrittenDays());
+
+            //yesterday is revised and today is new
+            long read = store.getReadDays();
+            long written = store.getWrittenDays();
+            store.merge("France", body(historyBody(days + 1, 0).replace(
+                    "\"" + FIRST_DAY.plusDays(days - 1) + "\": " + 1000L * (days - 1),
+                    "\"" + FIRST_DAY.plusDays(days - 1) + "\": " + (1000L * (days - 1) + 7))));
+
+            assertEquals(2, store.getWrittenDays() - written);
+            assertTrue(store.getReadDays() - read <= 2 + HistoryStore.DEFAULT_OVERLAP_DAYS,
+                    "read " + (store.getReadDays() - read) + " days");
+            TimeSeries series = store.get("France");
+            assertEquals(days + 1, series.size());
+            assertEquals(FIRST_DAY.plusDays(days), series.getLatestDate());
+            assertEquals(1000L * (days - 1) + 7, series.getValue(FIRST_DAY.plusDays(days - 1)));
+            assertEquals(0L, series.getValue(FIRST_DAY));
+        }
+    }
+
+    //nothing is written when upstream has not changed, unknown countries are not stored
+    @Test
+    void unchangedAndUnknown() throws IOException {
+        HistoryStore store = HistoryStore.inMemory(HistoryStore.DEFAULT_OVERLAP_DAYS);
+        store.merge("France", body(historyBody(100, 0)));
+        long written = store.getWrittenDays();
+
+        assertEquals(100, store.merge("France", body(historyBody(100, 0))).getConfirmedByDate().size());
+        assertEquals(written, store.getWrittenDays());
+        assertNull(store.merge("Atlantis", body("{}")));
+        assertNull(store.get("Atlantis"));
+        assertEquals(1, store.size());
+    }
+
+    //log file is replayed on open and only updates are appended to it
+    @Test
+    void logIsReplayed(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("history.log");
+        try (HistoryStore store = HistoryStore.open(log, HistoryStore.DEFAULT_OVERLAP_DAYS)) {
+            store.merge("France", body(historyBody(300, 0)));
+            store.merge("France", body(historyBody(301, 5)));
+        }
+        try (HistoryStore store = HistoryStore.open(log, HistoryStore.DEFAULT_OVERLAP_DAYS)) {
+            TimeSeries series = store.get("France");
+            assertEquals(301, series.size());
+            assertEquals(300_005L, series.getLatestValue());
+
+            //a new day, and the revision of the previous one is taken back
+            store.merge("France", body(historyBody(302, 0)));
+            assertEquals(2, store.getWrittenDays());
+            assertEquals(300_000L, store.get("France").getValue(FIRST_DAY.plusDays(300)));
+        }
+    }
+
+    //lookups go through the store and keep history when /history fails
+    @Test
+    void lookupReadsFromStore() throws Exception {
+        AtomicInteger days = new AtomicInteger(940);
+        try (StubUpstream upstream = new StubUpstream()) {
+            upstream.on("/history", q -> days.get() < 0 ? null : historyBody(days.get(), 0));
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            infoService.getCountryCovidData("France");
+            days.set(941);
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+            HistoryStore store = infoService.getHistoryStore();
+            assertEquals(941, store.getWrittenDays());
+            assertTrue(store.getReadDays() <= 940 + 1 + HistoryStore.DEFAULT_OVERLAP_DAYS);
+            assertNotNull(ccd.getNewCasesAverage7d());
+
+            days.set(-1);
+            CountryCovidData stale = infoService.getCountryCovidData("France");
+            assertEquals(ccd.getLastHistoryDataDate(), stale.getLastHistoryDataDate());
+            assertEquals(ccd.getNewCasesAverage7d(), stale.getNewCasesAverage7d());
+        }
+    }
+}
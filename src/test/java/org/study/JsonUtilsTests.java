@@ -0,0 +1,58 @@
+package org.study;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.utils.JsonUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonUtilsTests {
+
+    private static final Gson GSON = new Gson();
+
+    //members before "All" are skipped, "All" is bound directly
+    @Test
+    void readJsonElementSkipsOtherMembers() throws IOException {
+        String content = "{\"Paris\": {\"confirmed\": 1, \"nested\": [1, {\"a\": [2]}]}, \"All\": {\"confirmed\": 33357883,"
+                + " \"recovered\": 0, \"deaths\": 149992, \"country\": \"France\"}, \"Lyon\": {\"confirmed\": 2}}";
+        CasesUrlResponse cases = JsonUtils.readJsonElement(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "All", CasesUrlResponse.class, GSON);
+        assertEquals(33357883L, cases.getConfirmed());
+        assertEquals(149992L, cases.getDeaths());
+    }
+
+    //absent, null "All", empty and non-object content give null
+    @Test
+    void readJsonElementWithoutElement() throws IOException {
+        for (String content : List.of("{\"Alldfdsdf\": {\"confirmed\": 1}}", "{\"All\": null}", "", "  ", "[]")) {
+            assertNull(JsonUtils.readJsonElement(new StringReader(content), "All", CasesUrlResponse.class, GSON),
+                    content);
+        }
+    }
+
+    //every country of all-country content is bound, countries without "All" are left out
+    @Test
+    void readJsonElementsByMember() throws IOException {
+        String content = "{\"France\": {\"All\": {\"country\": \"France\", \"dates\": {\"2022-08-18\": 3, \"2022-08-17\": 2}},"
+                + " \"Corsica\": {\"dates\": {}}}, \"Nowhere\": {\"Province\": {}}, \"Broken\": 1,"
+                + " \"Italy\": {\"All\": {\"dates\": {\"2022-08-18\": 7}}}}";
+        Map<String, HistoryUrlResponse> history = JsonUtils.readJsonElementsByMember(
+                new StringReader(content), "All", HistoryUrlResponse.class, GSON);
+        assertEquals(List.of("France", "Italy"), List.copyOf(history.keySet()));
+        assertEquals(3L, history.get("France").getConfirmedByDate().getLatestValue());
+        assertEquals(7L, history.get("Italy").getConfirmedByDate().getLatestValue());
+        assertTrue(JsonUtils.readJsonElementsByMember(new StringReader(""), "All", HistoryUrlResponse.class, GSON)
+                .isEmpty());
+    }
+}
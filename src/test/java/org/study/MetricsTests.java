@@ -0,0 +1,129 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.metrics.CachedPercentile;
+import org.study.metrics.EndpointMetrics;
+import org.study.metrics.LatencyHistogram;
+import org.study.metrics.ServiceMetrics;
+import org.study.service.Covid19InfoService;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTests {
+
+    //percentiles are within bucket precision of exact ones
+    @Test
+    void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.rangeClosed(1, 10_000).parallel().forEach(histogram::record);
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(5_000, histogram.getValueAtPercentile(50), 5_000 * 0.04);
+        assertEquals(9_900, histogram.getValueAtPercentile(99), 9_900 * 0.04);
+        assertEquals(10_000, histogram.getValueAtPercentile(100));
+        assertEquals(5_000.5, histogram.getMean(), 1e-9);
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    //cached percentile stays as it is until enough new samples arrive or it gets too old
+    @Test
+    void cachedPercentile() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.rangeClosed(1, 100).forEach(histogram::record);
+        CachedPercentile p99 = new CachedPercentile(histogram, 99, 50, Duration.ofHours(1));
+        assertEquals(99, p99.get());
+
+        IntStream.range(0, 49).forEach(i -> histogram.record(10_000));
+        assertEquals(99, p99.get());
+        histogram.record(10_000);
+        assertEquals(10_000, p99.get(), 10_000 * 0.04);
+
+        CachedPercentile expiring = new CachedPercentile(histogram, 50, 1_000, Duration.ofMillis(1));
+        long median = expiring.get();
+        IntStream.range(0, 500).forEach(i -> histogram.record(10_000));
+        Thread.sleep(5);
+        assertTrue(expiring.get() > median);
+    }
+
+    //every endpoint gets its own requests, bytes, statuses and latencies
+    @Test
+    void lookupIsRecordedPerEndpoint() throws IOException {
+        try (StubUpstream upstream = new StubUpstream().delay(path -> path.equals("/history") ? 50L : 0L)) {
+            upstream.on("/vaccines", q -> null);
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            infoService.getCountryCovidData("France");
+            infoService.getCountryCovidData("Germany");
+
+            ServiceMetrics metrics = infoService.getMetrics();
+            EndpointMetrics cases = metrics.get("CASES_URL");
+            assertEquals(2, cases.getRequests());
+            assertEquals(0, cases.getErrors());
+            assertEquals(2L, cases.getStatusCodes().get(200));
+            assertTrue(cases.getResponseBytes() > 100);
+            assertEquals(2L, metrics.get("VACCINES_URL").getStatusCodes().get(404));
+            assertEquals(2, metrics.get("VACCINES_URL").getErrors());
+            assertTrue(metrics.get("HISTORY_URL").getHeadersLatencyP50Micros() >= 50_000);
+            assertTrue(metrics.dump().contains("HISTORY_URL"));
+        }
+    }
+
+    //headers latency of all-country and single-country requests is also kept apart
+    @Test
+    void headersLatencyByKind() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            infoService.getCountryCovidData("Germany");
+            infoService.loadSnapshot();
+
+            EndpointMetrics cases = infoService.getMetrics().get("CASES_URL");
+            assertEquals(1, cases.getHeadersLatency(true).getCount());
+            assertEquals(1, cases.getHeadersLatency(false).getCount());
+            assertEquals(2, cases.getHeadersLatency().getCount());
+        }
+    }
+
+    //timeouts and failed connections are counted separately
+    @Test
+    void timeoutsAndErrors() throws IOException {
+        try (StubUpstream upstream = new StubUpstream().delay(path -> path.equals("/history") ? 3000L : 0L)) {
+            Properties props = upstream.appProps();
+            props.setProperty("REQUEST_TIMEOUT_SECONDS", "1");
+            props.setProperty("MAX_RETRIES", "0");
+            props.setProperty("CASES_URL", "http://127.0.0.1:1/cases");
+            Covid19InfoService infoService = new Covid19InfoService(props);
+
+            infoService.getCountryCovidData("France");
+
+            assertEquals(1, infoService.getMetrics().get("HISTORY_URL").getTimeouts());
+            assertEquals(1, infoService.getMetrics().get("CASES_URL").getErrors());
+            assertEquals("", infoService.doRequest(upstream.url("/nothing"), new HashMap<>()));
+            assertEquals(1, infoService.getMetrics().get(ServiceMetrics.OTHER).getErrors());
+        }
+    }
+
+    //metrics are readable through JMX
+    @Test
+    void jmxBeans() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+            infoService.getMetrics().registerMBeans();
+            infoService.getCountryCovidData("France");
+
+            Object requests = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                    new ObjectName("org.study:type=Covid19InfoService,endpoint=CASES_URL"), "Requests");
+            assertEquals(1L, requests);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.service.Covid19InfoService;
+import org.study.service.RateLimiter;
+import org.study.service.RefreshAheadScheduler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RefreshAheadTests {
+
+    private static Properties refreshAheadProps(StubUpstream upstream, int topK) {
+        Properties props = upstream.appProps();
+        props.setProperty("CASES_TTL_SECONDS", "60");
+        props.setProperty("VACCINES_TTL_SECONDS", "60");
+        props.setProperty("HISTORY_TTL_SECONDS", "60");
+        //expired entries are loaded in the lookup, not revalidated in background
+        props.setProperty("CACHE_STALE_SECONDS", "0");
+        props.setProperty("REFRESH_AHEAD_TOP_K", String.valueOf(topK));
+        props.setProperty("REFRESH_AHEAD_SECONDS", "10");
+        props.setProperty("REFRESH_AHEAD_JITTER_MILLIS", "0");
+        return props;
+    }
+
+    //most requested country is reloaded before it expires, so its next lookup is a hit
+    @Test
+    void hotCountryIsRefreshedBeforeExpiry() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            MutableClock clock = new MutableClock();
+            Covid19InfoService infoService = new Covid19InfoService(refreshAheadProps(upstream, 1), clock);
+            RefreshAheadScheduler refreshAhead = infoService.getRefreshAhead();
+            for (int i = 0; i < 5; i++) {
+                infoService.getCountryCovidData("France");
+            }
+            infoService.getCountryCovidData("Germany");
+            assertEquals(List.of("France"), refreshAhead.getTopCountries());
+
+            //not expiring soon yet
+            clock.advance(Duration.ofSeconds(30));
+            refreshAhead.tick().join();
+            assertEquals(0, refreshAhead.getRefreshes());
+
+            clock.advance(Duration.ofSeconds(25));
+            refreshAhead.tick().join();
+            assertEquals(1, refreshAhead.getRefreshes());
+            assertEquals(3, upstream.hits("/cases"));
+            assertEquals(3, upstream.hits("/history"));
+            assertTrue(infoService.getTimeToLive("France").toSeconds() > 50);
+
+            clock.advance(Duration.ofSeconds(10));
+            infoService.getCountryCovidData("France");
+            assertEquals(3, upstream.hits("/cases"));
+            infoService.getCountryCovidData("Germany");
+            assertEquals(4, upstream.hits("/cases"));
+        }
+    }
+
+    //refreshes use only permits left by lookups, the rest is put off to later ticks
+    @Test
+    void refreshesRespectUpstreamRate() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            MutableClock clock = new MutableClock();
+            Properties props = refreshAheadProps(upstream, 3);
+            props.setProperty("UPSTREAM_MAX_REQUESTS_PER_SECOND", "3");
+            Covid19InfoService infoService = new Covid19InfoService(props, clock);
+            RefreshAheadScheduler refreshAhead = infoService.getRefreshAhead();
+            //two lookups each, so counts outlive halving on the first tick
+            for (int i = 0; i < 2; i++) {
+                for (String country : List.of("France", "Germany", "Italy")) {
+                    infoService.getCountryCovidData(country);
+                }
+            }
+
+            clock.advance(Duration.ofSeconds(55));
+            refreshAhead.tick().join();
+            assertEquals(1, refreshAhead.getRefreshes());
+            assertEquals(2, refreshAhead.getRateLimited());
+            assertEquals(4, upstream.hits("/cases"));
+
+            clock.advance(Duration.ofSeconds(1));
+            refreshAhead.tick().join();
+            assertEquals(2, refreshAhead.getRefreshes());
+            assertEquals(5, upstream.hits("/cases"));
+        }
+    }
+
+    //a refresh which throws instead of returning a future does not keep its country from later refreshes
+    @Test
+    void refreshWhichThrowsIsRetried() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            MutableClock clock = new MutableClock();
+            Covid19InfoService infoService = new Covid19InfoService(refreshAheadProps(upstream, 0), clock) {
+                @Override
+                public CompletableFuture<Boolean> refreshCountryAsync(String country) {
+                    throw new IllegalStateException("refresh of " + country);
+                }
+            };
+            RateLimiter rateLimiter = new RateLimiter(3, clock);
+            try (RefreshAheadScheduler refreshAhead = new RefreshAheadScheduler(infoService, 1,
+                    Duration.ofSeconds(10), Duration.ZERO, rateLimiter, 1)) {
+                infoService.getCountryCovidData("France");
+                refreshAhead.recordLookup("France");
+                refreshAhead.recordLookup("France");
+                clock.advance(Duration.ofSeconds(55));
+
+                assertThrows(CompletionException.class, () -> refreshAhead.tick().join());
+                assertEquals(3d, rateLimiter.getAvailablePermits());
+                assertThrows(CompletionException.class, () -> refreshAhead.tick().join());
+                assertEquals(0, refreshAhead.getRefreshes());
+            }
+        }
+    }
+
+    //tokens refill with clock up to one second of permits, debt delays following acquires
+    @Test
+    void rateLimiterRefillsWithClock() {
+        MutableClock clock = new MutableClock();
+        RateLimiter rateLimiter = new RateLimiter(10, clock);
+
+        assertTrue(rateLimiter.tryAcquire(10));
+        assertFalse(rateLimiter.tryAcquire(1));
+        rateLimiter.consume(5);
+        clock.advance(Duration.ofMillis(1000));
+        assertFalse(rateLimiter.tryAcquire(6));
+        assertTrue(rateLimiter.tryAcquire(5));
+        clock.advance(Duration.ofSeconds(60));
+        assertEquals(10d, rateLimiter.getAvailablePermits());
+    }
+}
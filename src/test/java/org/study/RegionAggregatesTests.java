@@ -0,0 +1,119 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.bench.RegionAggregatesBenchmark;
+import org.study.entity.CountryCovidData;
+import org.study.response.CasesUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+import org.study.service.Covid19InfoService;
+import org.study.service.RegionAggregates;
+import org.study.service.WorldSnapshot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionAggregatesTests {
+
+    /**
+     * "Global" entry of all-country /cases, it has no continent
+     */
+    private static final String GLOBAL_CASES = "{\"All\": {\"confirmed\": 100073649, \"recovered\": 0,"
+            + " \"deaths\": 449976, \"population\": 7800000000} }";
+
+    private static CasesUrlResponse cases(long confirmed, long deaths, String continent, String location) {
+        CasesUrlResponse cases = new CasesUrlResponse();
+        cases.setConfirmed(confirmed);
+        cases.setDeaths(deaths);
+        cases.setContinent(continent);
+        cases.setLocation(location);
+        return cases;
+    }
+
+    private static VaccinesUrlResponse vaccines(long peopleVaccinated, long population) {
+        VaccinesUrlResponse vaccines = new VaccinesUrlResponse();
+        vaccines.setPeopleVaccinated(peopleVaccinated);
+        vaccines.setPopulation(population);
+        return vaccines;
+    }
+
+    //sums per world, continent and location, vaccination is weighted by population
+    @Test
+    void totals() {
+        Map<String, CasesUrlResponse> cases = new HashMap<>();
+        Map<String, VaccinesUrlResponse> vaccines = new HashMap<>();
+        cases.put("France", cases(100, 10, "Europe", "Western Europe"));
+        vaccines.put("France", vaccines(50, 100));
+        cases.put("Germany", cases(300, 20, "Europe", "Western Europe"));
+        vaccines.put("Germany", vaccines(30, 200));
+        cases.put("Poland", cases(50, 5, "Europe", "Eastern Europe"));
+        cases.put("Japan", cases(1000, 1, "Asia", "Eastern Asia"));
+        //upstream's own aggregate of all countries
+        cases.put("Global", cases(1450, 36, null, null));
+        vaccines.put("Global", vaccines(80, 300));
+        RegionAggregates aggregates = RegionAggregates.compute(new WorldSnapshot(cases, vaccines, new HashMap<>(), 0L));
+
+        CountryCovidData europe = aggregates.get("europe");
+        assertEquals("Europe", europe.getCountry());
+        assertEquals(450L, europe.getConfirmed());
+        assertEquals(35L, europe.getDeaths());
+        //80 of 300, not the mean of 50% and 15%
+        assertEquals(80d / 300 * 100, europe.getVaccinatedLevel(), 1e-9);
+        assertEquals(3, aggregates.getCountryCount("Europe"));
+
+        assertEquals(400L, aggregates.get("Western Europe").getConfirmed());
+        assertEquals(1450L, aggregates.get(RegionAggregates.WORLD).getConfirmed());
+        assertEquals(80d / 300 * 100, aggregates.get(RegionAggregates.WORLD).getVaccinatedLevel(), 1e-9);
+        assertEquals(4, aggregates.getCountryCount(RegionAggregates.WORLD));
+        assertNull(aggregates.get("Asia").getVaccinatedLevel());
+        assertNull(aggregates.get("Atlantis"));
+        assertTrue(aggregates.getRegions().contains("Eastern Asia"));
+    }
+
+    //parallel pass gives the same totals as a single thread
+    @Test
+    void parallelMatchesSequential() {
+        WorldSnapshot snapshot = RegionAggregatesBenchmark.syntheticSnapshot(5000, 7L);
+        RegionAggregates parallel = RegionAggregates.compute(snapshot);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        RegionAggregates sequential = RegionAggregates.compute(snapshot, pool);
+        pool.shutdown();
+        for (String region : parallel.getRegions()) {
+            assertEquals(sequential.get(region), parallel.get(region));
+        }
+        assertEquals(5000, parallel.getCountryCount("world"));
+    }
+
+    //region queries use all-country responses, not a request per country
+    @Test
+    void regionLookup() throws Exception {
+        List<String> world = List.of("France", "Germany", "Italy", "Global");
+        try (StubUpstream upstream = new StubUpstream().world(world)) {
+            upstream.on("/cases", q -> q.get("country") != null ? StubUpstream.casesBody(q.get("country"))
+                    : StubUpstream.worldBody(world,
+                    c -> c.equals("Global") ? GLOBAL_CASES : StubUpstream.casesBody(c)));
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            CountryCovidData totals = infoService.getCountryCovidData("World");
+            assertEquals(3 * 33357883L, totals.getConfirmed());
+            assertEquals(53019788d / 64979548 * 100, totals.getVaccinatedLevel(), 1e-9);
+            CountryCovidData europe = infoService.getCountryCovidData("Europe");
+            assertEquals(3 * 33357883L, europe.getConfirmed());
+            assertEquals(53019788d / 64979548 * 100, europe.getVaccinatedLevel(), 1e-9);
+            assertEquals(2, upstream.hits("/cases"));
+            assertEquals(2, upstream.hits("/vaccines"));
+            //totals need no history
+            assertEquals(0, upstream.hits("/history"));
+
+            infoService.loadSnapshot();
+            assertEquals(3 * 149992L, infoService.getCountryCovidData("western europe").getDeaths());
+            assertEquals(33357883L, infoService.getCountryCovidData("France").getConfirmed());
+            assertNull(infoService.getCountryCovidData("Oceania").getConfirmed());
+        }
+    }
+}
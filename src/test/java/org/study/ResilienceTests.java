@@ -0,0 +1,140 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.metrics.EndpointMetrics;
+import org.study.service.Covid19InfoService;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResilienceTests {
+
+    private static Covid19InfoService infoService(StubUpstream upstream, String... settings) {
+        Properties props = upstream.appProps();
+        for (int i = 0; i < settings.length; i += 2) {
+            props.setProperty(settings[i], settings[i + 1]);
+        }
+        return new Covid19InfoService(props);
+    }
+
+    private static long lookupMillis(Covid19InfoService infoService, String country) {
+        long start = System.nanoTime();
+        assertNotNull(infoService.getCountryCovidData(country));
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    //slow endpoint is given up at the lookup deadline, the others are still used
+    @Test
+    void lookupIsAnsweredByDeadline() throws Exception {
+        try (StubUpstream upstream = new StubUpstream().delay(path -> path.equals("/history") ? 3000L : 0L)) {
+            Covid19InfoService infoService = infoService(upstream, "LOOKUP_DEADLINE_MILLIS", "300");
+
+            long start = System.nanoTime();
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(millis < 1500, "lookup took " + millis + " ms");
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertNull(ccd.getLastHistoryDataDate());
+        }
+    }
+
+    //503 is retried until it succeeds
+    @Test
+    void transientErrorsAreRetried() throws Exception {
+        AtomicInteger casesCalls = new AtomicInteger();
+        try (StubUpstream upstream = new StubUpstream()
+                .status(path -> path.equals("/cases") && casesCalls.incrementAndGet() <= 2 ? 503 : 200)) {
+            Covid19InfoService infoService = infoService(upstream);
+
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertEquals(3, upstream.hits("/cases"));
+            assertEquals(2, infoService.getMetrics().get("CASES_URL").getRetries());
+        }
+    }
+
+    //404 is not retried
+    @Test
+    void permanentErrorsAreNotRetried() throws Exception {
+        try (StubUpstream upstream = new StubUpstream().status(path -> path.equals("/cases") ? 404 : 200)) {
+            Covid19InfoService infoService = infoService(upstream);
+
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+
+            assertNull(ccd.getConfirmed());
+            assertEquals(1, upstream.hits("/cases"));
+        }
+    }
+
+    //retries stop when the budget is spent
+    @Test
+    void retriesStopAtDeadline() throws Exception {
+        try (StubUpstream upstream = new StubUpstream().status(path -> path.equals("/cases") ? 503 : 200)) {
+            Covid19InfoService infoService = infoService(upstream,
+                    "LOOKUP_DEADLINE_MILLIS", "400", "MAX_RETRIES", "1000", "RETRY_BACKOFF_MILLIS", "20");
+
+            long millis = lookupMillis(infoService, "France");
+
+            assertTrue(millis < 1000, "lookup took " + millis + " ms");
+            int hits = upstream.hits("/cases");
+            assertTrue(hits > 1 && hits < 30, hits + " hits");
+        }
+    }
+
+    /**
+     * every 25th request of each endpoint stalls for a second
+     */
+    private static StubUpstream stallingUpstream() throws Exception {
+        Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        return new StubUpstream().delay(path ->
+                calls.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet() % 25 == 12 ? 1000L : 0L);
+    }
+
+    /**
+     * @return sorted latencies of lookups after warming up the latency histograms
+     */
+    private static long[] measure(Covid19InfoService infoService) {
+        for (int i = 0; i < 25; i++) {
+            lookupMillis(infoService, "France");
+        }
+        long[] millis = new long[50];
+        for (int i = 0; i < millis.length; i++) {
+            millis[i] = lookupMillis(infoService, "France");
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    //stalled requests are hedged after p95 latency, so they don't show in the tail
+    @Test
+    void hedgingCutsTailLatency() throws Exception {
+        long[] unhedged;
+        try (StubUpstream upstream = stallingUpstream()) {
+            unhedged = measure(infoService(upstream, "HEDGE_PERCENTILE", "0"));
+        }
+        long[] hedged;
+        Covid19InfoService infoService;
+        try (StubUpstream upstream = stallingUpstream()) {
+            infoService = infoService(upstream, "HEDGE_MIN_SAMPLES", "20");
+            hedged = measure(infoService);
+        }
+        System.out.println("lookup p50/max without hedging: " + unhedged[25] + "/" + unhedged[49]
+                + " ms, with hedging: " + hedged[25] + "/" + hedged[49] + " ms");
+
+        assertTrue(unhedged[49] >= 1000);
+        assertTrue(hedged[49] < 500, "max " + hedged[49] + " ms");
+        EndpointMetrics cases = infoService.getMetrics().get("CASES_URL");
+        assertTrue(cases.getHedges() > 0);
+    }
+}
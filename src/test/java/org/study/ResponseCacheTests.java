@@ -0,0 +1,102 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+import org.study.service.ResponseCache;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseCacheTests {
+
+    private static Properties cachedProps(StubUpstream upstream) {
+        Properties props = upstream.appProps();
+        props.setProperty("CASES_TTL_SECONDS", "60");
+        props.setProperty("VACCINES_TTL_SECONDS", "60");
+        props.setProperty("HISTORY_TTL_SECONDS", "120");
+        props.setProperty("CACHE_STALE_SECONDS", "30");
+        return props;
+    }
+
+    //repeated lookup within TTL is served from cache
+    @Test
+    void repeatedLookupHitsCache() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Covid19InfoService infoService = new Covid19InfoService(cachedProps(upstream), new MutableClock());
+
+            infoService.getCountryCovidData("France");
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertEquals(1, upstream.hits("/cases"));
+            assertEquals(1, upstream.hits("/history"));
+            ResponseCache<Object> cache = infoService.getResponseCache();
+            assertEquals(3, cache.getMisses());
+            assertEquals(3, cache.getHits());
+        }
+    }
+
+    //entries expired beyond stale window are loaded again, endpoints expire independently
+    @Test
+    void expiredEntriesAreReloaded() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            MutableClock clock = new MutableClock();
+            Covid19InfoService infoService = new Covid19InfoService(cachedProps(upstream), clock);
+
+            infoService.getCountryCovidData("France");
+            clock.advance(Duration.ofSeconds(100));
+            infoService.getCountryCovidData("France");
+
+            assertEquals(2, upstream.hits("/cases"));
+            assertEquals(2, upstream.hits("/vaccines"));
+            assertEquals(1, upstream.hits("/history"));
+        }
+    }
+
+    //expired entry within stale window is returned at once and reloaded in background
+    @Test
+    void staleEntryIsServedWhileRevalidating() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            MutableClock clock = new MutableClock();
+            Covid19InfoService infoService = new Covid19InfoService(cachedProps(upstream), clock);
+            infoService.getCountryCovidData("France");
+
+            upstream.delay(path -> 1000L);
+            clock.advance(Duration.ofSeconds(70));
+            long start = System.nanoTime();
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertTrue(elapsedMillis < 500, "stale lookup took " + elapsedMillis + " ms");
+            assertEquals(2, infoService.getResponseCache().getStaleHits());
+
+            Thread.sleep(1500);
+            assertEquals(2, upstream.hits("/cases"));
+            assertTrue(infoService.getResponseCache().getTimeToLive(
+                    upstream.url("/cases") + "?country=France").toSeconds() > 50);
+        }
+    }
+
+    //least recently used entries are evicted over the size limit
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Properties props = cachedProps(upstream);
+            props.setProperty("CACHE_MAX_SIZE", "4");
+            Covid19InfoService infoService = new Covid19InfoService(props, new MutableClock());
+
+            infoService.getCountryCovidData("France");
+            infoService.getCountryCovidData("Germany");
+
+            ResponseCache<Object> cache = infoService.getResponseCache();
+            assertEquals(4, cache.size());
+            assertEquals(2, cache.getEvictions());
+        }
+    }
+}
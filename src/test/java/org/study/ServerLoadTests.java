@@ -0,0 +1,152 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.server.Covid19InfoServer;
+import org.study.service.CountryIndex;
+import org.study.service.Covid19InfoService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerLoadTests {
+
+    private static final List<String> HOT_COUNTRIES = List.of("France", "Germany", "Italy", "Spain", "Poland");
+
+    private static HttpResponse<String> get(HttpClient client, Covid19InfoServer server, String pathAndQuery)
+            throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + pathAndQuery))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    //single and multi-country endpoints, bad requests
+    @Test
+    void endpoints() throws Exception {
+        try (StubUpstream upstream = new StubUpstream();
+             Covid19InfoServer server = new Covid19InfoServer(new Covid19InfoService(upstream.appProps()), 0, 2,
+                     Duration.ofSeconds(60))) {
+            server.start();
+            HttpClient client = HttpClient.newHttpClient();
+
+            HttpResponse<String> one = get(client, server, "/country/France");
+            assertEquals(200, one.statusCode());
+            assertTrue(one.body().contains("\"country\":\"France\""));
+            assertTrue(one.body().contains("\"confirmed\":33357883"));
+            assertTrue(one.body().contains("\"lastHistoryDataDate\":\"2022-08-18\""));
+
+            HttpResponse<String> many = get(client, server, "/countries?names=France,Germany%20,France");
+            assertEquals(200, many.statusCode());
+            assertTrue(many.body().startsWith("[{\"country\":\"France\""));
+            assertTrue(many.body().contains("},{\"country\":\"Germany\""));
+            assertEquals(2, upstream.hits("/cases"));
+
+            assertEquals(400, get(client, server, "/countries").statusCode());
+            assertEquals(404, get(client, server, "/country/").statusCode());
+            assertEquals(404, get(client, server, "/other").statusCode());
+        }
+    }
+
+    //spellings of a country share one cached JSON, a result missing a failed endpoint is not cached,
+    //failed lookups and too many names get their own errors
+    @Test
+    void resolvedNamesAndErrors() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            Properties props = upstream.appProps();
+            props.setProperty("COUNTRY_INDEX", "true");
+            upstream.on("/vaccines", q -> "Italy".equals(q.get("country")) ? null
+                    : StubUpstream.vaccinesBody(q.get("country")));
+            Covid19InfoService infoService = new Covid19InfoService(props) {
+                @Override
+                public CompletableFuture<CountryCovidData> getCountryCovidDataAsync(CountryIndex.Match match) {
+                    if ("Germany".equals(match.getCountry())) {
+                        return CompletableFuture.failedFuture(new IOException("down"));
+                    }
+                    return super.getCountryCovidDataAsync(match);
+                }
+            };
+            try (Covid19InfoServer server = new Covid19InfoServer(infoService, 0, 2, Duration.ofSeconds(60))) {
+                server.start();
+                HttpClient client = HttpClient.newHttpClient();
+
+                assertEquals(200, get(client, server, "/country/france").statusCode());
+                assertEquals(200, get(client, server, "/country/France").statusCode());
+                assertEquals(1, server.getJsonCache().size());
+                HttpResponse<String> partial = get(client, server, "/country/Italy");
+                assertEquals(200, partial.statusCode());
+                assertTrue(partial.body().contains("\"country\":\"Italy\""));
+                assertEquals(1, server.getJsonCache().size());
+
+                HttpResponse<String> failed = get(client, server, "/country/Germany");
+                assertEquals(500, failed.statusCode());
+                assertEquals("{\"error\": \"lookup failed\"}", failed.body());
+
+                StringBuilder names = new StringBuilder("France");
+                for (int i = 0; i < 250; i++) {
+                    names.append(",C").append(i);
+                }
+                HttpResponse<String> tooMany = get(client, server, "/countries?names=" + names);
+                assertEquals(400, tooMany.statusCode());
+                assertTrue(tooMany.body().contains("at most 250 names"));
+            }
+        }
+    }
+
+    //concurrent clients hammering hot countries, reports latency percentiles and throughput,
+    //number of clients is set with -Dserver.load.clients=N
+    @Test
+    void loadOnHotCountries() throws Exception {
+        int clients = Integer.getInteger("server.load.clients", 16);
+        int requestsPerClient = 200;
+        try (StubUpstream upstream = new StubUpstream().delay(path -> 50L);
+             Covid19InfoServer server = new Covid19InfoServer(new Covid19InfoService(upstream.appProps()), 0, 4,
+                     Duration.ofSeconds(60))) {
+            server.start();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+
+            long start = System.nanoTime();
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int clientNumber = c;
+                results.add(pool.submit(() -> {
+                    long[] nanos = new long[requestsPerClient];
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        String country = HOT_COUNTRIES.get((clientNumber + i) % HOT_COUNTRIES.size());
+                        long requestStart = System.nanoTime();
+                        HttpResponse<String> response = get(client, server, "/country/" + country);
+                        nanos[i] = System.nanoTime() - requestStart;
+                        if (response.statusCode() != 200) throw new IllegalStateException(response.body());
+                    }
+                    return nanos;
+                }));
+            }
+            long[] all = new long[clients * requestsPerClient];
+            for (int c = 0; c < clients; c++) {
+                System.arraycopy(results.get(c).get(), 0, all, c * requestsPerClient, requestsPerClient);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+
+            Arrays.sort(all);
+            System.out.printf("server load: %d requests, p50 %.3f ms, p99 %.3f ms, %.0f req/s%n", all.length,
+                    all[all.length / 2] / 1e6, all[all.length * 99 / 100] / 1e6, all.length / seconds);
+            assertTrue(upstream.hits("/cases") <= clients * HOT_COUNTRIES.size(),
+                    "upstream hits " + upstream.hits("/cases"));
+        }
+    }
+}
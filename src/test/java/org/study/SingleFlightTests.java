@@ -0,0 +1,94 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+import org.study.service.SingleFlight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTests {
+
+    private static final int CALLERS = 64;
+    private static final List<String> COUNTRIES = List.of("France", "Germany", "Italy");
+
+    /**
+     * starts all callers at once and waits for their results
+     */
+    private static List<CountryCovidData> burst(Covid19InfoService infoService, ExecutorService pool)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<CountryCovidData>> lookups = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String country = COUNTRIES.get(i % COUNTRIES.size());
+            lookups.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return infoService.getCountryCovidData(country);
+            }, pool));
+        }
+        start.countDown();
+        List<CountryCovidData> results = new ArrayList<>();
+        for (CompletableFuture<CountryCovidData> lookup : lookups) {
+            results.add(lookup.get());
+        }
+        return results;
+    }
+
+    //each burst makes exactly one upstream call per endpoint and country
+    @Test
+    void oneUpstreamCallPerKeyPerBurst() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try (StubUpstream upstream = new StubUpstream().delay(path -> 300L)) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            for (int round = 1; round <= 3; round++) {
+                List<CountryCovidData> results = burst(infoService, pool);
+
+                results.forEach(ccd -> assertEquals(33357883L, ccd.getConfirmed()));
+                assertEquals(round * COUNTRIES.size(), upstream.hits("/cases"));
+                assertEquals(round * COUNTRIES.size(), upstream.hits("/vaccines"));
+                assertEquals(round * COUNTRIES.size(), upstream.hits("/history"));
+            }
+            SingleFlight<Object> singleFlight = infoService.getSingleFlight();
+            assertEquals(3L * 3 * COUNTRIES.size(), singleFlight.getLoads());
+            assertEquals(3L * 3 * (CALLERS - COUNTRIES.size()), singleFlight.getCoalesced());
+            assertEquals(0, singleFlight.getInFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //concurrent callers share one future, later callers start a new load
+    @Test
+    void sharesInFlightLoadOnly() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> load = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> load);
+        CompletableFuture<String> second = singleFlight.execute("key", () -> CompletableFuture.completedFuture("x"));
+        assertSame(first, second);
+
+        load.complete("value");
+        assertEquals("value", second.join());
+        assertEquals("y", singleFlight.execute("key", () -> CompletableFuture.completedFuture("y")).join());
+
+        CompletableFuture<String> failed = singleFlight.execute("bad", () -> {
+            throw new IllegalStateException();
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+}
@@ -0,0 +1,179 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.study.entity.CountryCovidData;
+import org.study.entity.TimeSeries;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+import org.study.service.Covid19InfoService;
+import org.study.service.SnapshotStore;
+import org.study.service.WorldSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotStoreTests {
+
+    private static final int COUNTRIES = 250;
+
+    private static String countryName(int i) {
+        return i % 10 == 0 ? "C\u00f4te d'Ivoire " + i : "Country " + i;
+    }
+
+    private static WorldSnapshot worldSnapshot(long loadedAtMillis) {
+        Map<String, CasesUrlResponse> cases = new HashMap<>();
+        Map<String, VaccinesUrlResponse> vaccines = new HashMap<>();
+        Map<String, HistoryUrlResponse> history = new HashMap<>();
+        for (int i = 0; i < COUNTRIES; i++) {
+            String country = countryName(i);
+            CasesUrlResponse c = new CasesUrlResponse();
+            c.setConfirmed(1000L + i);
+            c.setRecovered(10L + i);
+            c.setDeaths(i);
+            if (i % 3 == 0) c.setAbbreviation("C" + i);
+            cases.put(country, c);
+            if (i % 2 == 0) {
+                VaccinesUrlResponse v = new VaccinesUrlResponse();
+                v.setPeopleVaccinated(50L);
+                v.setPopulation(200L);
+                vaccines.put(country, v);
+            }
+            HistoryUrlResponse h = new HistoryUrlResponse();
+            TimeSeries.Builder series = new TimeSeries.Builder()
+                    .add(LocalDate.of(2022, 8, 18), 900L + i)
+                    .add(LocalDate.of(2022, 8, 17), 800L + i);
+            if (i % 4 == 0) {
+                for (int day = 1; day < 20; day++) {
+                    series.add(LocalDate.of(2022, 8, 17).minusDays(day), 800L + i - day * (5L + i % 7));
+                }
+            }
+            h.setConfirmedByDate(series.build());
+            history.put(country, h);
+        }
+        return new WorldSnapshot(cases, vaccines, history, loadedAtMillis);
+    }
+
+    //every country written to file is found with the same data
+    @Test
+    void writtenSnapshotIsReadBack(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotStore.write(file, worldSnapshot(42L));
+
+        try (SnapshotStore store = SnapshotStore.open(file)) {
+            assertEquals(COUNTRIES, store.getRecordCount());
+            assertEquals(42L, store.getCreatedAtMillis());
+            for (int i = 0; i < COUNTRIES; i++) {
+                String country = countryName(i);
+                assertEquals(1000L + i, store.getCases(country).getConfirmed());
+                assertEquals(i, store.getCases(country).getDeaths());
+                assertEquals(i % 3 == 0 ? "C" + i : null, store.getCases(country).getAbbreviation());
+                assertEquals(i % 2 == 0, store.getVaccines(country) != null);
+                assertEquals(900L + i, store.getHistory(country).getConfirmedByDate().getLatestValue());
+            }
+            assertNull(store.getCases("Atlantis"));
+            List<String> countries = store.getCountries();
+            assertEquals(COUNTRIES, countries.size());
+            assertTrue(countries.contains("C\u00f4te d'Ivoire 10"));
+        }
+    }
+
+    //a lookup answered from file has the indicators of the full history, not of its latest point
+    @Test
+    void storedIndicatorsMatchFullHistory(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        WorldSnapshot world = worldSnapshot(42L);
+        SnapshotStore.write(file, world);
+        Covid19InfoService infoService = new Covid19InfoService(new Properties());
+
+        try (SnapshotStore store = SnapshotStore.open(file)) {
+            for (int i = 0; i < COUNTRIES; i++) {
+                String country = countryName(i);
+                assertEquals(infoService.getCountryCovidData(country, world).toString(),
+                        infoService.getCountryCovidData(country, store).toString(), country);
+            }
+            assertNotNull(infoService.getCountryCovidData(countryName(4), store).getNewCasesAverage14d());
+        }
+    }
+
+    //open + first lookup of a file covering every country is in the millisecond range
+    @Test
+    void coldReadLatency(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotStore.write(file, worldSnapshot(42L));
+
+        long[] nanos = new long[50];
+        for (int i = 0; i < nanos.length; i++) {
+            long start = System.nanoTime();
+            try (SnapshotStore store = SnapshotStore.open(file)) {
+                assertNotNull(store.getCases(countryName(i * 5)));
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("snapshot cold read of %d countries: slowest %.3f ms, median %.3f ms%n",
+                COUNTRIES, nanos[nanos.length - 1] / 1e6, nanos[nanos.length / 2] / 1e6);
+        assertTrue(nanos[nanos.length / 2] < 5_000_000L, "median cold read " + nanos[nanos.length / 2] + " ns");
+    }
+
+    //fresh file answers lookups with no upstream at all
+    @Test
+    void serviceServesFreshFileOffline(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        MutableClock clock = new MutableClock();
+        SnapshotStore.write(file, worldSnapshot(clock.millis()));
+        Properties props = new Properties();
+        props.setProperty("CASES_URL", "http://127.0.0.1:1/cases");
+        props.setProperty("VACCINES_URL", "http://127.0.0.1:1/vaccines");
+        props.setProperty("HISTORY_URL", "http://127.0.0.1:1/history");
+        props.setProperty("SNAPSHOT_FILE", file.toString());
+        props.setProperty("COUNTRY_INDEX", "true");
+
+        Covid19InfoService infoService = new Covid19InfoService(props, clock);
+        CountryCovidData ccd = infoService.getCountryCovidData("Country 7");
+
+        assertEquals(1007L, ccd.getConfirmed());
+        assertEquals(100L, ccd.getConfirmedSinceLastHistoryData());
+        //the index of the file resolves abbreviations like the index of an in-memory snapshot
+        assertEquals(1009L, infoService.getCountryCovidData("c9").getConfirmed());
+    }
+
+    //old file is refreshed in background and too old file is not served
+    @Test
+    void staleFileIsRefreshed(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        MutableClock clock = new MutableClock();
+        SnapshotStore.write(file, worldSnapshot(clock.millis()));
+        try (StubUpstream upstream = new StubUpstream()) {
+            Properties props = upstream.appProps();
+            props.setProperty("SNAPSHOT_FILE", file.toString());
+            props.setProperty("SNAPSHOT_REFRESH_SECONDS", "60");
+            props.setProperty("SNAPSHOT_MAX_AGE_SECONDS", "120");
+            Covid19InfoService infoService = new Covid19InfoService(props, clock);
+
+            clock.advance(Duration.ofSeconds(90));
+            assertEquals(1007L, infoService.getCountryCovidData("Country 7").getConfirmed());
+            infoService.refreshSnapshotStoreAsync().join();
+            for (int i = 0; i < 100 && infoService.getSnapshotStore().getRecordCount() == COUNTRIES; i++) {
+                Thread.sleep(20);
+            }
+
+            assertEquals(3, infoService.getSnapshotStore().getRecordCount());
+            assertEquals(33357883L, infoService.getCountryCovidData("France").getConfirmed());
+            assertEquals(1, upstream.hits("/cases"));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.CountryCovidData;
+import org.study.service.Covid19InfoService;
+import org.study.service.WorldSnapshot;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotTests {
+
+    //one request per endpoint, then lookups never reach the upstream
+    @Test
+    void snapshotAnswersLookupsLocally() throws IOException {
+        try (StubUpstream upstream = new StubUpstream().world(List.of("France", "Germany", "Italy", "Spain"))) {
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            WorldSnapshot snapshot = infoService.loadSnapshot();
+            assertEquals(4, snapshot.getCountries().size());
+
+            for (String country : List.of("France", "Germany", "Italy", "Spain")) {
+                CountryCovidData ccd = infoService.getCountryCovidData(country);
+                assertEquals(33357883L, ccd.getConfirmed());
+                assertNotNull(ccd.getVaccinatedLevel());
+                assertNotNull(ccd.getLastHistoryDataDate());
+            }
+            CountryCovidData unknown = infoService.getCountryCovidData("Atlantis");
+            assertNull(unknown.getConfirmed());
+
+            assertEquals(1, upstream.hits("/cases"));
+            assertEquals(1, upstream.hits("/vaccines"));
+            assertEquals(1, upstream.hits("/history"));
+        }
+    }
+
+    //prefetched snapshot answers lookups while its responses are cached, then lookups go to upstream
+    //and a new snapshot is prefetched; lookups are counted for refresh-ahead either way
+    @Test
+    void prefetchedSnapshotExpiresWithCache() throws Exception {
+        try (StubUpstream upstream = new StubUpstream()) {
+            MutableClock clock = new MutableClock();
+            Properties props = upstream.appProps();
+            for (String endpoint : List.of("CASES", "VACCINES", "HISTORY")) {
+                props.setProperty(endpoint + "_TTL_SECONDS", "60");
+            }
+            props.setProperty("CACHE_STALE_SECONDS", "0");
+            props.setProperty("REFRESH_AHEAD_TOP_K", "10");
+            Covid19InfoService infoService = new Covid19InfoService(props, clock);
+
+            assertTrue(infoService.prefetchSnapshotAsync().join());
+            assertEquals(33357883L, infoService.getCountryCovidData("France").getConfirmed());
+            assertEquals(1, upstream.hits("/cases"));
+            assertEquals(List.of("France"), infoService.getRefreshAhead().getTopCountries());
+
+            clock.advance(Duration.ofSeconds(61));
+            assertNull(infoService.getSnapshot());
+            assertEquals(33357883L, infoService.getCountryCovidData("France").getConfirmed());
+            for (int i = 0; i < 100 && infoService.getSnapshot() == null; i++) {
+                Thread.sleep(20);
+            }
+            assertNotNull(infoService.getSnapshot());
+            //per-country requests of the lookup and all-country requests of the new snapshot
+            assertEquals(3, upstream.hits("/cases"));
+            assertEquals(3, upstream.hits("/history"));
+        }
+    }
+
+    //failed endpoint leaves its part of snapshot empty
+    @Test
+    void failedEndpointGivesPartialSnapshot() throws IOException {
+        try (StubUpstream upstream = new StubUpstream()) {
+            upstream.on("/history", q -> null);
+            Covid19InfoService infoService = new Covid19InfoService(upstream.appProps());
+
+            infoService.loadSnapshot();
+            CountryCovidData ccd = infoService.getCountryCovidData("France");
+
+            assertEquals(33357883L, ccd.getConfirmed());
+            assertNull(ccd.getLastHistoryDataDate());
+        }
+    }
+}
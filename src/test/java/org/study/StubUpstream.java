@@ -0,0 +1,232 @@
+package org.study;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the Covid-19 API, serves /cases, /vaccines and /history on a random port
+ */
+public class StubUpstream implements AutoCloseable {
+
+    /**
+     * produces response body for given query parameters, null means 404
+     */
+    public interface Handler {
+        String body(Map<String, String> query) throws Exception;
+    }
+
+    static {
+        //otherwise every response waits for the client's delayed ACK, see Covid19InfoServer
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private volatile ToLongFunction<String> delayMillis = path -> 0L;
+    private volatile ToIntFunction<String> status = path -> 200;
+    private volatile String encoding;
+    private volatile ToIntFunction<String> capacity = path -> Integer.MAX_VALUE;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> throttled = new ConcurrentHashMap<>();
+    private volatile List<String> world = List.of("France", "Germany", "Italy");
+
+    public StubUpstream() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        on("/cases", q -> bodyFor(q, StubUpstream::casesBody));
+        on("/vaccines", q -> bodyFor(q, StubUpstream::vaccinesBody));
+        on("/history", q -> bodyFor(q, StubUpstream::historyBody));
+        server.start();
+    }
+
+    public StubUpstream on(String path, Handler handler) {
+        handlers.put(path, handler);
+        return this;
+    }
+
+    public StubUpstream delay(ToLongFunction<String> delayMillisByPath) {
+        this.delayMillis = delayMillisByPath;
+        return this;
+    }
+
+    /**
+     * @param statusByPath response code to answer with, anything but 200 is sent without body
+     */
+    public StubUpstream status(ToIntFunction<String> statusByPath) {
+        this.status = statusByPath;
+        return this;
+    }
+
+    /**
+     * @param capacityByPath number of requests a path serves at once, requests over it are answered with 429
+     */
+    public StubUpstream capacity(ToIntFunction<String> capacityByPath) {
+        this.capacity = capacityByPath;
+        return this;
+    }
+
+    /**
+     * @return number of requests of path answered with 429 because the path was over capacity
+     */
+    public int throttled(String path) {
+        AtomicInteger counter = throttled.get(path);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * @param encoding gzip or deflate, bodies are compressed with it when the request accepts it
+     */
+    public StubUpstream encoding(String encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    /**
+     * @param countries countries returned when country parameter is left out
+     */
+    public StubUpstream world(List<String> countries) {
+        this.world = countries;
+        return this;
+    }
+
+    private String bodyFor(Map<String, String> query, Function<String, String> countryBody) {
+        String country = query.get("country");
+        if (country != null) return countryBody.apply(country);
+        return worldBody(world, countryBody);
+    }
+
+    public static String worldBody(List<String> countries, Function<String, String> countryBody) {
+        return countries.stream()
+                .map(c -> "\"" + c + "\": " + countryBody.apply(c))
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    public int hits(String path) {
+        AtomicInteger counter = hits.get(path);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @return properties pointing the service to this stub
+     */
+    public Properties appProps() {
+        Properties props = new Properties();
+        props.setProperty("CASES_URL", url("/cases"));
+        props.setProperty("VACCINES_URL", url("/vaccines"));
+        props.setProperty("HISTORY_URL", url("/history"));
+        return props;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        AtomicInteger pathInFlight = inFlight.computeIfAbsent(path, p -> new AtomicInteger());
+        try {
+            if (pathInFlight.incrementAndGet() > capacity.applyAsInt(path)) {
+                throttled.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+            long delay = delayMillis.applyAsLong(path);
+            if (delay > 0) Thread.sleep(delay);
+            int code = status.applyAsInt(path);
+            if (code != 200) {
+                exchange.sendResponseHeaders(code, -1);
+                return;
+            }
+            Handler handler = handlers.get(path);
+            String body = handler == null ? null : handler.body(parseQuery(exchange.getRequestURI().getRawQuery()));
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            String currentEncoding = encoding;
+            if (currentEncoding != null && accepted != null && accepted.contains(currentEncoding)) {
+                bytes = encode(bytes, currentEncoding);
+                exchange.getResponseHeaders().set("Content-Encoding", currentEncoding);
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            pathInFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    public static byte[] encode(byte[] bytes, String encoding) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(encoded)
+                : new DeflaterOutputStream(encoded)) {
+            out.write(bytes);
+        }
+        return encoded.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    public static String casesBody(String country) {
+        return "{\"All\": {\"confirmed\": 33357883, \"recovered\": 0, \"deaths\": 149992, \"country\": \""
+                + country + "\", \"population\": 64979548, \"continent\": \"Europe\", \"location\": \"Western Europe\"} }";
+    }
+
+    public static String vaccinesBody(String country) {
+        return "{\"All\": {\"administered\": 152404977, \"people_vaccinated\": 53019788, \"country\": \""
+                + country + "\", \"population\": 64979548} }";
+    }
+
+    public static String historyBody(String country) {
+        return "{\"All\": {\"country\": \"" + country + "\", \"population\": 64979548,"
+                + " \"dates\": {\"2022-08-18\": 33357883, \"2022-08-17\": 33334278} } }";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
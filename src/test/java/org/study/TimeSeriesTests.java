@@ -0,0 +1,63 @@
+package org.study;
+
+import org.junit.jupiter.api.Test;
+import org.study.entity.TimeSeries;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesTests {
+
+    private static final LocalDate DAY = LocalDate.of(2022, 8, 18);
+
+    //newest-first input is stored ascending, latest is the newest day
+    @Test
+    void newestFirstInputIsSorted() {
+        TimeSeries series = new TimeSeries.Builder()
+                .add(DAY, 30L).add(DAY.minusDays(1), 20L).add(DAY.minusDays(2), 10L)
+                .build();
+        assertEquals(DAY.minusDays(2), series.getDate(0));
+        assertEquals(DAY, series.getLatestDate());
+        assertEquals(30L, series.getLatestValue());
+        assertArrayEquals(new long[]{10L, 20L, 30L}, series.getValues());
+    }
+
+    //unordered input is sorted, duplicate day keeps the last value
+    @Test
+    void unorderedInputIsSortedAndDeduplicated() {
+        TimeSeries series = TimeSeries.of(
+                new int[]{5, 1, 3, 1, 4},
+                new long[]{50L, 10L, 30L, 11L, 40L});
+        assertArrayEquals(new int[]{1, 3, 4, 5}, series.getEpochDays());
+        assertArrayEquals(new long[]{11L, 30L, 40L, 50L}, series.getValues());
+    }
+
+    //lookups and ranges by date
+    @Test
+    void lookupsByDate() {
+        TimeSeries.Builder builder = new TimeSeries.Builder();
+        for (int i = 0; i < 100; i += 2) {
+            builder.add(DAY.plusDays(i), i);
+        }
+        TimeSeries series = builder.build();
+
+        assertEquals(10L, series.getValue(DAY.plusDays(10)));
+        assertNull(series.getValue(DAY.plusDays(11)));
+        assertEquals(-1, series.indexOf(DAY.minusDays(1)));
+
+        TimeSeries range = series.range(DAY.plusDays(9), DAY.plusDays(14));
+        assertArrayEquals(new long[]{10L, 12L, 14L}, range.getValues());
+        assertTrue(series.range(DAY.plusDays(200), DAY.plusDays(300)).isEmpty());
+    }
+
+    @Test
+    void emptySeriesHasNoLatest() {
+        assertTrue(new TimeSeries.Builder().build().isEmpty());
+        assertThrows(IllegalStateException.class, TimeSeries.EMPTY::getLatestValue);
+    }
+}
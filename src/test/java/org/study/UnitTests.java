@@ -2,6 +2,7 @@ package org.study;
 
 import org.junit.jupiter.api.Test;
 import org.study.entity.CountryCovidData;
+import org.study.entity.TimeSeries;
 import org.study.response.CasesUrlResponse;
 import org.study.response.HistoryUrlResponse;
 import org.study.response.VaccinesUrlResponse;
@@ -10,11 +11,9 @@ import org.study.service.Covid19InfoService;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -154,14 +153,13 @@ public class UnitTests {
                 " \"abbreviation\": \"FR\", \"location\": \"Western Europe\", \"iso\": 250, \"capital_city\": \"Paris\"," +
                 " \"dates\": {\"2022-08-18\": 33357883, \"2022-08-17\": 33334278} } }";
         HistoryUrlResponse history = infoService.getResponseObject(content, HistoryUrlResponse.class);
-        assertNotNull(history.getConfirmedByDateMap());
-        Map<Date, Long> map = new TreeMap<>();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        map.put(sdf.parse("2022-08-18"), 33357883L);
-        map.put(sdf.parse("2022-08-17"), 33334278L);
-        for (Map.Entry<Date, Long> entry : history.getConfirmedByDateMap().entrySet()) {
-            assertEquals(map.get(entry.getKey()), entry.getValue());
-        }
+        TimeSeries series = history.getConfirmedByDate();
+        assertNotNull(series);
+        assertEquals(2, series.size());
+        assertEquals(33357883L, series.getValue(LocalDate.of(2022, 8, 18)));
+        assertEquals(33334278L, series.getValue(LocalDate.of(2022, 8, 17)));
+        assertEquals(LocalDate.of(2022, 8, 18), series.getLatestDate());
+        assertEquals(33357883L, series.getLatestValue());
     }
 
     //HistoryUrlResponse from bad content
@@ -200,11 +198,10 @@ public class UnitTests {
 
     HistoryUrlResponse getHistoryUrlResponse() throws ParseException {
         HistoryUrlResponse history = new HistoryUrlResponse();
-        Map<Date, Long> map = new LinkedHashMap<>();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        map.put(sdf.parse("2022-08-18"), 0L);
-        map.put(sdf.parse("2022-08-17"), 0L);
-        history.setConfirmedByDateMap(map);
+        history.setConfirmedByDate(new TimeSeries.Builder()
+                .add(LocalDate.of(2022, 8, 18), 0L)
+                .add(LocalDate.of(2022, 8, 17), 0L)
+                .build());
         return history;
     }
 
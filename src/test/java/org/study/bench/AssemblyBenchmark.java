@@ -0,0 +1,76 @@
+package org.study.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.study.entity.CountryCovidData;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+import org.study.service.Covid19InfoService;
+import org.study.utils.ParameterStringBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline assembly of CountryCovidData, its text output and request parameter encoding
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssemblyBenchmark {
+
+    Covid19InfoService infoService;
+    CasesUrlResponse cases;
+    VaccinesUrlResponse vaccines;
+    HistoryUrlResponse history;
+    CountryCovidData ccd;
+    Map<String, String> countryParameters;
+    Map<String, String> historyParameters;
+
+    @Setup
+    public void setUp() {
+        infoService = new Covid19InfoService(new Properties());
+        cases = infoService.getResponseObject(Fixtures.load(Fixtures.CASES), CasesUrlResponse.class);
+        vaccines = infoService.getResponseObject(Fixtures.load(Fixtures.VACCINES), VaccinesUrlResponse.class);
+        history = infoService.getResponseObject(Fixtures.load(Fixtures.HISTORY), HistoryUrlResponse.class);
+        ccd = infoService.getCountryCovidData("France", cases, vaccines, history);
+        countryParameters = new HashMap<>();
+        countryParameters.put("country", "Bosnia and Herzegovina");
+        historyParameters = new HashMap<>(countryParameters);
+        historyParameters.put("status", "confirmed");
+    }
+
+    @Benchmark
+    public CountryCovidData getCountryCovidData() {
+        return infoService.getCountryCovidData("France", cases, vaccines, history);
+    }
+
+    @Benchmark
+    public String countryCovidDataToString() {
+        return ccd.toString();
+    }
+
+    @Benchmark
+    public String getParamsStringCountry() {
+        return ParameterStringBuilder.getParamsString(countryParameters);
+    }
+
+    @Benchmark
+    public String getParamsStringHistory() {
+        return ParameterStringBuilder.getParamsString(historyParameters);
+    }
+}
@@ -0,0 +1,209 @@
+package org.study.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.study.entity.CountryCovidData;
+import org.study.entity.CountryCovidDataStore;
+import org.study.entity.HistoryStats;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 100k records of country covid data held as objects with boxed fields (the layout CountryCovidData had before),
+ * as CountryCovidData with primitive fields and in the off-heap CountryCovidDataStore.
+ * <p>
+ * Retained heap of the records (and off-heap bytes of the store) is printed when a trial starts;
+ * GC counts and allocation per build come from the gc profiler, which the benchmark profile turns on.
+ * scan reads two fields of every record while they are held.
+ *   mvn -P benchmark test-compile exec:exec -Djmh.args="CompactRecordBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class CompactRecordBenchmark {
+
+    static final int RECORDS = 100_000;
+    private static final int LATEST_DAY = (int) LocalDate.parse("2022-08-18").toEpochDay();
+
+    @Param({"BOXED", "PRIMITIVE", "OFF_HEAP"})
+    Layout layout;
+
+    Object records;
+
+    public enum Layout {
+        BOXED {
+            @Override
+            Object build() {
+                BoxedCountryCovidData[] records = new BoxedCountryCovidData[RECORDS];
+                for (int i = 0; i < RECORDS; i++) {
+                    records[i] = new BoxedCountryCovidData(record(i));
+                }
+                return records;
+            }
+
+            @Override
+            double scan(Object records) {
+                double sum = 0;
+                for (BoxedCountryCovidData ccd : (BoxedCountryCovidData[]) records) {
+                    if (ccd.confirmed != null) sum += ccd.confirmed;
+                    if (ccd.vaccinatedLevel != null) sum += ccd.vaccinatedLevel;
+                }
+                return sum;
+            }
+        },
+        PRIMITIVE {
+            @Override
+            Object build() {
+                CountryCovidData[] records = new CountryCovidData[RECORDS];
+                for (int i = 0; i < RECORDS; i++) {
+                    records[i] = record(i);
+                }
+                return records;
+            }
+
+            @Override
+            double scan(Object records) {
+                double sum = 0;
+                for (CountryCovidData ccd : (CountryCovidData[]) records) {
+                    if (ccd.isAvailable(CountryCovidData.CONFIRMED)) sum += ccd.getConfirmedAsLong();
+                    if (!Double.isNaN(ccd.getVaccinatedLevelAsDouble())) sum += ccd.getVaccinatedLevelAsDouble();
+                }
+                return sum;
+            }
+        },
+        OFF_HEAP {
+            @Override
+            Object build() {
+                CountryCovidDataStore store = new CountryCovidDataStore(RECORDS);
+                for (int i = 0; i < RECORDS; i++) {
+                    store.add(record(i));
+                }
+                return store;
+            }
+
+            @Override
+            double scan(Object records) {
+                CountryCovidDataStore store = (CountryCovidDataStore) records;
+                CountryCovidDataStore.Record record = store.record();
+                double sum = 0;
+                for (int i = 0; i < store.size(); i++) {
+                    record.moveTo(i);
+                    if (record.isAvailable(CountryCovidData.CONFIRMED)) sum += record.getConfirmed();
+                    if (!Double.isNaN(record.getVaccinatedLevel())) sum += record.getVaccinatedLevel();
+                }
+                return sum;
+            }
+        };
+
+        /**
+         * @return records as an array of the layout's class (or the store), so scan casts are checked
+         */
+        abstract Object build();
+
+        abstract double scan(Object records);
+    }
+
+    /**
+     * @return record of a country with every value but some history indicators available
+     */
+    static CountryCovidData record(int i) {
+        return CountryCovidData.builder()
+                .country("Country " + i)
+                .confirmed(1_000_000L + i)
+                .recovered(0L)
+                .deaths(10_000L + i)
+                .vaccinatedLevel(i % 100 + 0.5)
+                .lastHistoryDataEpochDay(LATEST_DAY)
+                .confirmedSinceLastHistoryData(i % 1000)
+                .historyStats(new HistoryStats(i % 500 + 0.25, i % 400 + 0.5, i % 7 == 0 ? Double.NaN : 0.1,
+                        Double.NaN, 5000.5 + i, LATEST_DAY - i % 900))
+                .build();
+    }
+
+    @Setup
+    public void setUp() {
+        long before = usedHeapAfterGc();
+        records = layout.build();
+        long retained = usedHeapAfterGc() - before;
+        System.out.println();
+        System.out.println("Retained heap of " + RECORDS + " records: " + retained / 1024 + " KB"
+                + (records instanceof CountryCovidDataStore
+                ? ", off-heap " + ((CountryCovidDataStore) records).getOffHeapBytes() / 1024 + " KB" : ""));
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public Object build() {
+        return layout.build();
+    }
+
+    @Benchmark
+    public double scan() {
+        return layout.scan(records);
+    }
+
+    /**
+     * Fields of CountryCovidData as they were before primitive fields: boxed numbers, Date and the builder's nulls
+     */
+    static final class BoxedCountryCovidData {
+        final String country;
+        final Long confirmed;
+        final Long recovered;
+        final Long deaths;
+        final Double vaccinatedLevel;
+        final Long confirmedSinceLastHistoryData;
+        final Date lastHistoryDataDate;
+        final Double newCasesAverage7d;
+        final Double newCasesAverage14d;
+        final Double dailyGrowthPercent;
+        final Double doublingTimeDays;
+        final Double peakNewCasesAverage7d;
+        final Date peakDate;
+        final List<String> suggestions;
+
+        BoxedCountryCovidData(CountryCovidData ccd) {
+            country = ccd.getCountry();
+            confirmed = ccd.getConfirmed();
+            recovered = ccd.getRecovered();
+            deaths = ccd.getDeaths();
+            vaccinatedLevel = ccd.getVaccinatedLevel();
+            confirmedSinceLastHistoryData = ccd.getConfirmedSinceLastHistoryData();
+            lastHistoryDataDate = toDate(ccd.getLastHistoryDataEpochDay());
+            newCasesAverage7d = ccd.getNewCasesAverage7d();
+            newCasesAverage14d = ccd.getNewCasesAverage14d();
+            dailyGrowthPercent = ccd.getDailyGrowthPercent();
+            doublingTimeDays = ccd.getDoublingTimeDays();
+            peakNewCasesAverage7d = ccd.getPeakNewCasesAverage7d();
+            peakDate = toDate(ccd.getPeakEpochDay());
+            suggestions = ccd.getSuggestions();
+        }
+
+        private static Date toDate(int epochDay) {
+            if (epochDay == CountryCovidData.NO_DAY) return null;
+            return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        }
+    }
+}
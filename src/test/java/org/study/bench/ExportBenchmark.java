@@ -0,0 +1,178 @@
+package org.study.bench;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.study.entity.TimeSeries;
+import org.study.export.CovidDataExport;
+import org.study.export.ExportFormat;
+import org.study.export.TableWriter;
+import org.study.response.HistoryUrlResponse;
+import org.study.utils.JsonUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of a synthetic all-country /history body (2000 countries of 1000 days, about 50 MB of JSON,
+ * generated while it is read) on a 64 MB heap. Rows per second are reported by the "rows" counter;
+ * peak RSS of the fork (VmHWM) is printed when the trial ends.
+ * <p>
+ * materialized binds the whole body into response objects before writing, as a lookup does,
+ * for comparison; it needs several times more memory and fails on a small enough heap.
+ *   mvn -P benchmark test-compile exec:exec -Djmh.args="ExportBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+public class ExportBenchmark {
+
+    static final int COUNTRIES = 2000;
+    static final int DAYS = 1000;
+
+    @Param({"CSV", "JSON_LINES", "COLUMNAR"})
+    ExportFormat format;
+
+    Path file;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("export-bench", "." + format.getExtension());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        System.out.println();
+        System.out.println("Peak RSS (VmHWM): " + peakRss() + ", max heap "
+                + Runtime.getRuntime().maxMemory() / 1024 / 1024 + " MB");
+    }
+
+    @Benchmark
+    public long streaming(Rows rows) throws IOException {
+        try (TableWriter out = format.open(FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), CovidDataExport.HISTORY_COLUMNS)) {
+            long written = CovidDataExport.writeHistory(new SyntheticHistory(COUNTRIES, DAYS), out);
+            rows.rows += written;
+            return written;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+    public long materialized(Rows rows) throws IOException {
+        Map<String, HistoryUrlResponse> history = JsonUtils.readJsonElementsByMember(
+                new SyntheticHistory(COUNTRIES, DAYS), "All", HistoryUrlResponse.class, new Gson());
+        try (TableWriter out = format.open(FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), CovidDataExport.HISTORY_COLUMNS)) {
+            for (Map.Entry<String, HistoryUrlResponse> country : history.entrySet()) {
+                TimeSeries series = country.getValue().getConfirmedByDate();
+                for (int i = series.size() - 1; i >= 0; i--) {
+                    out.writeString(country.getKey());
+                    out.writeDate(series.getEpochDay(i));
+                    out.writeLong(series.getValue(i));
+                    out.endRow();
+                }
+            }
+            rows.rows += out.getRowCount();
+            return out.getRowCount();
+        }
+    }
+
+    /**
+     * @return VmHWM line of /proc/self/status, or "n/a" where there is no procfs
+     */
+    static String peakRss() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) return line.substring("VmHWM:".length()).trim();
+            }
+        } catch (IOException e) {
+            //not Linux
+        }
+        return "n/a";
+    }
+
+    /**
+     * All-country /history body generated one country at a time while it is read
+     */
+    static final class SyntheticHistory extends InputStream {
+        private static final int LATEST_DAY = (int) LocalDate.parse("2022-08-18").toEpochDay();
+
+        private final int countries;
+        private final int days;
+        private int country = -1;
+        private byte[] chunk = "{".getBytes(StandardCharsets.UTF_8);
+        private int position;
+
+        SyntheticHistory(int countries, int days) {
+            this.countries = countries;
+            this.days = days;
+        }
+
+        private boolean next() {
+            if (++country > countries) return false;
+            if (country == countries) {
+                chunk = "}".getBytes(StandardCharsets.UTF_8);
+            } else {
+                StringBuilder sb = new StringBuilder(days * 28 + 128);
+                if (country > 0) sb.append(", ");
+                sb.append("\"Country ").append(country).append("\": {\"All\": {\"country\": \"Country ")
+                        .append(country).append("\", \"population\": 1000000, \"dates\": {");
+                long confirmed = 1000L * days + country;
+                for (int d = 0; d < days; d++) {
+                    if (d > 0) sb.append(", ");
+                    sb.append('"').append(LocalDate.ofEpochDay(LATEST_DAY - d)).append("\": ").append(confirmed);
+                    confirmed -= 1 + (d + country) % 1000;
+                }
+                chunk = sb.append("} } }").toString().getBytes(StandardCharsets.UTF_8);
+            }
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public int read() {
+            if (position == chunk.length && !next()) return -1;
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (position == chunk.length && !next()) return -1;
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.study.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Recorded upstream payloads from src/test/resources/fixtures
+ */
+public class Fixtures {
+
+    public static final String CASES = "cases-france.json";
+    public static final String VACCINES = "vaccines-france.json";
+    public static final String HISTORY = "history-france.json";
+
+    public static String load(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) throw new IllegalArgumentException("No fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param countryPayload payload of one country, e.g. {"All": {...}}
+     * @param countries      number of countries
+     * @return all-country payload as upstream gives it without country parameter
+     */
+    public static String world(String countryPayload, int countries) {
+        StringBuilder sb = new StringBuilder(countries * (countryPayload.length() + 16)).append('{');
+        for (int i = 0; i < countries; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("\"Country ").append(i).append("\": ").append(countryPayload);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,81 @@
+package org.study.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.study.entity.HistoryStats;
+import org.study.entity.TimeSeries;
+import org.study.service.HistoryAnalytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All indicators for all countries of a synthetic dataset, target is well under 100 ms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryAnalyticsBenchmark {
+
+    @Param({"200"})
+    int countries;
+
+    @Param({"1000"})
+    int days;
+
+    Map<String, TimeSeries> confirmedByCountry;
+
+    @Setup
+    public void setUp() {
+        confirmedByCountry = syntheticHistory(countries, days, 42L);
+    }
+
+    /**
+     * @return cumulative series with random daily increments of every country
+     */
+    public static Map<String, TimeSeries> syntheticHistory(int countries, int days, long seed) {
+        Random random = new Random(seed);
+        Map<String, TimeSeries> result = new HashMap<>();
+        for (int c = 0; c < countries; c++) {
+            TimeSeries.Builder builder = new TimeSeries.Builder(days);
+            long confirmed = 0;
+            for (int d = 0; d < days; d++) {
+                confirmed += random.nextInt(10_000);
+                builder.add(18_000 + d, confirmed);
+            }
+            result.put("Country " + c, builder.build());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, HistoryStats> analyzeAllParallel() {
+        return HistoryAnalytics.analyzeAll(confirmedByCountry);
+    }
+
+    @Benchmark
+    public HistoryStats analyzeOneCountry() {
+        return HistoryAnalytics.analyze(confirmedByCountry.get("Country 0"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HistoryAnalyticsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,60 @@
+package org.study.bench;
+
+import com.google.gson.JsonElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+import org.study.service.Covid19InfoService;
+import org.study.utils.JsonUtils;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of single-country payloads: tree lookup of "All" and binding into each response class
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Param({Fixtures.CASES, Fixtures.VACCINES, Fixtures.HISTORY})
+    String fixture;
+
+    String content;
+    Class<?> responseClass;
+    Covid19InfoService infoService;
+
+    @Setup
+    public void setUp() {
+        content = Fixtures.load(fixture);
+        responseClass = fixture.equals(Fixtures.CASES) ? CasesUrlResponse.class
+                : fixture.equals(Fixtures.VACCINES) ? VaccinesUrlResponse.class
+                : HistoryUrlResponse.class;
+        infoService = new Covid19InfoService(new Properties());
+    }
+
+    @Benchmark
+    public JsonElement jsonUtilsGetJsonElement() {
+        return JsonUtils.getJsonElement(content, "All");
+    }
+
+    @Benchmark
+    public Object getResponseObject() {
+        return infoService.getResponseObject(content, responseClass);
+    }
+}
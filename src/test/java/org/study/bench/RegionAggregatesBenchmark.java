@@ -0,0 +1,92 @@
+package org.study.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.study.response.CasesUrlResponse;
+import org.study.response.HistoryUrlResponse;
+import org.study.response.VaccinesUrlResponse;
+import org.study.service.RegionAggregates;
+import org.study.service.WorldSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Totals of the world, continents and locations over a synthetic all-country snapshot, in parallel
+ * and on a single thread
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionAggregatesBenchmark {
+
+    private static final String[][] LOCATIONS = {{"Europe", "Western Europe"}, {"Europe", "Eastern Europe"},
+            {"Asia", "Eastern Asia"}, {"Asia", "Southern Asia"}, {"Africa", "Western Africa"},
+            {"North America", "Caribbean"}, {"South America", "South America"}, {"Oceania", "Polynesia"}};
+
+    @Param({"200", "20000"})
+    int countries;
+
+    WorldSnapshot snapshot;
+    ForkJoinPool singleThread;
+
+    @Setup
+    public void setUp() {
+        snapshot = syntheticSnapshot(countries, 42L);
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        singleThread.shutdown();
+    }
+
+    /**
+     * @return snapshot with random cases and vaccination of countries spread over a few locations
+     */
+    public static WorldSnapshot syntheticSnapshot(int countries, long seed) {
+        Random random = new Random(seed);
+        Map<String, CasesUrlResponse> cases = new HashMap<>();
+        Map<String, VaccinesUrlResponse> vaccines = new HashMap<>();
+        for (int c = 0; c < countries; c++) {
+            String[] location = LOCATIONS[c % LOCATIONS.length];
+            CasesUrlResponse countryCases = new CasesUrlResponse();
+            countryCases.setConfirmed(random.nextInt(40_000_000));
+            countryCases.setDeaths(random.nextInt(500_000));
+            countryCases.setContinent(location[0]);
+            countryCases.setLocation(location[1]);
+            cases.put("Country " + c, countryCases);
+            VaccinesUrlResponse countryVaccines = new VaccinesUrlResponse();
+            countryVaccines.setPopulation(1_000_000L + random.nextInt(100_000_000));
+            countryVaccines.setPeopleVaccinated((long) (countryVaccines.getPopulation() * random.nextDouble()));
+            vaccines.put("Country " + c, countryVaccines);
+        }
+        return new WorldSnapshot(cases, vaccines, new HashMap<String, HistoryUrlResponse>(), 0L);
+    }
+
+    @Benchmark
+    public RegionAggregates computeParallel() {
+        return RegionAggregates.compute(snapshot);
+    }
+
+    @Benchmark
+    public RegionAggregates computeSingleThread() {
+        return RegionAggregates.compute(snapshot, singleThread);
+    }
+}
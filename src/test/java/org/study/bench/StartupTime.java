@@ -0,0 +1,97 @@
+package org.study.bench;
+
+import org.study.StubUpstream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Time to first output of a single lookup, every run in a new JVM against a local stub upstream: from process
+ * start until the data of the country is printed. Compares the default launch with the fast-start one
+ * (AppCDS archive from the training run of the fast-start profile, C1 only).
+ *   mvn -P fast-start package
+ *   mvn test-compile exec:java -Dexec.mainClass=org.study.bench.StartupTime -Dexec.classpathScope=test
+ */
+public class StartupTime {
+
+    static final int RUNS = 15;
+    static final Path JAR = Path.of("target", "CmdCovid19Info.jar");
+    static final Path ARCHIVE = Path.of("target", "CmdCovid19Info.jsa");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(JAR)) {
+            System.out.println(JAR + " is missing, build it with: mvn -P fast-start package");
+            return;
+        }
+        try (StubUpstream upstream = new StubUpstream()) {
+            Path props = Files.createTempFile("startup", ".properties");
+            try {
+                Properties appProps = upstream.appProps();
+                try (OutputStream out = Files.newOutputStream(props)) {
+                    appProps.store(out, null);
+                }
+                String config = "-Dapp.properties=" + props.toAbsolutePath();
+                measure("default", List.of(config));
+                if (Files.isRegularFile(ARCHIVE)) {
+                    measure("fast-start", List.of(config, "-XX:SharedArchiveFile=" + ARCHIVE,
+                            "-XX:TieredStopAtLevel=1"));
+                } else {
+                    System.out.println(ARCHIVE + " is missing, fast-start launch is not measured");
+                }
+            } finally {
+                Files.deleteIfExists(props);
+            }
+        }
+    }
+
+    private static void measure(String name, List<String> jvmArgs) throws IOException, InterruptedException {
+        long[] firstOutput = new long[RUNS];
+        long[] exit = new long[RUNS];
+        //the first runs warm up the disk cache
+        for (int i = -2; i < RUNS; i++) {
+            long[] times = run(jvmArgs);
+            if (i < 0) continue;
+            firstOutput[i] = times[0];
+            exit[i] = times[1];
+        }
+        Arrays.sort(firstOutput);
+        Arrays.sort(exit);
+        System.out.printf("%-10s first output: median %4d ms, min %4d ms; exit: median %4d ms%n", name,
+                firstOutput[RUNS / 2], firstOutput[0], exit[RUNS / 2]);
+    }
+
+    /**
+     * @return milliseconds until country data was printed and until the process exited
+     */
+    private static long[] run(List<String> jvmArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", JAR.toString()));
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write("France\n".getBytes(StandardCharsets.UTF_8));
+        }
+        long firstOutput = -1;
+        try (BufferedReader stdout = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (firstOutput < 0 && line.startsWith("COUNTRY : ")) firstOutput = System.nanoTime() - start;
+            }
+        }
+        process.waitFor();
+        if (firstOutput < 0) throw new IllegalStateException("No country data in output of " + command);
+        return new long[]{firstOutput / 1_000_000, (System.nanoTime() - start) / 1_000_000};
+    }
+}
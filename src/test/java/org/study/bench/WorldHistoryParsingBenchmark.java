@@ -0,0 +1,58 @@
+package org.study.bench;
+
+import com.google.gson.JsonElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.study.response.HistoryUrlResponse;
+import org.study.service.Covid19InfoService;
+import org.study.utils.JsonUtils;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /history payloads from one country up to all countries (about 200 countries of ~1000 days, several MB)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldHistoryParsingBenchmark {
+
+    @Param({"1", "20", "200"})
+    int countries;
+
+    String content;
+    Covid19InfoService infoService;
+
+    @Setup
+    public void setUp() {
+        content = Fixtures.world(Fixtures.load(Fixtures.HISTORY), countries);
+        infoService = new Covid19InfoService(new Properties());
+    }
+
+    /**
+     * builds the whole tree, as the original single-country path does
+     */
+    @Benchmark
+    public JsonElement jsonUtilsGetJsonElement() {
+        return JsonUtils.getJsonElement(content, "All");
+    }
+
+    @Benchmark
+    public Map<String, HistoryUrlResponse> getResponseObjects() {
+        return infoService.getResponseObjects(content, HistoryUrlResponse.class);
+    }
+}